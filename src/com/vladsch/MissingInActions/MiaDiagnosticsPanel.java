@@ -0,0 +1,208 @@
+// Copyright 2016-2023 2023 Vladimir Schneider <vladimir.schneider@gmail.com> Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE.txt file.
+package com.vladsch.MissingInActions;
+
+import com.intellij.icons.AllIcons;
+import com.intellij.openapi.actionSystem.ActionManager;
+import com.intellij.openapi.actionSystem.ActionToolbar;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.DefaultActionGroup;
+import com.intellij.openapi.actionSystem.ToggleAction;
+import com.intellij.openapi.fileChooser.FileSaverDescriptor;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileChooser.ex.FileSaverDialogImpl;
+import com.intellij.openapi.ide.CopyPasteManager;
+import com.intellij.openapi.project.DumbAwareAction;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectUtil;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.ui.SimpleToolWindowPanel;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.VirtualFileWrapper;
+import com.intellij.ui.components.JBLabel;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.table.JBTable;
+import com.intellij.util.ui.JBUI;
+import com.vladsch.MissingInActions.manager.ActionSelectionAdjuster;
+import com.vladsch.MissingInActions.settings.ApplicationSettings;
+import com.vladsch.MissingInActions.util.DiagnosticHistogram;
+import com.vladsch.MissingInActions.util.MiaDiagnostics;
+import com.vladsch.MissingInActions.util.MiaWatchdog;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.JPanel;
+import javax.swing.JSpinner;
+import javax.swing.SpinnerNumberModel;
+import javax.swing.table.DefaultTableModel;
+import java.awt.BorderLayout;
+import java.awt.datatransfer.StringSelection;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Shows collected handler diagnostics with actions to enable collection, reset and export as JSON
+ */
+class MiaDiagnosticsPanel extends SimpleToolWindowPanel {
+    private static final Logger LOG = Logger.getInstance("com.vladsch.MissingInActions");
+    private static final String[] COLUMNS = { "Category", "Name", "Unit", "Count", "Total", "Mean", "P50", "P90", "P99", "Max" };
+
+    private final @NotNull Project myProject;
+    private final DefaultTableModel myModel;
+    private final JBLabel myCounters = new JBLabel();
+
+    MiaDiagnosticsPanel(@NotNull Project project) {
+        super(true, true);
+        myProject = project;
+
+        myModel = new DefaultTableModel(COLUMNS, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+
+        JBTable table = new JBTable(myModel);
+        table.setAutoCreateRowSorter(true);
+
+        myCounters.setBorder(JBUI.Borders.empty(2, 4));
+
+        ApplicationSettings settings = ApplicationSettings.getInstance();
+        JSpinner budget = new JSpinner(new SpinnerNumberModel(Math.max(10, Math.min(10000, settings.getEdtWatchdogBudget())), 10, 10000, 10));
+        budget.addChangeListener(e -> {
+            settings.setEdtWatchdogBudget((Integer) budget.getValue());
+            MiaWatchdog.configure(settings.isEdtWatchdog(), settings.getEdtWatchdogBudget());
+        });
+
+        JPanel budgetPanel = new JPanel(new BorderLayout(JBUI.scale(4), 0));
+        budgetPanel.setBorder(JBUI.Borders.empty(2, 4));
+        budgetPanel.add(new JBLabel(Bundle.message("diagnostics.edt-budget.label")), BorderLayout.WEST);
+        budgetPanel.add(budget, BorderLayout.CENTER);
+
+        JPanel northPanel = new JPanel(new BorderLayout());
+        northPanel.add(myCounters, BorderLayout.CENTER);
+        northPanel.add(budgetPanel, BorderLayout.EAST);
+
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(northPanel, BorderLayout.NORTH);
+        panel.add(new JBScrollPane(table), BorderLayout.CENTER);
+        setContent(panel);
+
+        DefaultActionGroup group = new DefaultActionGroup();
+        group.add(new ToggleAction(Bundle.message("diagnostics.collect.label"), Bundle.message("diagnostics.collect.description"), AllIcons.Actions.Profile) {
+            @Override
+            public boolean isSelected(@NotNull AnActionEvent e) {
+                return MiaDiagnostics.isEnabled();
+            }
+
+            @Override
+            public void setSelected(@NotNull AnActionEvent e, boolean state) {
+                settings.setCollectDiagnostics(state);
+                MiaDiagnostics.setEnabled(state);
+                refresh();
+            }
+        });
+        group.add(new ToggleAction(Bundle.message("diagnostics.edt-watchdog.label"), Bundle.message("diagnostics.edt-watchdog.description"), AllIcons.Debugger.Watch) {
+            @Override
+            public boolean isSelected(@NotNull AnActionEvent e) {
+                return MiaWatchdog.isEnabled();
+            }
+
+            @Override
+            public void setSelected(@NotNull AnActionEvent e, boolean state) {
+                settings.setEdtWatchdog(state);
+                MiaWatchdog.configure(state, settings.getEdtWatchdogBudget());
+                refresh();
+            }
+        });
+        group.add(new DumbAwareAction(Bundle.message("diagnostics.refresh.label"), null, AllIcons.Actions.Refresh) {
+            @Override
+            public void actionPerformed(@NotNull AnActionEvent e) {
+                refresh();
+            }
+        });
+        group.add(new DumbAwareAction(Bundle.message("diagnostics.reset.label"), null, AllIcons.Actions.GC) {
+            @Override
+            public void actionPerformed(@NotNull AnActionEvent e) {
+                MiaDiagnostics.reset();
+                MiaWatchdog.clear();
+                refresh();
+            }
+        });
+        group.add(new DumbAwareAction(Bundle.message("diagnostics.dump-slow.label"), Bundle.message("diagnostics.dump-slow.description"), AllIcons.Actions.Dump) {
+            @Override
+            public void actionPerformed(@NotNull AnActionEvent e) {
+                dumpSlowOperations();
+            }
+        });
+        group.add(new DumbAwareAction(Bundle.message("diagnostics.export.label"), null, AllIcons.ToolbarDecorator.Export) {
+            @Override
+            public void actionPerformed(@NotNull AnActionEvent e) {
+                exportJson();
+            }
+        });
+
+        ActionToolbar toolbar = ActionManager.getInstance().createActionToolbar("MissingInActions.Diagnostics", group, true);
+        toolbar.setTargetComponent(this);
+        setToolbar(toolbar.getComponent());
+
+        refresh();
+    }
+
+    @NotNull
+    static Map<String, Long> getCounters() {
+        LinkedHashMap<String, Long> counters = new LinkedHashMap<>();
+        counters.put("nestedActionChecks", ActionSelectionAdjuster.getNestedActionChecks());
+        counters.put("nestedActionStackWalks", ActionSelectionAdjuster.getNestedActionStackWalks());
+        counters.put("edtSlowOperations", MiaWatchdog.getSlowCount());
+        return counters;
+    }
+
+    void refresh() {
+        myModel.setRowCount(0);
+        for (DiagnosticHistogram histogram : MiaDiagnostics.getHistograms()) {
+            myModel.addRow(new Object[] {
+                    histogram.getCategory(),
+                    histogram.getName(),
+                    histogram.getUnit(),
+                    histogram.getCount(),
+                    histogram.getTotal(),
+                    histogram.getMean(),
+                    histogram.getPercentile(50),
+                    histogram.getPercentile(90),
+                    histogram.getPercentile(99),
+                    histogram.getMax(),
+            });
+        }
+
+        Map<String, Long> counters = getCounters();
+        myCounters.setText(Bundle.message("diagnostics.counters.label", MiaDiagnostics.isEnabled() ? 1 : 0, counters.get("nestedActionChecks"), counters.get("nestedActionStackWalks"), counters.get("edtSlowOperations")));
+    }
+
+    private void dumpSlowOperations() {
+        String dump = MiaWatchdog.dump();
+        LOG.info(dump);
+        CopyPasteManager.getInstance().setContents(new StringSelection(dump));
+        myCounters.setText(Bundle.message("diagnostics.dump-slow.done", MiaWatchdog.getSlowOperations().size()));
+    }
+
+    private void exportJson() {
+        String title = Bundle.message("diagnostics.export.title");
+        String description = Bundle.message("diagnostics.export.description");
+        FileSaverDescriptor fileSaverDescriptor = new FileSaverDescriptor(title, description, "json");
+        FileSaverDialogImpl saveDialog = new FileSaverDialogImpl(fileSaverDescriptor, this);
+        VirtualFileWrapper file = saveDialog.save(ProjectUtil.guessProjectDir(myProject), "mia-diagnostics.json");
+        if (file != null) {
+            try {
+                FileUtil.createParentDirs(file.getFile());
+                try (FileWriter fileWriter = new FileWriter(file.getFile())) {
+                    fileWriter.write(MiaDiagnostics.toJson(getCounters()));
+                }
+                VirtualFileManager.getInstance().asyncRefresh(null);
+            } catch (IOException e) {
+                Messages.showErrorDialog(e.getMessage(), "Export Failure");
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+// Copyright 2016-2023 2023 Vladimir Schneider <vladimir.schneider@gmail.com> Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE.txt file.
+package com.vladsch.MissingInActions;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.openapi.wm.ToolWindowFactory;
+import com.intellij.openapi.wm.ex.ToolWindowManagerListener;
+import com.intellij.ui.content.Content;
+import com.intellij.ui.content.ContentFactory;
+import org.jetbrains.annotations.NotNull;
+
+public class MiaDiagnosticsToolWindowFactory implements ToolWindowFactory, DumbAware {
+    public static final String TOOL_WINDOW_ID = "Missing In Actions Diagnostics";
+
+    @Override
+    public void createToolWindowContent(@NotNull Project project, @NotNull ToolWindow window) {
+        MiaDiagnosticsPanel panel = new MiaDiagnosticsPanel(project);
+        ContentFactory contentFactory = ApplicationManager.getApplication().getService(ContentFactory.class);
+        Content content = contentFactory.createContent(panel, Bundle.message("diagnostics.tool-window.title"), false);
+        window.getContentManager().addContent(content);
+
+        // show current values when opened
+        project.getMessageBus().connect(window.getDisposable()).subscribe(ToolWindowManagerListener.TOPIC, new ToolWindowManagerListener() {
+            @Override
+            public void toolWindowShown(@NotNull ToolWindow toolWindow) {
+                if (toolWindow == window) panel.refresh();
+            }
+        });
+    }
+
+    @Override
+    public boolean shouldBeAvailable(@NotNull Project project) {
+        return !ApplicationManager.getApplication().isUnitTestMode();
+    }
+}
@@ -39,12 +39,16 @@ import com.intellij.openapi.wm.ToolWindow;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiManager;
 import com.intellij.ui.ComponentUtil;
+import com.vladsch.MissingInActions.actions.character.DeleteRegExActionHandler;
 import com.vladsch.MissingInActions.actions.character.MiaMultiplePasteAction;
+import com.vladsch.MissingInActions.actions.pattern.CaretSpawningSearchHandler;
 import com.vladsch.MissingInActions.manager.LineSelectionManager;
 import com.vladsch.MissingInActions.settings.ApplicationSettings;
 import com.vladsch.MissingInActions.util.EditorActionListener;
 import com.vladsch.MissingInActions.util.EditorActiveLookupListener;
 import com.vladsch.MissingInActions.util.MiaCancelableJobScheduler;
+import com.vladsch.MissingInActions.util.MiaDiagnostics;
+import com.vladsch.MissingInActions.util.MiaWatchdog;
 import com.vladsch.MissingInActions.util.SharedCaretStateTransferableData;
 import com.vladsch.MissingInActions.util.highlight.MiaWordHighlightProviderImpl;
 import com.vladsch.flexmark.util.misc.Pair;
@@ -72,9 +76,12 @@ import java.awt.event.FocusEvent;
 import java.awt.event.KeyEvent;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -87,6 +94,7 @@ public class Plugin extends MiaWordHighlightProviderImpl implements Disposable {
     final public static int FEATURE_DEVELOPMENT = 2;
     public static final Editor[] EMPTY_EDITORS = new Editor[0];
     public static final EditorActionListener[] EMPTY_EDITOR_ACTION_LISTENERS = new EditorActionListener[0];
+    public static final int EDITOR_HIGHLIGHT_TIME_SLICE = 20; // ms of EDT time per chunk of editor highlight updates
     final private HashMap<Editor, LineSelectionManager> myLineSelectionManagers;
     final private HashMap<AnActionEvent, Editor> myActionEventEditorMap;
     final private HashMap<Editor, LinkedHashSet<EditorActionListener>> myEditorActionListeners;
@@ -96,6 +104,8 @@ public class Plugin extends MiaWordHighlightProviderImpl implements Disposable {
     final private AnAction myMultiPasteAction;
     private @Nullable JComponent myPasteOverrideComponent;
     private boolean myInContentManipulation;
+    // blankness of clipboard contents by identity so each copy only reads the new content, pruned to clipboard history
+    private final IdentityHashMap<Transferable, Boolean> myBlankContents = new IdentityHashMap<>();
     private boolean mySavedShowParameterHints;
     private boolean myDisabledShowParameterHints;
     final private boolean myParameterHintsAvailable;
@@ -105,6 +115,9 @@ public class Plugin extends MiaWordHighlightProviderImpl implements Disposable {
     private boolean highlightProjectViewNodes;
     private @Nullable HighlightListener mySearchReplaceHighlightListener;
     private OneTimeRunnable myEditorHighlightRunner = OneTimeRunnable.NULL;
+    // showing editors with stale highlights, updated in time-sliced EDT chunks
+    final private LinkedHashSet<LineSelectionManager> myStaleHighlightManagers = new LinkedHashSet<>();
+    private boolean myStaleHighlightsScheduled = false;
     private boolean myInSetProjectHighlighter = false;
 
     public Plugin() {
@@ -147,7 +160,7 @@ public class Plugin extends MiaWordHighlightProviderImpl implements Disposable {
 
     @Override
     public void dispose() {
-
+        MiaWatchdog.shutdown();
     }
 
     @Override
@@ -161,7 +174,7 @@ public class Plugin extends MiaWordHighlightProviderImpl implements Disposable {
         if (!disableSaveHighlights) {
             // save highlights in application settings
             myHighlightSaveTask.cancel();
-            myHighlightSaveTask = OneTimeRunnable.schedule(MiaCancelableJobScheduler.getInstance(), "Highlight Saver", 500, ModalityState.NON_MODAL, () -> {
+            myHighlightSaveTask = OneTimeRunnable.schedule(MiaCancelableJobScheduler.getInstance(), "Highlight Saver", 500, ModalityState.NON_MODAL, MiaWatchdog.watch("Plugin.saveHighlights", () -> {
                 mySettings.setHighlightState(getHighlightState());
                 mySettings.setHighlightWordsCaseSensitive(isHighlightCaseSensitive());
                 mySettings.setHighlightWordsMatchBoundary(isHighlightWordsMatchBoundary());
@@ -169,14 +182,14 @@ public class Plugin extends MiaWordHighlightProviderImpl implements Disposable {
                 if (mySettings.isHighlightProjectViewNodes()) {
                     updateProjectViews();
                 }
-            });
+            }));
         } else {
             myHighlightSaveTask.cancel();
-            myHighlightSaveTask = OneTimeRunnable.schedule(MiaCancelableJobScheduler.getInstance(), "Highlight Saver", 500, ModalityState.NON_MODAL, () -> {
+            myHighlightSaveTask = OneTimeRunnable.schedule(MiaCancelableJobScheduler.getInstance(), "Highlight Saver", 500, ModalityState.NON_MODAL, MiaWatchdog.watch("Plugin.updateProjectViews", () -> {
                 if (mySettings.isHighlightProjectViewNodes()) {
                     updateProjectViews();
                 }
-            });
+            }));
         }
 
         super.fireHighlightsChanged();
@@ -208,6 +221,8 @@ public class Plugin extends MiaWordHighlightProviderImpl implements Disposable {
         super.initComponent();
 
         SharedCaretStateTransferableData.initialize(this);
+        MiaDiagnostics.setEnabled(mySettings.isCollectDiagnostics());
+        MiaWatchdog.configure(mySettings.isEdtWatchdog(), mySettings.getEdtWatchdogBudget());
 
         myDelayedRunner.addRunnable(SharedCaretStateTransferableData::dispose);
 
@@ -245,16 +260,24 @@ public class Plugin extends MiaWordHighlightProviderImpl implements Disposable {
             }
         });
 
-        if (myParameterHintsAvailable) {
-            FileEditorManagerListener editorManagerListener = new FileEditorManagerListener() {
-                @Override
-                public void selectionChanged(@NotNull final FileEditorManagerEvent event) {
-                    updateEditorParameterHints(getEditorEx(event.getNewEditor()), event.getNewEditor() != event.getOldEditor());
+        FileEditorManagerListener editorManagerListener = new FileEditorManagerListener() {
+            @Override
+            public void selectionChanged(@NotNull final FileEditorManagerEvent event) {
+                Editor editor = getEditorEx(event.getNewEditor());
+
+                if (myParameterHintsAvailable) {
+                    updateEditorParameterHints(editor, event.getNewEditor() != event.getOldEditor());
                 }
-            };
 
-            ApplicationManager.getApplication().getMessageBus().connect(this).subscribe(FileEditorManagerListener.FILE_EDITOR_MANAGER, editorManagerListener);
-        }
+                // highlights of editors not showing when they changed are updated when selected
+                LineSelectionManager selectionManager = editor == null ? null : myLineSelectionManagers.get(editor);
+                if (selectionManager != null) {
+                    selectionManager.updateStaleHighlights();
+                }
+            }
+        };
+
+        ApplicationManager.getApplication().getMessageBus().connect(this).subscribe(FileEditorManagerListener.FILE_EDITOR_MANAGER, editorManagerListener);
 
         final IdeEventQueue.EventDispatcher eventDispatcher = Plugin.this::dispatch;
 
@@ -356,26 +379,46 @@ public class Plugin extends MiaWordHighlightProviderImpl implements Disposable {
         return true;
     }
 
+    private boolean isBlankContent(@Nullable Transferable content) {
+        if (content == null) return false;
+
+        Boolean isBlankContent = myBlankContents.get(content);
+        if (isBlankContent == null) {
+            String contentString = getStringContent(content);
+            isBlankContent = contentString != null && isBlank(contentString);
+            myBlankContents.put(content, isBlankContent);
+        }
+        return isBlankContent;
+    }
+
+    private void pruneBlankContents(@NotNull Transferable[] allContents) {
+        if (myBlankContents.isEmpty()) return;
+
+        Set<Transferable> history = Collections.newSetFromMap(new IdentityHashMap<>());
+        Collections.addAll(history, allContents);
+        myBlankContents.keySet().removeIf(content -> !history.contains(content));
+    }
+
     private void clipboardContentChanged(Transferable oldTransferable, Transferable newTransferable) {
         if (!myInContentManipulation && mySettings.isOnlyLatestBlankClipboard()) {
-            String clipString = getStringContent(newTransferable);
-            if (clipString != null && isBlank(clipString)) {
+            final CopyPasteManagerEx copyPasteManager = CopyPasteManagerEx.getInstanceEx();
+            final Transferable[] allContents = copyPasteManager.getAllContents();
+            pruneBlankContents(allContents);
+
+            if (isBlankContent(newTransferable)) {
                 myInContentManipulation = true;
                 try {
-                    final CopyPasteManagerEx copyPasteManager = CopyPasteManagerEx.getInstanceEx();
-                    final Transferable[] allContents = copyPasteManager.getAllContents();
                     final ArrayList<Transferable> toDelete = new ArrayList<>();
                     for (Transferable content : allContents) {
-                        if (content != newTransferable) {
-                            String contentString = getStringContent(content);
-                            if (contentString != null && isBlank(contentString)) {
-                                toDelete.add(content);
-                            }
+                        // only contents not seen before are read, the rest are classified from the cache
+                        if (content != newTransferable && isBlankContent(content)) {
+                            toDelete.add(content);
                         }
                     }
 
                     for (Transferable content : toDelete) {
                         copyPasteManager.removeContent(content);
+                        myBlankContents.remove(content);
                     }
                 } finally {
                     myInContentManipulation = false;
@@ -410,14 +453,19 @@ public class Plugin extends MiaWordHighlightProviderImpl implements Disposable {
 
             final LinkedHashSet<EditorActionListener> listeners = myEditorActionListeners.get(editor);
             if (listeners != null) {
-                EditorActionListener[] actionListeners = listeners.toArray(EMPTY_EDITOR_ACTION_LISTENERS);
-                for (EditorActionListener listener : actionListeners) {
-                    try {
-                        listener.beforeActionPerformed(action, dataContext, event);
-                    } catch (Throwable e) {
-                        LOG.error("EditorActionListener generated error on beforeActionPerformed", e);
-                        removeEditorActionListener(editor, listener);
+                long watchToken = MiaWatchdog.start("beforeAction", action.getClass());
+                try {
+                    EditorActionListener[] actionListeners = listeners.toArray(EMPTY_EDITOR_ACTION_LISTENERS);
+                    for (EditorActionListener listener : actionListeners) {
+                        try {
+                            listener.beforeActionPerformed(action, dataContext, event);
+                        } catch (Throwable e) {
+                            LOG.error("EditorActionListener generated error on beforeActionPerformed", e);
+                            removeEditorActionListener(editor, listener);
+                        }
                     }
+                } finally {
+                    MiaWatchdog.end(watchToken, editor.getCaretModel().getCaretCount(), editor.getDocument().getTextLength());
                 }
             }
         }
@@ -428,14 +476,19 @@ public class Plugin extends MiaWordHighlightProviderImpl implements Disposable {
         if (editor != null) {
             final LinkedHashSet<EditorActionListener> listeners = myEditorActionListeners.get(editor);
             if (listeners != null) {
-                EditorActionListener[] actionListeners = listeners.toArray(EMPTY_EDITOR_ACTION_LISTENERS);
-                for (EditorActionListener listener : actionListeners) {
-                    try {
-                        listener.afterActionPerformed(action, dataContext, event);
-                    } catch (Throwable e) {
-                        LOG.error("EditorActionListener generated error on afterActionPerformed", e);
-                        removeEditorActionListener(editor, listener);
+                long watchToken = MiaWatchdog.start("afterAction", action.getClass());
+                try {
+                    EditorActionListener[] actionListeners = listeners.toArray(EMPTY_EDITOR_ACTION_LISTENERS);
+                    for (EditorActionListener listener : actionListeners) {
+                        try {
+                            listener.afterActionPerformed(action, dataContext, event);
+                        } catch (Throwable e) {
+                            LOG.error("EditorActionListener generated error on afterActionPerformed", e);
+                            removeEditorActionListener(editor, listener);
+                        }
                     }
+                } finally {
+                    MiaWatchdog.end(watchToken, editor.getCaretModel().getCaretCount(), editor.getDocument().getTextLength());
                 }
             }
         }
@@ -463,6 +516,10 @@ public class Plugin extends MiaWordHighlightProviderImpl implements Disposable {
     public void settingsChanged(final ColorIterable colors, final ApplicationSettings settings) {
         myDelayedRunner.runAllFor(myMultiPasteAction);
         mySettings = settings;
+        DeleteRegExActionHandler.clearPatternCache();
+        CaretSpawningSearchHandler.clearPatternCache();
+        MiaDiagnostics.setEnabled(settings.isCollectDiagnostics());
+        MiaWatchdog.configure(settings.isEdtWatchdog(), settings.getEdtWatchdogBudget());
 
         if (settings.isOverrideStandardPaste()) {
             // run it for all editors
@@ -605,16 +662,82 @@ public class Plugin extends MiaWordHighlightProviderImpl implements Disposable {
 
     void updateEditorHighlighters(@Nullable Project onlyInProject) {
         myEditorHighlightRunner.cancel();
-        myEditorHighlightRunner = OneTimeRunnable.schedule(MiaCancelableJobScheduler.getInstance(), 500, new AwtRunnable(true, () -> {
+        myEditorHighlightRunner = OneTimeRunnable.schedule(MiaCancelableJobScheduler.getInstance(), 500, new AwtRunnable(true, MiaWatchdog.watch("Plugin.updateEditorHighlighters", () -> {
             Editor[] editors = EditorFactory.getInstance().getAllEditors();
+            WordHighlightProvider<ApplicationSettings> highlightProvider = getActiveHighlightProvider();
+            ArrayList<LineSelectionManager> showingManagers = new ArrayList<>();
 
             for (Editor editor : editors) {
                 if (shouldNotUpdateHighlighters(editor) || (onlyInProject != null && editor.getProject() == onlyInProject)) continue;
 
+                // editors not showing are updated when shown or selected
                 LineSelectionManager selectionManager = LineSelectionManager.getInstance(editor);
-                selectionManager.setHighlightProvider(getActiveHighlightProvider());
+                if (selectionManager.isEditorShowing()) {
+                    showingManagers.add(selectionManager);
+                } else {
+                    selectionManager.setHighlightProviderWhenShowing(highlightProvider);
+                }
             }
-        }));
+
+            updateHighlightProviders(showingManagers, 0, highlightProvider, myEditorHighlightRunner);
+        })));
+    }
+
+    private void updateHighlightProviders(@NotNull List<LineSelectionManager> selectionManagers, int startIndex, @NotNull WordHighlightProvider<ApplicationSettings> highlightProvider, @NotNull OneTimeRunnable editorHighlightRunner) {
+        // a later update replaces this one
+        if (editorHighlightRunner != myEditorHighlightRunner) return;
+
+        long sliceEnd = System.currentTimeMillis() + EDITOR_HIGHLIGHT_TIME_SLICE;
+        int iMax = selectionManagers.size();
+        int i = startIndex;
+
+        while (i < iMax) {
+            LineSelectionManager selectionManager = selectionManagers.get(i++);
+            if (!selectionManager.isDisposed()) {
+                selectionManager.setHighlightProvider(highlightProvider);
+            }
+            if (System.currentTimeMillis() >= sliceEnd) break;
+        }
+
+        if (i < iMax) {
+            int nextIndex = i;
+            ApplicationManager.getApplication().invokeLater(() -> updateHighlightProviders(selectionManagers, nextIndex, highlightProvider, editorHighlightRunner));
+        }
+    }
+
+    /**
+     * Queue update of a showing editor's stale highlights, queued editors are updated in time-sliced EDT chunks
+     *
+     * @param selectionManager line selection manager of the editor
+     */
+    public void queueStaleHighlights(@NotNull LineSelectionManager selectionManager) {
+        myStaleHighlightManagers.add(selectionManager);
+
+        if (!myStaleHighlightsScheduled) {
+            myStaleHighlightsScheduled = true;
+            ApplicationManager.getApplication().invokeLater(MiaWatchdog.watch("Plugin.updateStaleHighlights", this::updateStaleHighlights));
+        }
+    }
+
+    private void updateStaleHighlights() {
+        long sliceEnd = System.currentTimeMillis() + EDITOR_HIGHLIGHT_TIME_SLICE;
+
+        while (!myStaleHighlightManagers.isEmpty()) {
+            LineSelectionManager selectionManager = myStaleHighlightManagers.iterator().next();
+            myStaleHighlightManagers.remove(selectionManager);
+
+            // editors hidden since being queued are updated when shown
+            if (!selectionManager.isDisposed() && selectionManager.isEditorShowing()) {
+                selectionManager.updateStaleHighlights();
+            }
+            if (System.currentTimeMillis() >= sliceEnd) break;
+        }
+
+        if (myStaleHighlightManagers.isEmpty()) {
+            myStaleHighlightsScheduled = false;
+        } else {
+            ApplicationManager.getApplication().invokeLater(MiaWatchdog.watch("Plugin.updateStaleHighlights", this::updateStaleHighlights));
+        }
     }
 
     void projectClosed(@NotNull Project ignoredProject) {
@@ -12,6 +12,7 @@ import com.intellij.openapi.editor.VisualPosition;
 import com.intellij.openapi.editor.ex.DocumentEx;
 import com.intellij.openapi.editor.ex.EditorEx;
 import com.intellij.util.text.CharArrayUtil;
+import com.vladsch.MissingInActions.manager.CaretCoordinateSet;
 import com.vladsch.MissingInActions.manager.CaretUtils;
 import com.vladsch.MissingInActions.manager.EditorCaret;
 import com.vladsch.MissingInActions.manager.EditorPosition;
@@ -24,9 +25,7 @@ import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 public class ActionUtils {
 
@@ -248,16 +247,12 @@ public class ActionUtils {
 
         if (wantFoundCarets) {
             // keep only found position carets
-            Set<Caret> foundCarets = manager.getFoundCarets();
+            CaretCoordinateSet foundCarets = manager.getFoundCarets();
             if (foundCarets != null) {
                 if (preservePrimaryCaretOffset) preserver = new CaretOffsetPreserver(manager.getEditor().getCaretModel().getPrimaryCaret().getOffset());
-                Set<Long> carets = new HashSet<>(foundCarets.size());
-                for (Caret caret : foundCarets) {
-                    carets.add(CaretUtils.getCoordinates(caret));
-                }
 
                 for (Caret caret : editor.getCaretModel().getAllCarets()) {
-                    if (!carets.contains(CaretUtils.getCoordinates(caret))) {
+                    if (!foundCarets.contains(CaretUtils.getCoordinates(caret))) {
                         editor.getCaretModel().removeCaret(caret);
                     } else if (preserver != null) {
                         preserver.tryCaret(caret);
@@ -270,16 +265,17 @@ public class ActionUtils {
             List<CaretState> caretStates = manager.getStartCaretStates();
 
             if (caretStates != null) {
-                Set<Caret> startMatchedCarets = manager.getStartMatchedCarets();
+                CaretCoordinateSet startMatchedCarets = manager.getStartMatchedCarets();
                 if (startMatchedCarets != null) {
-                    Set<Long> excludeList = CaretUtils.getExcludedCoordinates(null, startMatchedCarets);
-                    Set<Caret> foundCarets = manager.getFoundCarets();
-                    excludeList = CaretUtils.getExcludedCoordinates(excludeList, foundCarets);
-                    List<CaretState> keepCarets = new ArrayList<>(caretStates.size() - startMatchedCarets.size());
+                    CaretCoordinateSet foundCarets = manager.getFoundCarets();
+                    List<CaretState> keepCarets = new ArrayList<>(Math.max(caretStates.size() - startMatchedCarets.size(), 0));
                     if (preservePrimaryCaretOffset) preserver = new CaretOffsetPreserver(manager.getEditor().getCaretModel().getPrimaryCaret().getOffset());
 
                     for (CaretState caretState : caretStates) {
-                        if (excludeList != null && caretState.getCaretPosition() != null && excludeList.contains(CaretUtils.getCoordinates(caretState.getCaretPosition()))) continue;
+                        if (caretState.getCaretPosition() != null) {
+                            long coordinates = CaretUtils.getCoordinates(caretState.getCaretPosition());
+                            if (startMatchedCarets.contains(coordinates) || foundCarets != null && foundCarets.contains(coordinates)) continue;
+                        }
                         keepCarets.add(caretState);
                         if (preserver != null) preserver.tryOffset(caretState.getCaretPosition() == null ? -1 : manager.getEditor().logicalPositionToOffset(caretState.getCaretPosition()));
                     }
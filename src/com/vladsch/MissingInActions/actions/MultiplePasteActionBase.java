@@ -113,7 +113,6 @@ public abstract class MultiplePasteActionBase extends AnAction implements DumbAw
         final Editor editor = CommonDataKeys.EDITOR.getData(dataContext);
         final JComponent focusedComponent = (JComponent) component;
         final CopyPasteManagerEx copyPasteManager = CopyPasteManagerEx.getInstanceEx();
-        final HashMap<Transferable, ClipboardCaretContent> listEntryCarets = new HashMap<>();
         final boolean canCreateMultiCarets = editor != null && editor.getCaretModel().supportsMultipleCarets() && getCreateWithCaretsName(editor.getCaretModel().getCaretCount()) != null;
         final MultiPasteOptionsPane multiPasteOptionsPane = new MultiPasteOptionsPane();
         final boolean[] inContentManipulation = new boolean[] { false };
@@ -299,7 +298,8 @@ public abstract class MultiplePasteActionBase extends AnAction implements DumbAw
                             ? EditHelpers.getMergedTransferable(viewer, allContents, selectedIndices, true)
                             : allContents.get(selectedIndices[0]);
 
-                    caretContent = ClipboardCaretContent.studyTransferable(viewer, content);
+                    caretContent = selectedIndices.length > 1 ? ClipboardCaretContent.studyTransferable(viewer, content)
+                            : ClipboardCaretContent.studyCachedTransferable(viewer, content);
 
                     assert caretContent != null;
 
@@ -541,7 +541,7 @@ public abstract class MultiplePasteActionBase extends AnAction implements DumbAw
             @Override
             protected void removeContentAt(final Transferable content) {
                 copyPasteManager.removeContent(content);
-                listEntryCarets.remove(content);
+                ClipboardCaretContent.forgetStudiedTransferable(content);
             }
 
             @Override
@@ -907,12 +907,7 @@ public abstract class MultiplePasteActionBase extends AnAction implements DumbAw
 
             @Nullable
             private ClipboardCaretContent getCaretContent(final @NotNull Transferable content) {
-                ClipboardCaretContent caretContent = listEntryCarets.get(content);
-                if (!listEntryCarets.containsKey(content)) {
-                    caretContent = ClipboardCaretContent.studyTransferable(editor, content);
-                    listEntryCarets.put(content, caretContent);
-                }
-                return caretContent;
+                return ClipboardCaretContent.studyCachedTransferable(editor, content);
             }
         };
 
@@ -926,12 +921,14 @@ public abstract class MultiplePasteActionBase extends AnAction implements DumbAw
         try {
             copyPasteManager.addContentChangedListener(contentChangedListener);
             if (!chooser.getAllContents().isEmpty()) {
+                ClipboardCaretContent.pruneStudiedTransferables();
                 chooser.show();
             } else {
                 chooser.close(DialogWrapper.CANCEL_EXIT_CODE);
             }
         } finally {
             copyPasteManager.removeContentChangedListener(contentChangedListener);
+            ClipboardCaretContent.pruneStudiedTransferables();
         }
 
         Runnable prepareClipboard = () -> {
@@ -1011,6 +1008,7 @@ public abstract class MultiplePasteActionBase extends AnAction implements DumbAw
                     // if paste action is normal then we can delete it here
                     if (deleteAfterPaste != null) {
                         copyPasteManager.removeContent(deleteAfterPaste);
+                        ClipboardCaretContent.forgetStudiedTransferable(deleteAfterPaste);
                     }
                 }
             } else {
@@ -1062,7 +1060,7 @@ public abstract class MultiplePasteActionBase extends AnAction implements DumbAw
         final Transferable[] allContents = copyPasteManager.getAllContents();
         int index = 0;
         for (Transferable item : allContents) {
-            final ClipboardCaretContent caretContent = ClipboardCaretContent.studyTransferable(editor, item);
+            final ClipboardCaretContent caretContent = ClipboardCaretContent.studyCachedTransferable(editor, item);
             if (caretContent != null && caretContent.allChars()) {
                 String displayName = String.format("%d - [%d] %s", index + 1, caretContent.getCaretCount(), caretContent.getStringRep(30, null, false, false));
                 selections.add(displayName);
@@ -1080,7 +1078,7 @@ public abstract class MultiplePasteActionBase extends AnAction implements DumbAw
 
     @NotNull
     String getStringRep(@Nullable String[] texts, @Nullable BiConsumer<Integer, Integer> endOffsetConsumer, final @Nullable Editor editor, final Transferable content, final boolean showEOL, final boolean addCharFinalEOL, final boolean removeFullLineEOL) {
-        final ClipboardCaretContent caretContent = ClipboardCaretContent.studyTransferable(editor, content);
+        final ClipboardCaretContent caretContent = ClipboardCaretContent.studyCachedTransferable(editor, content);
         if (caretContent != null) {
             return ClipboardCaretContent.getStringRep(texts == null ? caretContent.getTexts() : texts, endOffsetConsumer, caretContent, 0, showEOL ? myEolText : null, addCharFinalEOL, removeFullLineEOL);
         }
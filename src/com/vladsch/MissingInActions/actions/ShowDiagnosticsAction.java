@@ -0,0 +1,27 @@
+// Copyright 2016-2023 2023 Vladimir Schneider <vladimir.schneider@gmail.com> Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE.txt file.
+package com.vladsch.MissingInActions.actions;
+
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.project.DumbAwareAction;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.openapi.wm.ToolWindowManager;
+import com.vladsch.MissingInActions.MiaDiagnosticsToolWindowFactory;
+import org.jetbrains.annotations.NotNull;
+
+public class ShowDiagnosticsAction extends DumbAwareAction implements CaretSearchAwareAction {
+    @Override
+    public void actionPerformed(@NotNull final AnActionEvent e) {
+        Project project = e.getProject();
+        if (project != null) {
+            ToolWindow toolWindow = ToolWindowManager.getInstance(project).getToolWindow(MiaDiagnosticsToolWindowFactory.TOOL_WINDOW_ID);
+            if (toolWindow != null) toolWindow.activate(null);
+        }
+    }
+
+    @Override
+    public void update(@NotNull final AnActionEvent e) {
+        e.getPresentation().setEnabled(e.getProject() != null);
+        super.update(e);
+    }
+}
@@ -4,17 +4,29 @@ package com.vladsch.MissingInActions.actions.character;
 import com.intellij.openapi.actionSystem.DataContext;
 import com.intellij.openapi.command.CommandProcessor;
 import com.intellij.openapi.editor.Caret;
+import com.intellij.openapi.editor.CaretModel;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.editor.actionSystem.EditorWriteActionHandler;
 import com.intellij.openapi.editor.actions.EditorActionUtil;
 import com.intellij.openapi.ide.CopyPasteManager;
+import com.intellij.openapi.util.TextRange;
 import com.vladsch.MissingInActions.util.EditHelpers;
+import com.vladsch.MissingInActions.util.MiaDiagnostics;
+import com.vladsch.MissingInActions.util.MiaWatchdog;
 import com.vladsch.MissingInActions.util.RegExDeleteProvider;
 import com.vladsch.ReverseRegEx.util.ForwardPattern;
 import com.vladsch.ReverseRegEx.util.RegExMatcher;
 import com.vladsch.ReverseRegEx.util.RegExPattern;
 import com.vladsch.ReverseRegEx.util.ReversePattern;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import static com.vladsch.MissingInActions.util.EditHelpers.isHumpBoundWord;
 
@@ -41,49 +53,136 @@ public class DeleteRegExActionHandler extends EditorWriteActionHandler {
         }
     }
 
+    public static final int PATTERN_CACHE_SIZE = 32;
+
+    // compiled patterns keyed by direction and regex, cleared when settings change
+    private static final LinkedHashMap<String, RegExPattern> ourPatternCache = new LinkedHashMap<String, RegExPattern>(PATTERN_CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, RegExPattern> eldest) {
+            return size() > PATTERN_CACHE_SIZE;
+        }
+    };
+
     final boolean myIsReverseSearch;
     final HumpsMode myHumpsMode;
     final RegExDeleteProvider myRegExProvider;
 
     public DeleteRegExActionHandler(RegExDeleteProvider regExProvider, boolean isReverseSearch, final HumpsMode humpsMode) {
-        super(true);
+        // multiple carets are handled in one pass
+        super(false);
 
         myRegExProvider = regExProvider;
         myHumpsMode = humpsMode;
         myIsReverseSearch = isReverseSearch;
     }
 
+    @NotNull
+    static RegExPattern getPattern(@NotNull String regEx, boolean isReversed) {
+        String key = (isReversed ? "R:" : "F:") + regEx;
+        synchronized (ourPatternCache) {
+            RegExPattern pattern = ourPatternCache.get(key);
+            if (pattern == null) {
+                long startTime = MiaDiagnostics.startTime();
+                pattern = isReversed ? ReversePattern.compile("(?:" + regEx + ")$") : ForwardPattern.compile("^(?:" + regEx + ")");
+                MiaDiagnostics.recordTime(MiaDiagnostics.REGEX_COMPILE, "DeleteRegExActionHandler", startTime);
+                ourPatternCache.put(key, pattern);
+            }
+            return pattern;
+        }
+    }
+
+    public static void clearPatternCache() {
+        synchronized (ourPatternCache) {
+            ourPatternCache.clear();
+        }
+    }
+
     @Override
-    public void executeWriteAction(Editor editor, Caret caret, DataContext dataContext) {
+    public void executeWriteAction(Editor editor, @Nullable Caret caret, DataContext dataContext) {
+        long watchToken = MiaWatchdog.start("executeWriteAction", getClass());
+        try {
+            deleteRegEx(editor, caret, dataContext);
+        } finally {
+            MiaWatchdog.end(watchToken, editor.getCaretModel().getCaretCount(), editor.getDocument().getTextLength());
+        }
+    }
+
+    private void deleteRegEx(Editor editor, @Nullable Caret caret, DataContext dataContext) {
         CommandProcessor.getInstance().setCurrentCommandGroupId(EditorActionUtil.DELETE_COMMAND_GROUP);
         CopyPasteManager.getInstance().stopKillRings();
 
-        if (editor.getSelectionModel().hasSelection()) {
-            EditHelpers.deleteSelectedText(editor);
+        CaretModel caretModel = editor.getCaretModel();
+        RegExPattern pattern = getPattern(myRegExProvider.getRegEx(), myIsReverseSearch);
+
+        if (caret != null || caretModel.getCaretCount() == 1) {
+            executeForCaret(editor, pattern, caret == null ? caretModel.getCurrentCaret() : caret);
             return;
         }
 
-        boolean isReversed = myIsReverseSearch;
-        String regEx = myRegExProvider.getRegEx();
-        RegExPattern pattern = isReversed ? ReversePattern.compile("(?:" + regEx + ")$") : ForwardPattern.compile("^(?:" + regEx + ")");
-        int caretPos = editor.getCaretModel().getOffset();
-        final CharSequence charsSequence = editor.getDocument().getCharsSequence();
-        RegExMatcher matcher = pattern.matcher(charsSequence);
+        List<Caret> carets = caretModel.getAllCarets();
+        for (Caret eachCaret : carets) {
+            if (eachCaret.hasSelection()) {
+                // selections are deleted per caret, same as single caret
+                caretModel.runForEachCaret(selectionCaret -> executeForCaret(editor, pattern, selectionCaret));
+                return;
+            }
+        }
+
+        // find deletion ranges in unmodified text and delete them from last to first, overlapping ranges are merged
+        ArrayList<TextRange> deleteRanges = new ArrayList<>(carets.size());
+        for (Caret eachCaret : carets) {
+            TextRange range = getDeleteRange(editor, pattern, eachCaret.getOffset(), myRegExProvider.isMultiCaretLineBound());
+            if (range != null) deleteRanges.add(range);
+        }
+
+        deleteRanges.sort(Comparator.comparingInt(TextRange::getStartOffset));
+
+        Document document = editor.getDocument();
+        int i = deleteRanges.size();
+        while (i-- > 0) {
+            int startOffset = deleteRanges.get(i).getStartOffset();
+            int endOffset = deleteRanges.get(i).getEndOffset();
+            while (i > 0 && deleteRanges.get(i - 1).getEndOffset() >= startOffset) {
+                i--;
+                startOffset = deleteRanges.get(i).getStartOffset();
+                endOffset = Math.max(endOffset, deleteRanges.get(i).getEndOffset());
+            }
+            document.deleteString(startOffset, endOffset);
+        }
+    }
+
+    private void executeForCaret(@NotNull Editor editor, @NotNull RegExPattern pattern, @NotNull Caret caret) {
+        if (caret.hasSelection()) {
+            EditHelpers.deleteSelectedText(editor);
+            return;
+        }
 
         boolean isLineBound = editor.getCaretModel().getCaretCount() > 1 ? myRegExProvider.isMultiCaretLineBound() : myRegExProvider.isLineBound();
+        TextRange range = getDeleteRange(editor, pattern, caret.getOffset(), isLineBound);
+        if (range != null) {
+            editor.getDocument().deleteString(range.getStartOffset(), range.getEndOffset());
+        }
+    }
+
+    @Nullable
+    private TextRange getDeleteRange(@NotNull Editor editor, @NotNull RegExPattern pattern, int caretPos, boolean isLineBound) {
+        boolean isReversed = myIsReverseSearch;
+        Document document = editor.getDocument();
+        final CharSequence text = document.getCharsSequence();
+        RegExMatcher matcher = pattern.matcher(text);
 
         if (isReversed) {
             int lowBound = 0;
             if (isLineBound) {
-                int line = editor.getDocument().getLineNumber(caretPos);
-                lowBound = editor.getDocument().getLineStartOffset(line);
+                int line = document.getLineNumber(caretPos);
+                lowBound = document.getLineStartOffset(line);
             }
             matcher.region(lowBound, caretPos);
         } else {
-            int highBound = charsSequence.length();
+            int highBound = text.length();
             if (isLineBound) {
-                int line = editor.getDocument().getLineNumber(caretPos);
-                highBound = editor.getDocument().getLineEndOffset(line);
+                int line = document.getLineNumber(caretPos);
+                highBound = document.getLineEndOffset(line);
             }
             matcher.region(caretPos, highBound);
         }
@@ -94,12 +193,8 @@ public class DeleteRegExActionHandler extends EditorWriteActionHandler {
             int endOffset = matcher.end();
 
             if (endOffset > startOffset) {
-                Document document = editor.getDocument();
-
                 if (myHumpsMode.isHumpsMode(editor)) {
                     // see if we have a camel hump boundary start to end or if reversed, end to start
-                    CharSequence text = document.getCharsSequence();
-
                     if (isReversed) {
                         if (EditHelpers.isIdentifier(text, endOffset - 1)) {
                             // find start
@@ -126,9 +221,10 @@ public class DeleteRegExActionHandler extends EditorWriteActionHandler {
                 }
 
                 if (endOffset > startOffset) {
-                    document.deleteString(startOffset, endOffset);
+                    return new TextRange(startOffset, endOffset);
                 }
             }
         }
+        return null;
     }
 }
@@ -13,13 +13,16 @@ import com.intellij.openapi.editor.actionSystem.EditorWriteActionHandler;
 import com.intellij.openapi.editor.ex.EditorEx;
 import com.intellij.openapi.ide.CopyPasteManager;
 import com.intellij.openapi.util.Couple;
+import com.vladsch.MissingInActions.manager.CaretBatch;
 import com.vladsch.MissingInActions.manager.EditorCaret;
 import com.vladsch.MissingInActions.manager.EditorPosition;
 import com.vladsch.MissingInActions.manager.LineSelectionManager;
 import com.vladsch.MissingInActions.settings.ApplicationSettings;
 import com.vladsch.MissingInActions.util.ClipboardCaretContent;
 import com.vladsch.MissingInActions.util.EditHelpers;
+import com.vladsch.MissingInActions.util.MiaWatchdog;
 import com.vladsch.flexmark.util.sequence.Range;
+import com.vladsch.flexmark.util.sequence.RepeatedSequence;
 import org.jetbrains.annotations.NotNull;
 
 import java.awt.datatransfer.Transferable;
@@ -44,6 +47,15 @@ public class DuplicateForClipboardCaretsActionHandler extends EditorWriteActionH
 
     @Override
     public void executeWriteAction(Editor editor, Caret unusedCaret, DataContext dataContext) {
+        long watchToken = MiaWatchdog.start("executeWriteAction", getClass());
+        try {
+            duplicateForClipboardCarets(editor, unusedCaret, dataContext);
+        } finally {
+            MiaWatchdog.end(watchToken, editor.getCaretModel().getCaretCount(), editor.getDocument().getTextLength());
+        }
+    }
+
+    private void duplicateForClipboardCarets(Editor editor, Caret unusedCaret, DataContext dataContext) {
         ClipboardCaretContent clipboardCaretContent = ClipboardCaretContent.studyClipboard(editor, dataContext);
         if (clipboardCaretContent == null) return;
 
@@ -106,25 +118,48 @@ public class DuplicateForClipboardCaretsActionHandler extends EditorWriteActionH
             EditorPosition startPosition = editorCaret.getCaretPosition().onLine(selRange.getStart()).atStartOfLine();
             EditorPosition endPosition = editorCaret.getCaretPosition().onLine(selRange.getEnd()).atStartOfNextLine();
             editorCaret.setCaretPosition(startPosition);
-            int offset = startPosition.getOffset();
 
             endPosition.ensureEOL();
 
-            // do it in reverse order so as not to affect the offset
-            String s = doc.getCharsSequence().subSequence(startPosition.getOffset(), endPosition.getOffset()).toString();
-            int inserted = 0;
+            // the block is inserted once repeated for all copies, virtual spaces used by carets are made real in the repeated text
+            // so caret offsets in every copy are computed from the block layout
+            int startLine = selRange.getStart();
             int span = selRange.getSpan() + 1;
-            for (int i = iMax; i-- > 0; ) {
-                Couple<Integer> couple;
-                if (i == 0 && !duplicateForCaretsPreserveOriginal) {
-                    // don't insert, re-use
-                    couple = new Couple<>(selRange.getStart(), selRange.getEnd());
-                } else {
-                    doc.insertString(startPosition.getOffset(), s);
-                    inserted += span;
-                    couple = new Couple<>(selRange.getStart() + inserted, selRange.getEnd() + inserted);
+            int blockStart = startPosition.getOffset();
+            int blockEnd = endPosition.getOffset();
+            int[] padding = new int[span];
+            ArrayList<BlockPosition> blockPositions = new ArrayList<>(carets.size() * 3);
+
+            for (EditorCaret copyCaret : carets) {
+                blockPositions.add(new BlockPosition(doc, copyCaret.getCaretPosition(), startLine, span, padding));
+                blockPositions.add(new BlockPosition(doc, copyCaret.getSelectionStart(), startLine, span, padding));
+                blockPositions.add(new BlockPosition(doc, copyCaret.getSelectionEnd(), startLine, span, padding));
+            }
+
+            CharSequence chars = doc.getCharsSequence();
+            StringBuilder block = new StringBuilder(blockEnd - blockStart + span);
+            int[] lineStarts = new int[span];
+            for (int i = 0; i < span; i++) {
+                int lineStart = doc.getLineStartOffset(startLine + i);
+                int lineEnd = doc.getLineEndOffset(startLine + i);
+                int nextLineStart = i + 1 < span ? doc.getLineStartOffset(startLine + i + 1) : blockEnd;
+                lineStarts[i] = block.length();
+                block.append(chars, lineStart, lineEnd).append(RepeatedSequence.ofSpaces(padding[i])).append(chars, lineEnd, nextLineStart);
+            }
+
+            int blockLength = block.length();
+            int copyStart;
+            if (duplicateForCaretsPreserveOriginal) {
+                // copies follow the original block
+                copyStart = blockEnd;
+                doc.insertString(blockEnd, RepeatedSequence.repeatOf(block, iMax));
+            } else {
+                // original block is the first copy, make its virtual spaces real and add the rest after it
+                copyStart = blockStart;
+                for (int i = span; i-- > 0; ) {
+                    if (padding[i] > 0) doc.insertString(doc.getLineEndOffset(startLine + i), RepeatedSequence.ofSpaces(padding[i]));
                 }
-                copies.add(couple);
+                if (iMax > 1) doc.insertString(blockStart + blockLength, RepeatedSequence.repeatOf(block, iMax - 1));
             }
 
             manager.guard(() -> {
@@ -132,39 +167,28 @@ public class DuplicateForClipboardCaretsActionHandler extends EditorWriteActionH
                 editorCaret.removeSelection();
                 caretModel.removeSecondaryCarets();
 
-                // build the carets
-                int accumulatedOffset = 0;
-                boolean firstCaret = true;
+                // build the carets, first one is primary, when the original is re-used its carets are last
+                CaretBatch caretBatch = new CaretBatch(manager);
+                int copiesEnd = copyStart + blockLength * iMax;
                 for (int i = 0; i < iMax; i++) {
-                    Couple<Integer> couple = copies.get(i);
+                    int copy = duplicateForCaretsPreserveOriginal ? i : (i + 1) % iMax;
+
+                    for (int j = 0; j < blockPositions.size(); j += 3) {
+                        int caretOffset = blockPositions.get(j).getOffset(copyStart, copiesEnd, copy, blockLength, lineStarts);
+                        int selectionStart = blockPositions.get(j + 1).getOffset(copyStart, copiesEnd, copy, blockLength, lineStarts);
+                        int selectionEnd = blockPositions.get(j + 2).getOffset(copyStart, copiesEnd, copy, blockLength, lineStarts);
 
-                    int firstLine = couple.first;
-
-                    for (EditorCaret copyCaret : carets) {
-                        EditorPosition editorPosition = copyCaret.getCaretPosition().onLine(copyCaret.getCaretPosition().line - selRange.getStart() + firstLine).copy();
-                        EditorPosition selectionStart = copyCaret.getSelectionStart().onLine(copyCaret.getSelectionStart().line - selRange.getStart() + firstLine).copy();
-                        EditorPosition selectionEnd = copyCaret.getSelectionEnd().onLine(copyCaret.getSelectionEnd().line - selRange.getStart() + firstLine).copy();
-
-                        Caret caret = firstCaret ? caretModel.getPrimaryCaret() : caretModel.addCaret(editorPosition.toVisualPosition());
-                        if (caret != null) {
-                            firstCaret = false;
-                            accumulatedOffset += editorPosition.ensureRealSpaces();
-                            accumulatedOffset += selectionStart.ensureRealSpaces();
-                            accumulatedOffset += selectionEnd.ensureRealSpaces();
-
-                            // replicate selection to this position
-                            int selectionSize = selectionEnd.getOffset() - selectionStart.getOffset();
-                            if (selectionSize > 0) {
-                                caret.moveToOffset(selectionEnd.getOffset());
-                                caret.setSelection(selectionStart.getOffset(), selectionEnd.getOffset());
-                                manager.resetSelectionState(caret);
-                            } else {
-                                caret.moveToLogicalPosition(editorPosition);
-                            }
+                        // replicate selection to this position
+                        if (selectionEnd > selectionStart) {
+                            caretBatch.addCaret(selectionEnd, selectionStart, selectionEnd);
+                        } else {
+                            caretBatch.addCaret(caretOffset, caretOffset, caretOffset);
                         }
                     }
                 }
 
+                caretBatch.apply();
+
                 // clear last pasted information, it is no good
                 ClipboardCaretContent.setLastPastedClipboardCarets(editor, null);
             });
@@ -236,7 +260,8 @@ public class DuplicateForClipboardCaretsActionHandler extends EditorWriteActionH
                 EditorPosition pos = editorCaret.getCaretPosition();
                 editorCaret.removeSelection();
 
-                // build the carets
+                // build the carets, first one is primary
+                CaretBatch caretBatch = new CaretBatch(manager);
                 int accumulatedOffset = 0;
                 for (int i = 0; i < iMax; i++) {
                     Couple<Integer> couple = copies.get(i);
@@ -244,22 +269,18 @@ public class DuplicateForClipboardCaretsActionHandler extends EditorWriteActionH
                     int lineNumber = doc.getLineNumber(couple.first + accumulatedOffset);
 
                     EditorPosition editorPosition = pos.onLine(lineNumber);
-                    Caret caret1 = i == 0 ? caretModel.getPrimaryCaret() : caretModel.addCaret(editorPosition.toVisualPosition());
-                    if (caret1 != null) {
-                        accumulatedOffset += editorPosition.ensureRealSpaces();
-                        int offset = editorPosition.getOffset();
+                    accumulatedOffset += editorPosition.ensureRealSpaces();
+                    int offset = editorPosition.getOffset();
 
-                        caret1.moveToLogicalPosition(editorPosition);
-
-                        // replicate selection to this position
-                        if (isStartAnchor) {
-                            caret1.setSelection(offset - selectionSize, offset);
-                        } else {
-                            caret1.setSelection(offset, offset + selectionSize);
-                        }
-                        manager.resetSelectionState(caret1);
+                    // replicate selection to this position
+                    if (isStartAnchor) {
+                        caretBatch.addCaret(offset, offset - selectionSize, offset);
+                    } else {
+                        caretBatch.addCaret(offset, offset, offset + selectionSize);
                     }
                 }
+
+                caretBatch.apply();
             });
 
             if (myDoPaste) {
@@ -284,4 +305,28 @@ public class DuplicateForClipboardCaretsActionHandler extends EditorWriteActionH
     public boolean isEnabledForCaret(@NotNull Editor editor, @NotNull Caret caret, DataContext dataContext) {
         return true;
     }
+
+    // position relative to the duplicated block, lines outside the block are relative to the neighbouring copy
+    private static class BlockPosition {
+        final int copyDelta;
+        final int blockLine;
+        final int lineOffset;
+
+        BlockPosition(@NotNull Document doc, @NotNull EditorPosition position, int startLine, int span, int[] padding) {
+            int line = position.line - startLine;
+            copyDelta = Math.floorDiv(line, span);
+            blockLine = Math.floorMod(line, span);
+
+            EditorPosition blockPosition = position.onLine(startLine + blockLine);
+            int offset = blockPosition.getOffset();
+            int virtualSpaces = Math.max(0, blockPosition.column - blockPosition.atOffset(offset).column);
+            if (padding[blockLine] < virtualSpaces) padding[blockLine] = virtualSpaces;
+            lineOffset = offset - doc.getLineStartOffset(startLine + blockLine) + virtualSpaces;
+        }
+
+        int getOffset(int copyStart, int copiesEnd, int copy, int blockLength, int[] lineStarts) {
+            int offset = copyStart + (copy + copyDelta) * blockLength + lineStarts[blockLine] + lineOffset;
+            return Math.max(copyStart, Math.min(copiesEnd, offset));
+        }
+    }
 }
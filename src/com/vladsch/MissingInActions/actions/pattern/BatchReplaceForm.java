@@ -11,6 +11,7 @@ import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.editor.EditorFactory;
 import com.intellij.openapi.editor.EditorSettings;
+import com.intellij.openapi.editor.RangeMarker;
 import com.intellij.openapi.editor.colors.CodeInsightColors;
 import com.intellij.openapi.editor.colors.EditorColorsManager;
 import com.intellij.openapi.editor.colors.EditorColorsScheme;
@@ -48,18 +49,28 @@ import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.VirtualFileManager;
 import com.intellij.openapi.vfs.VirtualFileWrapper;
 import com.intellij.ui.components.JBCheckBox;
+import com.intellij.util.DocumentUtil;
 import com.intellij.util.ui.TextTransferable;
 import com.intellij.util.ui.UIUtil;
 import com.vladsch.MissingInActions.Bundle;
 import com.vladsch.MissingInActions.Plugin;
+import com.vladsch.MissingInActions.actions.pattern.batch.BatchProjectSearch;
 import com.vladsch.MissingInActions.manager.LineSelectionManager;
 import com.vladsch.MissingInActions.settings.ApplicationSettings;
 import com.vladsch.MissingInActions.settings.BatchSearchReplace;
 import com.vladsch.MissingInActions.settings.BatchSearchReplaceSettings;
+import com.vladsch.MissingInActions.util.BatchSearchRules;
 import com.vladsch.MissingInActions.util.EditHelpers;
+import com.vladsch.MissingInActions.util.LineTextCache;
+import com.vladsch.MissingInActions.util.MultiWordMatcher;
+import com.vladsch.MissingInActions.util.RangeMarkerSet;
 import com.vladsch.MissingInActions.util.MiaCancelableJobScheduler;
+import com.vladsch.MissingInActions.util.MiaWatchdog;
+import com.vladsch.MissingInActions.util.WordIndexSnapshot;
+import com.vladsch.MissingInActions.util.WordMatchList;
 import com.vladsch.MissingInActions.util.highlight.MiaLineHighlightProviderImpl;
 import com.vladsch.MissingInActions.util.highlight.MiaWordHighlightProviderImpl;
+import com.vladsch.MissingInActions.util.highlight.MiaWordHighlighter;
 import com.vladsch.boxed.json.BoxedJsObject;
 import com.vladsch.boxed.json.BoxedJson;
 import com.vladsch.flexmark.util.html.ui.BackgroundColor;
@@ -109,6 +120,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -153,17 +168,26 @@ public class BatchReplaceForm implements Disposable {
     private @Nullable HashMap<Integer, Integer> myWordIndexToLineMap = null;
     private @Nullable HashMap<Integer, SearchData> myLineSearchData = null;
     private int[] myIndexedWordCounts = null;
+    private @Nullable LineTextCache mySearchLines = null;
+    private @Nullable LineTextCache myReplaceLines = null;
+    private @Nullable LineTextCache myOptionsLines = null;
+    private final ArrayList<SearchData> myRowSearchData = new ArrayList<>();
+    private int myDirtyRowStart = 0;
+    private int myDirtyRowEnd = Integer.MAX_VALUE;
+    private @Nullable ArrayList<SearchData> myWordSearchData = null;
+    private boolean myHaveCaseVariants = false;
+    private boolean myIncrementalUpdate = false;
     private TextRange myFoundRange = null;
     private boolean myHighlightSearchLines;
     private boolean myHighlightReplaceLines;
     private boolean myBatchTandemEdit;
     private boolean myIsIncludeMode = false;
 
-    private ArrayList<TextRange> myExcludedRanges = null;
-    private WordHighlightProvider<ApplicationSettings> myEditorSearchHighlightProvider;
-    private LineHighlightProvider<ApplicationSettings> mySearchHighlightProvider;
-    private LineHighlightProvider<ApplicationSettings> myReplaceHighlightProvider;
-    private LineHighlightProvider<ApplicationSettings> myOptionsHighlightProvider;
+    private @Nullable RangeMarkerSet myExcludedRanges = null;
+    private SearchWordHighlighterProvider myEditorSearchHighlightProvider;
+    private EditorLineHighlighterProvider mySearchHighlightProvider;
+    private EditorLineHighlighterProvider myReplaceHighlightProvider;
+    private EditorLineHighlighterProvider myOptionsHighlightProvider;
 
     final private DocumentListener myDocumentListener;
     final private CaretListener myCaretListener;
@@ -287,7 +311,7 @@ public class BatchReplaceForm implements Disposable {
         }
 
         if (myEditor != editor) {
-            myExcludedRanges = null;
+            clearExclusions();
 
             if (myEditor != null && !myEditor.isDisposed()) {
                 myEditor.getCaretModel().removeCaretListener(myEditorCaretListener);
@@ -306,7 +330,7 @@ public class BatchReplaceForm implements Disposable {
 
             if (!myInUpdate) {
                 myFoundBackwards = null;
-                myHighlightRunner = OneTimeRunnable.schedule(MiaCancelableJobScheduler.getInstance(), 100, new AwtRunnable(true, () -> updateOptions(true)));
+                myHighlightRunner = OneTimeRunnable.schedule(MiaCancelableJobScheduler.getInstance(), 100, new AwtRunnable(true, MiaWatchdog.watch("BatchReplaceForm.updateOptions", () -> updateOptions(true))));
             }
         }
     }
@@ -318,7 +342,7 @@ public class BatchReplaceForm implements Disposable {
 
             if (!myInUpdate) {
                 myFoundBackwards = null;
-                myHighlightRunner = OneTimeRunnable.schedule(MiaCancelableJobScheduler.getInstance(), 100, new AwtRunnable(true, () -> updateOptions(false)));
+                myHighlightRunner = OneTimeRunnable.schedule(MiaCancelableJobScheduler.getInstance(), 100, new AwtRunnable(true, MiaWatchdog.watch("BatchReplaceForm.updateOptions", () -> updateOptions(false))));
             }
         }
 
@@ -517,6 +541,7 @@ public class BatchReplaceForm implements Disposable {
         final JBMenuItem importJSON = new JBMenuItem(Bundle.message("batch-search.import-json.label"));
         final JBMenuItem deletePreset = new JBMenuItem(Bundle.message("batch-search.delete.label"));
         final JBMenuItem clearAllPresets = new JBMenuItem(Bundle.message("batch-search.clear-all.label"));
+        final JBMenuItem searchInProject = new JBMenuItem(Bundle.message("batch-search.project.label"));
 
         myPresets.addActionListener(e -> {
             if (!myInUpdate) {
@@ -729,6 +754,13 @@ public class BatchReplaceForm implements Disposable {
             settingsChanged(true);
         });
 
+        searchInProject.addActionListener(e -> {
+            saveSettings();
+            new BatchProjectSearch(myProject, new BatchSearchReplace(mySettings.getBatchSearchReplace()), VirtualFile.EMPTY_ARRAY).search();
+        });
+
+        myPopupMenuActions.add(searchInProject);
+        myPopupMenuActions.addSeparator();
         myPopupMenuActions.add(exportJSON);
         myPopupMenuActions.add(importJSON);
         myPopupMenuActions.addSeparator();
@@ -1052,7 +1084,10 @@ public class BatchReplaceForm implements Disposable {
     private void updateOptions(final boolean searchReplaceTextChanged) {
         if (myEditor == null || myEditor.isDisposed()) return;
 
-        if (searchReplaceTextChanged) myPendingForcedUpdate = true;
+        if (searchReplaceTextChanged) {
+            myPendingForcedUpdate = true;
+            if (!myIncrementalUpdate) invalidateSearchData();
+        }
 
         if (myInUpdate) return;
 
@@ -1079,141 +1114,134 @@ public class BatchReplaceForm implements Disposable {
             if (searchReplaceTextChanged || myPendingForcedUpdate) {
                 myPendingForcedUpdate = false;
 
-                DocumentEx searchEditorDocument = mySearchEditor.getDocument();
-                CharSequence searchSequence = searchEditorDocument.getCharsSequence();
-                DocumentEx replaceEditorDocument = myReplaceEditor.getDocument();
-                CharSequence replaceSequence = replaceEditorDocument.getCharsSequence();
-                DocumentEx optionsEditorDocument = myOptionsEditor.getDocument();
-                CharSequence optionsSequence = optionsEditorDocument.getCharsSequence();
+                LineTextCache searchLines = getLineTextCache(mySearchEditor.getDocument());
+                LineTextCache replaceLines = getLineTextCache(myReplaceEditor.getDocument());
+                LineTextCache optionsLines = getLineTextCache(myOptionsEditor.getDocument());
+
+                int searchLineCount = searchLines.getLineCount();
+                int replaceLineCount = replaceLines.getLineCount();
+                int optionsLineCount = optionsLines.getLineCount();
+                int iMax = Math.max(searchLineCount, Math.max(replaceLineCount, optionsLineCount));
+
+                // re-parse only rows changed since last update, rows past the old end are always new
+                int dirtyStart = Math.min(myDirtyRowStart, myRowSearchData.size());
+                int dirtyEnd = Math.min(iMax, Math.max(myDirtyRowEnd, myRowSearchData.size()));
+                myDirtyRowStart = Integer.MAX_VALUE;
+                myDirtyRowEnd = 0;
+
+                while (myRowSearchData.size() > iMax) myRowSearchData.remove(myRowSearchData.size() - 1);
+                while (myRowSearchData.size() < iMax) myRowSearchData.add(null);
+
+                for (int i = dirtyStart; i < dirtyEnd; i++) {
+                    String searchText = i < searchLineCount ? searchLines.getLine(i) : null;
+                    String replaceText = i < replaceLineCount ? replaceLines.getLine(i) : null;
+                    String optionsText = i < optionsLineCount ? optionsLines.getLine(i) : "";
+                    myRowSearchData.set(i, getSearchData(i, searchText, replaceText, optionsText));
+                }
 
-                myIndexedWordCounts = null;
+                // later lines remove earlier ones with the same word, ignoring case if the earlier one is case sensitive
+                LinkedHashSet<SearchData> wordSet = new LinkedHashSet<>();
+                HashMap<String, ArrayList<SearchData>> foldedWordMap = new HashMap<>();
 
-                myEditorSearchHighlightProvider.enterUpdateRegion();
-                mySearchHighlightProvider.enterUpdateRegion();
-                myReplaceHighlightProvider.enterUpdateRegion();
-                myOptionsHighlightProvider.enterUpdateRegion();
+                for (SearchData searchData : myRowSearchData) {
+                    if (searchData == null) continue;
 
-                myEditorSearchHighlightProvider.clearHighlights();
-                mySearchHighlightProvider.clearHighlights();
-                myReplaceHighlightProvider.clearHighlights();
-                myOptionsHighlightProvider.clearHighlights();
+                    ArrayList<SearchData> foldedWords = foldedWordMap.computeIfAbsent(searchData.foldedWord, k -> new ArrayList<>(1));
+                    foldedWords.removeIf(data -> {
+                        boolean remove = !BitFieldSet.any(data.flags, WordHighlightProvider.F_CASE_SENSITIVITY) ? data.word.equals(searchData.word) : data.word.equalsIgnoreCase(searchData.word);
+                        if (remove) wordSet.remove(data);
+                        return remove;
+                    });
+                    foldedWords.add(searchData);
+                    wordSet.add(searchData);
+                }
 
-                myWordIndexToLineMap = new HashMap<>();
-                myLineSearchData = new HashMap<>();
+                // words differing only in case are resolved by the provider in order of addition, these need a full update
+                boolean haveCaseVariants = false;
+                for (ArrayList<SearchData> foldedWords : foldedWordMap.values()) {
+                    if (foldedWords.size() > 1) {
+                        haveCaseVariants = true;
+                        break;
+                    }
+                }
 
-                int searchLines = searchEditorDocument.getLineCount();
-                int replaceLines = replaceEditorDocument.getLineCount();
-                int optionsLines = optionsEditorDocument.getLineCount();
-                int iMax = Math.max(searchLines, Math.max(replaceLines, optionsLines));
-                ArrayList<SearchData> lineSearchData = new ArrayList<>();
+                ArrayList<SearchData> wordSearchData = new ArrayList<>(wordSet);
+                boolean fullUpdate = myWordSearchData == null || haveCaseVariants || myHaveCaseVariants;
+                boolean wordsChanged = fullUpdate;
 
-                for (int i = 0; i < iMax; i++) {
-                    String searchText = null;
-                    String replaceText = null;
-                    String optionsText = "";
-                    if (i < searchLines) {
-                        searchText = searchSequence.subSequence(searchEditorDocument.getLineStartOffset(i), searchEditorDocument.getLineEndOffset(i)).toString();
-                    }
+                myEditorSearchHighlightProvider.enterUpdateRegion();
+                mySearchHighlightProvider.enterUpdateRegion();
+                myReplaceHighlightProvider.enterUpdateRegion();
+                myOptionsHighlightProvider.enterUpdateRegion();
 
-                    if (i < replaceLines) {
-                        replaceText = replaceSequence.subSequence(replaceEditorDocument.getLineStartOffset(i), replaceEditorDocument.getLineEndOffset(i)).toString();
+                if (fullUpdate) {
+                    myEditorSearchHighlightProvider.clearHighlights();
+                    mySearchHighlightProvider.clearHighlights();
+                    myReplaceHighlightProvider.clearHighlights();
+                    myOptionsHighlightProvider.clearHighlights();
+
+                    iMax = wordSearchData.size();
+                    for (int i = 0; i < iMax; i++) {
+                        SearchData searchData = wordSearchData.get(i);
+                        searchData.wordIndex = i;
+                        myEditorSearchHighlightProvider.addHighlightRange(searchData.word, searchData.flags);
+                        mySearchHighlightProvider.addHighlightLine(searchData.lineNumber);
+                        myReplaceHighlightProvider.addHighlightLine(searchData.lineNumber);
+                        myOptionsHighlightProvider.addHighlightLine(searchData.lineNumber);
                     }
-
-                    if (i < optionsLines) {
-                        optionsText = optionsSequence.subSequence(optionsEditorDocument.getLineStartOffset(i), optionsEditorDocument.getLineEndOffset(i)).toString();
+                } else {
+                    // only push differences to providers
+                    HashMap<String, SearchData> previousWords = new HashMap<>(myWordSearchData.size());
+                    HashSet<String> words = new HashSet<>(wordSearchData.size());
+                    HashSet<Integer> lines = new HashSet<>(wordSearchData.size());
+                    for (SearchData searchData : myWordSearchData) previousWords.put(searchData.word, searchData);
+                    for (SearchData searchData : wordSearchData) {
+                        words.add(searchData.word);
+                        lines.add(searchData.lineNumber);
                     }
 
-                    if (searchText != null && !searchText.isEmpty() && !optionsText.startsWith("-")) {
-                        if (replaceText == null) {
-                            // TODO: missing, use empty and highlight
-                            replaceText = "";
-                        }
-
-                        boolean isCaseSensitive = myCaseSensitive.isSelected();
-                        boolean isBeginWord = myWholeWord.isSelected();
-                        boolean isEndWord = myWholeWord.isSelected();
-                        boolean isError = false;
-                        boolean isWarning = false;
-
-                        // implement # marking start of comment
-                        int iComment = optionsText.indexOf('#');
-                        if (iComment == -1) iComment = optionsText.length();
-
-                        int iC = optionsText.indexOf('c');
-                        int iI = optionsText.indexOf('i');
-                        int iW = optionsText.indexOf('w');
-                        int iB = optionsText.indexOf('b');
-                        int iE = optionsText.indexOf('e');
-                        int iErr = optionsText.indexOf('!');
-                        int iWarn = optionsText.indexOf('?');
-
-                        if (iC >= 0 && iC < iComment) {
-                            isCaseSensitive = true;
-                        } else {
-                            if (iI >= 0 && iI < iComment) {
-                                isCaseSensitive = false;
-                            }
-                        }
-
-                        if (iW >= 0 && iW < iComment) {
-                            isBeginWord = true;
-                            isEndWord = true;
-                        }
-
-                        if (iB >= 0 && iB < iComment) {
-                            isBeginWord = true;
+                    for (SearchData searchData : myWordSearchData) {
+                        if (!words.contains(searchData.word)) {
+                            myEditorSearchHighlightProvider.removeHighlightRange(searchData.word);
+                            wordsChanged = true;
                         }
 
-                        if (iE >= 0 && iE < iComment) {
-                            isEndWord = true;
-                        }
-
-                        if (iErr >= 0 && iErr < iComment) {
-                            isError = true;
+                        if (!lines.contains(searchData.lineNumber)) {
+                            mySearchHighlightProvider.removeHighlightLine(searchData.lineNumber);
+                            myReplaceHighlightProvider.removeHighlightLine(searchData.lineNumber);
+                            myOptionsHighlightProvider.removeHighlightLine(searchData.lineNumber);
                         }
+                    }
 
-                        if (iWarn >= 0 && iWarn < iComment) {
-                            isWarning = true;
+                    iMax = wordSearchData.size();
+                    for (int i = 0; i < iMax; i++) {
+                        SearchData searchData = wordSearchData.get(i);
+                        SearchData previous = previousWords.get(searchData.word);
+                        if (previous == null || previous.flags != searchData.flags || previous.wordIndex != i) {
+                            myEditorSearchHighlightProvider.addHighlightRange(searchData.word, searchData.flags, i);
+                            wordsChanged = true;
                         }
 
-                        int ideHighlight = isError ? WordHighlightProvider.F_IDE_ERROR : isWarning ? WordHighlightProvider.F_IDE_WARNING : 0;
-                        SearchData searchData = new SearchData(searchText, replaceText, i, myEditorSearchHighlightProvider.encodeFlags(isBeginWord, isEndWord, ideHighlight, isCaseSensitive));
-
-                        int lMax = lineSearchData.size();
-                        for (int l = lMax; l-- > 0; ) {
-                            SearchData data = lineSearchData.get(l);
-                            if (!BitFieldSet.any(data.flags, WordHighlightProvider.F_CASE_SENSITIVITY)) {
-                                // case insensitive, we need to remove all that match
-                                if (data.word.equals(searchData.word)) {
-                                    // we need to delete this one
-                                    lineSearchData.remove(l);
-                                }
-                            } else {
-                                // case sensitive, we need to remove all that match
-                                if (data.word.equalsIgnoreCase(searchData.word)) {
-                                    // we need to delete this one
-                                    lineSearchData.remove(l);
-                                }
-                            }
-                        }
-
-                        lineSearchData.add(searchData);
+                        searchData.wordIndex = i;
+                        mySearchHighlightProvider.setHighlightLine(searchData.lineNumber, i);
+                        myReplaceHighlightProvider.setHighlightLine(searchData.lineNumber, i);
+                        myOptionsHighlightProvider.setHighlightLine(searchData.lineNumber, i);
                     }
                 }
 
-                iMax = lineSearchData.size();
-                for (int i = 0; i < iMax; i++) {
-                    SearchData searchData = lineSearchData.get(i);
-                    searchData.wordIndex = i;
-                    myEditorSearchHighlightProvider.addHighlightRange(searchData.word, searchData.flags);
-                    mySearchHighlightProvider.addHighlightLine(searchData.lineNumber);
-                    myReplaceHighlightProvider.addHighlightLine(searchData.lineNumber);
-                    myOptionsHighlightProvider.addHighlightLine(searchData.lineNumber);
-                    myWordIndexToLineMap.put(i, searchData.lineNumber);
+                myWordSearchData = wordSearchData;
+                myHaveCaseVariants = haveCaseVariants;
+                myWordIndexToLineMap = new HashMap<>(wordSearchData.size());
+                myLineSearchData = new HashMap<>(wordSearchData.size());
+
+                for (SearchData searchData : wordSearchData) {
+                    myWordIndexToLineMap.put(searchData.wordIndex, searchData.lineNumber);
                     myLineSearchData.put(searchData.lineNumber, searchData);
                 }
 
-                boolean enabled = myEditorSearchHighlightProvider.getHighlightPattern() != null && !myEditorSearchHighlightProvider.getHighlightPattern().pattern().isEmpty();
+                if (wordsChanged) myIndexedWordCounts = null;
+
+                boolean enabled = !myEditorSearchHighlightProvider.getWordMatcher().isEmpty();
 
                 mySearchCopyRegEx.setEnabled(enabled);
                 myFindNext.setEnabled(enabled);
@@ -1227,7 +1255,9 @@ public class BatchReplaceForm implements Disposable {
                 myReplaceHighlightProvider.leaveUpdateRegion();
                 myOptionsHighlightProvider.leaveUpdateRegion();
 
-                LineSelectionManager.getInstance(myEditor).updateHighlights();
+                if (wordsChanged || !myIncrementalUpdate) {
+                    LineSelectionManager.getInstance(myEditor).updateHighlights();
+                }
             } else {
                 WordHighlighter<?> highlighter = (WordHighlighter<?>) LineSelectionManager.getInstance(myEditor).getHighlighter();
 
@@ -1246,8 +1276,61 @@ public class BatchReplaceForm implements Disposable {
         }
     }
 
+    private void invalidateSearchData() {
+        myDirtyRowStart = 0;
+        myDirtyRowEnd = Integer.MAX_VALUE;
+    }
+
+    private void markRowsDirty(int startRow, int endRow) {
+        myDirtyRowStart = Math.min(myDirtyRowStart, startRow);
+        myDirtyRowEnd = Math.max(myDirtyRowEnd, endRow);
+    }
+
+    @NotNull
+    private LineTextCache getLineTextCache(@NotNull Document document) {
+        LineTextCache lines = document == mySearchEditor.getDocument() ? mySearchLines : document == myReplaceEditor.getDocument() ? myReplaceLines : myOptionsLines;
+
+        if (lines == null) {
+            lines = new LineTextCache(document.getCharsSequence());
+            if (document == mySearchEditor.getDocument()) mySearchLines = lines;
+            else if (document == myReplaceEditor.getDocument()) myReplaceLines = lines;
+            else myOptionsLines = lines;
+            invalidateSearchData();
+        }
+        return lines;
+    }
+
+    private void updateLineTextCache(@NotNull DocumentEvent event) {
+        Document document = event.getDocument();
+        if (mySearchEditor == null) return;
+
+        LineTextCache lines = document == mySearchEditor.getDocument() ? mySearchLines : document == myReplaceEditor.getDocument() ? myReplaceLines : myOptionsLines;
+        if (lines == null) return;
+
+        int offset = event.getOffset();
+        int line = document.getLineNumber(offset);
+        int lineDelta = lines.replace(line, offset - document.getLineStartOffset(line), event.getOldFragment(), event.getNewFragment());
+
+        if (lineDelta == 0) {
+            markRowsDirty(line, document.getLineNumber(offset + event.getNewLength()) + 1);
+        } else {
+            // rows after the change are shifted or paired with different lines of the other editors
+            markRowsDirty(line, Integer.MAX_VALUE);
+        }
+    }
+
+    @Nullable
+    private SearchData getSearchData(int lineNumber, @Nullable String searchText, @Nullable String replaceText, @NotNull String optionsText) {
+        BatchSearchRules.Rule rule = BatchSearchRules.parseRule(lineNumber, searchText, replaceText, optionsText, myCaseSensitive.isSelected(), myWholeWord.isSelected());
+        if (rule == null) return null;
+
+        int ideHighlight = rule.error ? WordHighlightProvider.F_IDE_ERROR : rule.warning ? WordHighlightProvider.F_IDE_WARNING : 0;
+        return new SearchData(rule.search, rule.replace, lineNumber, myEditorSearchHighlightProvider.encodeFlags(rule.beginWord, rule.endWord, ideHighlight, rule.caseSensitive));
+    }
+
     private static class SearchData {
         final String word;
+        final String foldedWord;
         final String replace;
         final int lineNumber;
         final int flags;
@@ -1255,6 +1338,7 @@ public class BatchReplaceForm implements Disposable {
 
         SearchData(final String word, final String replace, final int lineNumber, final int flags) {
             this.word = word;
+            this.foldedWord = BatchSearchRules.foldCase(word);
             this.replace = replace;
             this.lineNumber = lineNumber;
             this.flags = flags;
@@ -1440,25 +1524,6 @@ public class BatchReplaceForm implements Disposable {
         focusEditor();
     }
 
-    private void adjustExclusions(TextRange foundRange, int replacementLength) {
-        if (myExcludedRanges != null) {
-            int iMax = myExcludedRanges.size();
-            int delta = replacementLength - foundRange.getLength();
-            for (int i = 0; i < iMax; i++) {
-                TextRange range = myExcludedRanges.get(i);
-                if (range.getStartOffset() >= foundRange.getEndOffset()) {
-                    // need adjustment
-                    myExcludedRanges.set(i, range.shiftRight(delta));
-                } else if (range.getEndOffset() >= foundRange.getEndOffset()) {
-                    // need to adjust end
-                    myExcludedRanges.set(i, range.grown(delta));
-//                } else {
-//                    // nothing to do
-                }
-            }
-        }
-    }
-
     private void replace() {
         if (myEditor == null || !myEditor.getDocument().isWritable()) return;
 
@@ -1479,9 +1544,10 @@ public class BatchReplaceForm implements Disposable {
                     handled = true;
                     WriteCommandAction.runWriteCommandAction(myProject, () -> {
                         String replacement = searchData.replace;
-                        myEditor.getDocument().replaceString(myFoundRange.getStartOffset(), myFoundRange.getEndOffset(), replacement);
-                        addExclusion(); // we are replacing it, prevent double replacement
-                        adjustExclusions(myFoundRange, replacement.length());
+                        int startOffset = myFoundRange.getStartOffset();
+                        myEditor.getDocument().replaceString(startOffset, myFoundRange.getEndOffset(), replacement);
+                        // we are replacing it, prevent double replacement, other exclusions are moved by their range markers
+                        addExclusion(TextRange.create(startOffset, startOffset + replacement.length()));
 
                         if (myFoundBackwards != null) {
                             if (myFoundBackwards) {
@@ -1505,10 +1571,23 @@ public class BatchReplaceForm implements Disposable {
 
     private void addExclusion() {
         if (myFoundRange != null && myFoundIndex != -1) {
+            addExclusion(myFoundRange);
+        }
+    }
+
+    private void addExclusion(@NotNull TextRange range) {
+        if (myEditor != null) {
             if (myExcludedRanges == null) {
-                myExcludedRanges = new ArrayList<>();
+                myExcludedRanges = new RangeMarkerSet(myEditor.getDocument());
             }
-            myExcludedRanges.add(myFoundRange);
+            myExcludedRanges.add(range);
+        }
+    }
+
+    private void clearExclusions() {
+        if (myExcludedRanges != null) {
+            myExcludedRanges.clear();
+            myExcludedRanges = null;
         }
     }
 
@@ -1516,10 +1595,10 @@ public class BatchReplaceForm implements Disposable {
         if (myEditor == null) return;
 
         if (myFoundRange != null && myFoundIndex != -1) {
-            int i = getExcludedRange();
-            if (i != -1) {
+            RangeMarker excludedRange = getExcludedRange();
+            if (excludedRange != null) {
                 // include
-                myExcludedRanges.remove(i);
+                myExcludedRanges.remove(excludedRange);
                 if (myExcludedRanges.isEmpty()) myExcludedRanges = null;
             } else {
                 addExclusion();
@@ -1544,7 +1623,7 @@ public class BatchReplaceForm implements Disposable {
         if (myEditor == null) return;
 
         if (myExcludedRanges != null) {
-            myExcludedRanges = null;
+            clearExclusions();
             updateOptions(false);
             LineSelectionManager.getInstance(myEditor).updateHighlights();
         }
@@ -1552,58 +1631,71 @@ public class BatchReplaceForm implements Disposable {
     }
 
     private boolean isExcludedRange() {
-        return getExcludedRange() != -1;
+        return getExcludedRange() != null;
     }
 
-    private int getExcludedRange() {
-        if (myExcludedRanges != null) {
-            int iMax = myExcludedRanges.size();
-            for (int i = 0; i < iMax; i++) {
-                if (myExcludedRanges.get(i).intersects(myFoundRange.getStartOffset(), myFoundRange.getEndOffset())) {
-                    return i;
-                }
-            }
-        }
-        return -1;
+    @Nullable
+    private RangeMarker getExcludedRange() {
+        return getExcludedRange(myFoundRange);
+    }
+
+    @Nullable
+    private RangeMarker getExcludedRange(@NotNull TextRange foundRange) {
+        return myExcludedRanges == null ? null : myExcludedRanges.getIntersecting(foundRange.getStartOffset(), foundRange.getEndOffset());
     }
 
     private void replaceAll() {
         if (myEditor == null) return;
 
-        if (!myEditorSearchHighlightProvider.getHighlightPattern().pattern().isEmpty()) {
-            WriteCommandAction.runWriteCommandAction(myProject, () -> {
-                int caretOffset = myEditor.getDocument().getTextLength();
+        if (!myEditorSearchHighlightProvider.getWordMatcher().isEmpty()) {
+            Highlighter<ApplicationSettings> highlighter = LineSelectionManager.getInstance(myEditor).getHighlighter();
+            myFoundBackwards = true;
 
-                WordHighlighter<?> highlighter = (WordHighlighter<?>) LineSelectionManager.getInstance(myEditor).getHighlighter();
-                myFoundBackwards = true;
+            if (highlighter instanceof SearchWordHighlighter && myWordIndexToLineMap != null && myLineSearchData != null) {
+                // gather all non-excluded matches, then replace them in one command from last to first so earlier offsets stay valid
+                SearchWordHighlighter wordHighlighter = (SearchWordHighlighter) highlighter;
+                Document document = myEditor.getDocument();
 
-                if (highlighter != null) {
-                    // rolled in find prev code to speed things up since we do not need highlight updates in the loop
-                    while (true) {
-                        RangeHighlighter rangeHighlighter = highlighter.getPreviousRangeHighlighter(caretOffset);
-                        myFoundRange = rangeHighlighter == null ? null : TextRange.create(rangeHighlighter.getStartOffset(), rangeHighlighter.getEndOffset());
-                        myFoundIndex = myWordIndexToLineMap == null ? -1 : myWordIndexToLineMap.getOrDefault(highlighter.getOriginalIndex(rangeHighlighter), -1);
-
-                        if (myFoundRange != null && myFoundIndex != -1 && myLineSearchData != null) {
-                            if (isExcludedRange()) {
-                                caretOffset = myFoundRange.getStartOffset();
-                                continue;
-                            }
-                            String replacement = myLineSearchData.get(myFoundIndex).replace;
-                            myEditor.getDocument().replaceString(myFoundRange.getStartOffset(), myFoundRange.getEndOffset(), replacement);
-                            adjustExclusions(myFoundRange, replacement.length());
-                            caretOffset = myFoundRange.getStartOffset();
-                        } else {
-                            break;
-                        }
-                    }
+                int iMax = wordHighlighter.getRangeHighlighterCount();
+                int[] replacedStarts = new int[iMax];
+                int[] replacedEnds = new int[iMax];
+                String[] replacements = new String[iMax];
+                int replacedCount = 0;
+                int endOffset = 0;
+
+                for (int i = 0; i < iMax; i++) {
+                    RangeHighlighter rangeHighlighter = wordHighlighter.getRangeHighlighterAt(i);
+                    if (!rangeHighlighter.isValid() || rangeHighlighter.getStartOffset() < endOffset) continue;
+
+                    TextRange foundRange = TextRange.create(rangeHighlighter.getStartOffset(), rangeHighlighter.getEndOffset());
+                    int foundIndex = myWordIndexToLineMap.getOrDefault(wordHighlighter.getOriginalIndexAt(i), -1);
+                    SearchData searchData = foundIndex == -1 ? null : myLineSearchData.get(foundIndex);
+                    if (searchData == null || getExcludedRange(foundRange) != null) continue;
+
+                    endOffset = foundRange.getEndOffset();
+                    replacedStarts[replacedCount] = foundRange.getStartOffset();
+                    replacedEnds[replacedCount] = endOffset;
+                    replacements[replacedCount] = searchData.replace;
+                    replacedCount++;
                 }
 
-                //myEditor.getCaretModel().getPrimaryCaret().moveToOffset(caretOffset);
+                if (replacedCount > 0) {
+                    int count = replacedCount;
 
-                updateFoundRanges();
-                updateRangeButtons();
-            });
+                    WriteCommandAction.runWriteCommandAction(myProject, () -> {
+                        DocumentUtil.executeInBulk(document, count > 1, () -> {
+                            for (int i = count; i-- > 0; ) {
+                                document.replaceString(replacedStarts[i], replacedEnds[i], replacements[i]);
+                            }
+                        });
+                    });
+                }
+            }
+
+            myFoundRange = null;
+            myFoundIndex = -1;
+            updateFoundRanges();
+            updateRangeButtons();
         }
         focusEditor();
     }
@@ -1885,6 +1977,8 @@ public class BatchReplaceForm implements Disposable {
     private class EditorDocumentListener implements DocumentListener {
         @Override
         public void documentChanged(@NotNull final DocumentEvent event) {
+            updateLineTextCache(event);
+
             if (myBatchTandemEdit) {
                 if (!myInTandemEdit && !myInUpdate) {
                     // see if undo in progress
@@ -1899,13 +1993,22 @@ public class BatchReplaceForm implements Disposable {
                             myInTandemEdit = false;
                             myInUpdate = false;
                         }
-                        updateOptions(true);
+                        updateSearchData();
                     } else {
-                        updateOptions(true);
+                        updateSearchData();
                     }
                 }
             } else {
+                updateSearchData();
+            }
+        }
+
+        private void updateSearchData() {
+            try {
+                myIncrementalUpdate = true;
                 updateOptions(true);
+            } finally {
+                myIncrementalUpdate = false;
             }
         }
     }
@@ -1942,6 +2045,8 @@ public class BatchReplaceForm implements Disposable {
     }
 
     private class SearchWordHighlighterProvider extends MiaWordHighlightProviderImpl {
+        private @Nullable MultiWordMatcher myWordMatcher = null;
+
         SearchWordHighlighterProvider(@NotNull final ApplicationSettings settings) {
             super(settings);
         }
@@ -1950,6 +2055,67 @@ public class BatchReplaceForm implements Disposable {
         public WordHighlighter<ApplicationSettings> getHighlighter(@NotNull final Editor editor) {
             return new SearchWordHighlighter(this, editor);
         }
+
+        /**
+         * Matcher equivalent to highlight pattern, used instead of the alternation regex which backtracks
+         * on every position for large word sets
+         *
+         * @return word matcher for current highlight ranges
+         */
+        @NotNull
+        MultiWordMatcher getWordMatcher() {
+            if (myWordMatcher == null) {
+                MultiWordMatcher.Builder builder = MultiWordMatcher.builder();
+                Map<String, Integer> highlightRangeFlags = getHighlightRangeFlags();
+
+                if (highlightRangeFlags != null) {
+                    boolean caseSensitive = isHighlightCaseSensitive();
+                    boolean matchBoundary = isHighlightWordsMatchBoundary();
+
+                    for (String word : highlightRangeFlags.keySet()) {
+                        Integer flags = highlightRangeFlags.get(getAdjustedRange(word));
+                        int wordFlags = flags == null ? 0 : flags;
+                        builder.add(word
+                                , caseSensitive && (wordFlags & F_CASE_SENSITIVITY) != F_CASE_INSENSITIVE
+                                , matchBoundary && BitFieldSet.any(wordFlags, F_BEGIN_WORD)
+                                , matchBoundary && BitFieldSet.any(wordFlags, F_END_WORD)
+                        );
+                    }
+                }
+                myWordMatcher = builder.build();
+            }
+            return myWordMatcher;
+        }
+
+        @Override
+        protected void highlightRangeAdded(@NotNull final String range, final int flags, final int originalIndex) {
+            myWordMatcher = null;
+            super.highlightRangeAdded(range, flags, originalIndex);
+        }
+
+        @Override
+        protected void highlightRangeRemoved(@NotNull final String range) {
+            myWordMatcher = null;
+            super.highlightRangeRemoved(range);
+        }
+
+        @Override
+        public void clearHighlightsRaw() {
+            myWordMatcher = null;
+            super.clearHighlightsRaw();
+        }
+
+        @Override
+        public void setHighlightCaseSensitive(final boolean highlightCaseSensitive) {
+            myWordMatcher = null;
+            super.setHighlightCaseSensitive(highlightCaseSensitive);
+        }
+
+        @Override
+        public void setHighlightWordsMatchBoundary(final boolean highlightWordsMatchBoundary) {
+            myWordMatcher = null;
+            super.setHighlightWordsMatchBoundary(highlightWordsMatchBoundary);
+        }
     }
 
     private class EditorLineHighlighterProvider extends MiaLineHighlightProviderImpl {
@@ -1966,24 +2132,70 @@ public class BatchReplaceForm implements Disposable {
         public LineHighlighter<ApplicationSettings> getHighlighter(@NotNull final Editor editor) {
             return new EditorLineHighlighter(this, editor);
         }
+
+        void setHighlightLine(int line, int index) {
+            Integer lineIndex = myHighlightLines == null ? null : myHighlightLines.get(line);
+            if (lineIndex == null || lineIndex != index) {
+                int highlightIndex = getHighlightIndex();
+                setHighlightIndex(index);
+                addHighlightLine(line, true);
+                setHighlightIndex(Math.max(highlightIndex, index + 1));
+            }
+        }
     }
 
-    private class SearchWordHighlighter extends WordHighlighter<ApplicationSettings> {
-        SearchWordHighlighter(@NotNull WordHighlightProvider<ApplicationSettings> highlightProvider, @NotNull final Editor editor) {
+    private class SearchWordHighlighter extends MiaWordHighlighter {
+        private final SearchWordHighlighterProvider myWordHighlightProvider;
+
+        SearchWordHighlighter(@NotNull SearchWordHighlighterProvider highlightProvider, @NotNull final Editor editor) {
             super(highlightProvider, editor);
+            myWordHighlightProvider = highlightProvider;
+        }
+
+        int getRangeHighlighterCount() {
+            return myHighlighters == null || myHighlighterIndexList == null ? 0 : Math.min(myHighlighters.size(), myHighlighterIndexList.size());
+        }
+
+        @NotNull
+        RangeHighlighter getRangeHighlighterAt(int index) {
+            return myHighlighters.get(index);
+        }
+
+        int getOriginalIndexAt(int index) {
+            return myHighlighterIndexList.get(index);
+        }
+
+        @Override
+        protected boolean isHighlightAvailable() {
+            return myWordHighlightProvider.getHighlightRangeFlags() != null && !myWordHighlightProvider.getWordMatcher().isEmpty();
+        }
+
+        @Nullable
+        @Override
+        protected Object getPatternVersion() {
+            return myWordHighlightProvider.getWordMatcher();
+        }
+
+        @Override
+        protected int getMaxWordLength() {
+            return myWordHighlightProvider.getWordMatcher().getMaxLength();
+        }
+
+        @Override
+        protected void findMatches(@NotNull final Object patternVersion, @NotNull final WordIndexSnapshot wordIndices, @NotNull final CharSequence charSequence, final int startOffset, final int endOffset, @NotNull final WordMatchList matches) {
+            ((MultiWordMatcher) patternVersion).findAll(charSequence, startOffset, endOffset, (matchStart, matchEnd, wordIndex) -> {
+                String word = charSequence.subSequence(matchStart, matchEnd).toString();
+                matches.add(matchStart, matchEnd, wordIndices.getIndex(word));
+            });
         }
 
         @Override
         public TextAttributes getAttributes(@Nullable final TextAttributes attributes, final String word, final int startOffset, final int endOffset) {
             if (attributes != null) {
-                if (myExcludedRanges != null) {
-                    for (TextRange range : myExcludedRanges) {
-                        if (range.containsRange(startOffset, endOffset)) {
-                            EditorColorsScheme uiTheme = EditorColorsManager.getInstance().getGlobalScheme();
-                            Color foreground = uiTheme.getDefaultForeground();
-                            return new TextAttributes(attributes.getForegroundColor(), attributes.getBackgroundColor(), foreground, EffectType.STRIKEOUT, attributes.getFontType());
-                        }
-                    }
+                if (myExcludedRanges != null && myExcludedRanges.getContaining(startOffset, endOffset) != null) {
+                    EditorColorsScheme uiTheme = EditorColorsManager.getInstance().getGlobalScheme();
+                    Color foreground = uiTheme.getDefaultForeground();
+                    return new TextAttributes(attributes.getForegroundColor(), attributes.getBackgroundColor(), foreground, EffectType.STRIKEOUT, attributes.getFontType());
                 }
                 if (myFoundRange != null && myFoundRange.containsRange(startOffset, endOffset)) {
                     EditorColorsScheme uiTheme = EditorColorsManager.getInstance().getGlobalScheme();
@@ -4,11 +4,14 @@ package com.vladsch.MissingInActions.actions.pattern;
 import com.intellij.openapi.editor.Caret;
 import com.intellij.openapi.editor.CaretState;
 import com.intellij.openapi.editor.Editor;
+import com.vladsch.MissingInActions.manager.CaretCoordinateSet;
+import com.vladsch.MissingInActions.manager.CaretUtils;
 import com.vladsch.MissingInActions.manager.EditorCaret;
 import com.vladsch.MissingInActions.manager.EditorPosition;
 import com.vladsch.MissingInActions.manager.LineSelectionManager;
 import com.vladsch.MissingInActions.settings.ApplicationSettings;
 import com.vladsch.MissingInActions.util.EditHelpers;
+import com.vladsch.MissingInActions.util.MiaDiagnostics;
 import com.vladsch.ReverseRegEx.util.ForwardPattern;
 import com.vladsch.ReverseRegEx.util.RegExMatcher;
 import com.vladsch.ReverseRegEx.util.RegExPattern;
@@ -19,10 +22,9 @@ import com.vladsch.flexmark.util.sequence.Range;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -30,13 +32,20 @@ public class CaretSpawningSearchHandler extends RegExCaretSearchHandler {
     public static final CharPredicate DECIMAL_DIGITS = CharPredicate.anyOf("0123456789");
     public static final CharPredicate HEXADECIMAL_DIGITS = CharPredicate.anyOf("01234567890ABCDEFabcdef");
     public static final CharPredicate OCTAL_DIGITS = CharPredicate.anyOf("01234567");
+    public static final int PATTERN_CACHE_SIZE = 32;
+
+    // compiled spawn patterns keyed by direction, flags and pattern text, cleared when settings change
+    private static final LinkedHashMap<String, RegExPattern> ourPatternCache = newPatternCache();
+    // compiled spawn patterns keyed by caret context, kept apart so context misses do not evict compiled patterns
+    private static final LinkedHashMap<String, RegExPattern> ourContextPatternCache = newPatternCache();
+
     private boolean myLineMode;
     private boolean mySingleLine;
     private boolean mySingleMatch;
     private boolean myMoveFirstMatch;
     private boolean myCaseSensitive;
     private RegExPattern myPattern;
-    private Set<Caret> myStartSearchCarets;
+    private CaretCoordinateSet myStartSearchCarets;
     private List<CaretState> myStartCarets;
     private Caret myPatternCaret;
     private boolean myCaretToEndGroup;
@@ -92,17 +101,21 @@ public class CaretSpawningSearchHandler extends RegExCaretSearchHandler {
     protected boolean updateCarets(final Editor editor, final List<Caret> caretList) {
         LineSelectionManager manager = LineSelectionManager.getInstance(editor);
         if (mySingleMatch) {
-            List<Caret> startMatchedCarets = new ArrayList<>();
-            for (Caret caret : caretList) {
-                for (Caret startCaret : myStartSearchCarets) {
-                    if (startCaret.getLogicalPosition().line == caret.getLogicalPosition().line) {
-                        startMatchedCarets.add(startCaret);
-                        break;
-                    }
+            // start carets are sorted by line so the start caret on a found caret's line is a binary search away
+            CaretCoordinateSet foundCarets = CaretUtils.getCoordinateSet(caretList);
+            CaretCoordinateSet startMatchedCarets = null;
+
+            if (myStartSearchCarets != null && foundCarets != null) {
+                long[] startMatched = new long[foundCarets.size()];
+                int startMatchedCount = 0;
+                for (long coordinates : foundCarets.toArray()) {
+                    long startCoordinates = myStartSearchCarets.getLineCoordinates(CaretCoordinateSet.getLine(coordinates));
+                    if (startCoordinates != -1) startMatched[startMatchedCount++] = startCoordinates;
                 }
+                startMatchedCarets = new CaretCoordinateSet(startMatched, startMatchedCount);
             }
 
-            manager.setSearchFoundCaretSpawningHandler(this, myStartCarets, myStartSearchCarets, startMatchedCarets, caretList);
+            manager.setSearchFoundCaretSpawningHandler(this, myStartCarets, myStartSearchCarets, startMatchedCarets, foundCarets);
             return false;
         } else {
             // just regular carets
@@ -116,7 +129,7 @@ public class CaretSpawningSearchHandler extends RegExCaretSearchHandler {
         if (mySingleMatch) {
             // search forwards/backwards
             myStartCarets = editor.getCaretModel().getCaretsAndSelections();
-            myStartSearchCarets = new HashSet<>(editor.getCaretModel().getAllCarets());
+            myStartSearchCarets = CaretUtils.getCoordinateSet(editor.getCaretModel().getAllCarets());
         }
         myPatternCaret = editor.getCaretModel().getPrimaryCaret();
     }
@@ -242,8 +255,10 @@ public class CaretSpawningSearchHandler extends RegExCaretSearchHandler {
             boolean spawnNumericHexSearch = ApplicationSettings.getInstance().isSpawnNumericHexSearch();
             boolean spawnSmartPrefixSearch = ApplicationSettings.getInstance().isSpawnSmartPrefixSearch();
             boolean spawnMatchBoundarySearch = ApplicationSettings.getInstance().isSpawnMatchBoundarySearch();
-            String patternText;
+            String patternText = null;
             int searchFlags = 0;
+            String contextKey = null;
+            RegExPattern pattern = null;
 
             // check what is ahead of caret
             char c = myBackwards ? offset == 0 || caretPos.column - 1 >= endOfLineColumn ? ' ' : chars.charAt(offset - 1)
@@ -267,27 +282,32 @@ public class CaretSpawningSearchHandler extends RegExCaretSearchHandler {
                 }
 
                 BasedSequence text = chars.subSequence(start, end);
-                boolean hexPrefix = spawnNumericHexSearch && isHexPrefix(text);
-                String endBreak = getEndBreak(text);
-                String startBreak = getStartBreak(text);
-                boolean isNumericSpawnSearch = isNumericSearch(text, hexPrefix, spawnNumericSearch, spawnNumericHexSearch);
-
                 boolean isStart = myBackwards ? offset >= chars.length() || !EditHelpers.isIdentifierPart(chars.charAt(offset))
                         : offset == 0 || !EditHelpers.isIdentifierPart(chars.charAt(offset - 1));
 
-                if (isNumericSpawnSearch) {
-                    // hex, octal or decimal, look for numeric sequence
-                    patternText = getNumericPatternText(spawnNumericHexSearch, isStart, hexPrefix, startBreak);
-                } else {
-                    // if these are numbers make sure we match start/end word only
-                    boolean isNumericSearch = isNumeric(text, hexPrefix);
-                    String quotedText = getSmartPrefixedText(text.toString(), isStart && spawnSmartPrefixSearch);
+                contextKey = getContextKey('I', isStart, spawnNumericSearch, spawnNumericHexSearch, spawnSmartPrefixSearch, spawnMatchBoundarySearch, text);
+                pattern = getContextPattern(contextKey);
 
-                    String startPattern = spawnMatchBoundarySearch && (myBackwards || isStart) ? startBreak : (isNumericSearch && (myBackwards || isStart) ? "(?<!\\d|[a-fA-F])" : "");
-                    String endPattern = spawnMatchBoundarySearch && (!myBackwards || isStart) ? endBreak : (isNumericSearch && (!myBackwards || isStart) ? "(?!\\d|[a-fA-F])" : "");
+                if (pattern == null) {
+                    boolean hexPrefix = spawnNumericHexSearch && isHexPrefix(text);
+                    String endBreak = getEndBreak(text);
+                    String startBreak = getStartBreak(text);
+                    boolean isNumericSpawnSearch = isNumericSearch(text, hexPrefix, spawnNumericSearch, spawnNumericHexSearch);
 
-                    searchFlags = myCaseSensitive && !(spawnSmartPrefixSearch && !isStart) ? 0 : Pattern.CASE_INSENSITIVE;
-                    patternText = startPattern + "(" + quotedText + ")" + endPattern;
+                    if (isNumericSpawnSearch) {
+                        // hex, octal or decimal, look for numeric sequence
+                        patternText = getNumericPatternText(spawnNumericHexSearch, isStart, hexPrefix, startBreak);
+                    } else {
+                        // if these are numbers make sure we match start/end word only
+                        boolean isNumericSearch = isNumeric(text, hexPrefix);
+                        String quotedText = getSmartPrefixedText(text.toString(), isStart && spawnSmartPrefixSearch);
+
+                        String startPattern = spawnMatchBoundarySearch && (myBackwards || isStart) ? startBreak : (isNumericSearch && (myBackwards || isStart) ? "(?<!\\d|[a-fA-F])" : "");
+                        String endPattern = spawnMatchBoundarySearch && (!myBackwards || isStart) ? endBreak : (isNumericSearch && (!myBackwards || isStart) ? "(?!\\d|[a-fA-F])" : "");
+
+                        searchFlags = myCaseSensitive && !(spawnSmartPrefixSearch && !isStart) ? 0 : Pattern.CASE_INSENSITIVE;
+                        patternText = startPattern + "(" + quotedText + ")" + endPattern;
+                    }
                 }
             } else {
                 if (mySingleMatch) {
@@ -304,18 +324,92 @@ public class CaretSpawningSearchHandler extends RegExCaretSearchHandler {
                         while (end < range.getEnd() && c == chars.charAt(end)) end++;
                     }
 
-                    String quote = Pattern.quote(chars.subSequence(start, end).toString());
-                    patternText = "(?<!" + Pattern.quote(String.valueOf(c)) + ")(" + quote + ")(?!" + Pattern.quote(String.valueOf(c)) + ")";
+                    BasedSequence text = chars.subSequence(start, end);
+                    contextKey = getContextKey('C', false, false, false, false, false, text);
+                    pattern = getContextPattern(contextKey);
+
+                    if (pattern == null) {
+                        String quote = Pattern.quote(text.toString());
+                        patternText = "(?<!" + Pattern.quote(String.valueOf(c)) + ")(" + quote + ")(?!" + Pattern.quote(String.valueOf(c)) + ")";
+                    }
                 }
             }
 
-            myPattern = myBackwards ? ReversePattern.compile(patternText, searchFlags)
-                    : ForwardPattern.compile(patternText, searchFlags);
+            if (pattern == null) {
+                pattern = getCachedPattern(patternText, searchFlags, myBackwards);
+                if (contextKey != null) putContextPattern(contextKey, pattern);
+            }
+            myPattern = pattern;
         }
 
         return myPattern;
     }
 
+    @NotNull
+    private static LinkedHashMap<String, RegExPattern> newPatternCache() {
+        return new LinkedHashMap<String, RegExPattern>(PATTERN_CACHE_SIZE, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, RegExPattern> eldest) {
+                return size() > PATTERN_CACHE_SIZE;
+            }
+        };
+    }
+
+    @NotNull
+    static RegExPattern getCachedPattern(@NotNull String patternText, int searchFlags, boolean isReversed) {
+        String key = (isReversed ? "R:" : "F:") + searchFlags + ":" + patternText;
+        synchronized (ourPatternCache) {
+            RegExPattern pattern = ourPatternCache.get(key);
+            if (pattern == null) {
+                long startTime = MiaDiagnostics.startTime();
+                pattern = isReversed ? ReversePattern.compile(patternText, searchFlags) : ForwardPattern.compile(patternText, searchFlags);
+                MiaDiagnostics.recordTime(MiaDiagnostics.REGEX_COMPILE, "CaretSpawningSearchHandler", startTime);
+                ourPatternCache.put(key, pattern);
+            }
+            return pattern;
+        }
+    }
+
+    /**
+     * Key of the caret context from which a spawn pattern is built, the context pattern cache is cleared when settings change
+     */
+    @NotNull
+    private String getContextKey(char type, boolean isStart, boolean numeric, boolean numericHex, boolean smartPrefix, boolean matchBoundary, @NotNull CharSequence text) {
+        StringBuilder sb = new StringBuilder(text.length() + 12);
+        sb.append(type)
+                .append(myBackwards ? 'R' : 'F')
+                .append(myCaseSensitive ? 'C' : 'I')
+                .append(isStart ? 'S' : '-')
+                .append(numeric ? 'N' : '-')
+                .append(numericHex ? 'H' : '-')
+                .append(smartPrefix ? 'P' : '-')
+                .append(matchBoundary ? 'B' : '-')
+                .append(':').append(text);
+        return sb.toString();
+    }
+
+    @Nullable
+    private static RegExPattern getContextPattern(@NotNull String contextKey) {
+        synchronized (ourContextPatternCache) {
+            return ourContextPatternCache.get(contextKey);
+        }
+    }
+
+    private static void putContextPattern(@NotNull String contextKey, @NotNull RegExPattern pattern) {
+        synchronized (ourContextPatternCache) {
+            ourContextPatternCache.put(contextKey, pattern);
+        }
+    }
+
+    public static void clearPatternCache() {
+        synchronized (ourPatternCache) {
+            ourPatternCache.clear();
+        }
+        synchronized (ourContextPatternCache) {
+            ourContextPatternCache.clear();
+        }
+    }
+
     @NotNull
     private static String getStartBreak(final BasedSequence text) {
         return text.charAt(0) == '$' ? "(?<!\\Q$\\E|\\w)" : "\\b";
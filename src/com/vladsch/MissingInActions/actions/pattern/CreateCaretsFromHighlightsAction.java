@@ -4,17 +4,16 @@ package com.vladsch.MissingInActions.actions.pattern;
 import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.actionSystem.PlatformDataKeys;
-import com.intellij.openapi.editor.Caret;
 import com.intellij.openapi.editor.CaretModel;
 import com.intellij.openapi.editor.CaretState;
 import com.intellij.openapi.editor.Editor;
-import com.intellij.openapi.editor.VisualPosition;
 import com.intellij.openapi.editor.ex.EditorEx;
 import com.intellij.openapi.editor.markup.RangeHighlighter;
 import com.intellij.openapi.project.DumbAware;
 import com.vladsch.MissingInActions.Plugin;
 import com.vladsch.MissingInActions.actions.ActionUtils;
 import com.vladsch.MissingInActions.actions.LineSelectionAware;
+import com.vladsch.MissingInActions.manager.CaretBatch;
 import com.vladsch.MissingInActions.manager.EditorCaret;
 import com.vladsch.MissingInActions.manager.EditorCaretState;
 import com.vladsch.MissingInActions.manager.LineSelectionManager;
@@ -66,55 +65,45 @@ public class CreateCaretsFromHighlightsAction extends AnAction implements LineSe
                 int selectionStart = editorCaret.getSelectionStart().getOffset();
                 int selectionEnd = editorCaret.getSelectionEnd().getOffset();
 
+                CaretBatch caretBatch = new CaretBatch(manager);
+
                 if (caretModel.getCaretCount() == 1) {
                     editor.getSelectionModel().removeSelection();
                     int offset = selectionStart;
-                    Caret caret = null;
 
                     while (offset < selectionEnd) {
-                        boolean newPrimary = caret == null;
-                        RangeHighlighter rangeHighlighter = getRangeHighlighter(highlighter, offset, caret != null);
+                        RangeHighlighter rangeHighlighter = getRangeHighlighter(highlighter, offset, !caretBatch.isEmpty());
 
                         if (rangeHighlighter != null && rangeHighlighter.getEndOffset() <= selectionEnd) {
-                            VisualPosition visualPosition = editor.offsetToVisualPosition(rangeHighlighter.getEndOffset());
-                            caret = caretModel.addCaret(visualPosition, newPrimary);
-                            if (caret == null) break;
-                            if (newPrimary) caretModel.removeSecondaryCarets();
-                            caret.setSelection(rangeHighlighter.getStartOffset(), rangeHighlighter.getEndOffset());
+                            caretBatch.addCaret(rangeHighlighter.getEndOffset(), rangeHighlighter.getStartOffset(), rangeHighlighter.getEndOffset());
                             offset = rangeHighlighter.getEndOffset();
                             continue;
                         }
                         break;
                     }
+
+                    if (!caretBatch.isEmpty()) {
+                        caretBatch.apply();
+                    }
                 } else {
                     // we adjust each caret's selection
-                    Caret caret = null;
-
                     List<CaretState> caretStates = caretModel.getCaretsAndSelections();
-                    editor.getSelectionModel().removeSelection();
-                    caretModel.removeSecondaryCarets();
 
                     for (CaretState state : caretStates) {
-                        boolean isHighlighted = false;
-                        boolean newPrimary = caret == null;
                         EditorCaretState caretState = new EditorCaretState(manager.getPositionFactory(), state);
                         if (!(caretState.getSelectionStart() != null && caretState.getSelectionEnd() != null && caretState.hasSelection())) continue;
 
                         if (caretState.getSelectionStart().getOffset() < caretState.getSelectionEnd().getOffset()) {
                             RangeHighlighter rangeHighlighter = getRangeHighlighter(highlighter, caretState.getSelectionStart().getOffset(), false);
                             if (rangeHighlighter != null && rangeHighlighter.getEndOffset() <= caretState.getSelectionEnd().getOffset()) {
-                                VisualPosition visualPosition = editor.offsetToVisualPosition(rangeHighlighter.getEndOffset());
-                                caret = caretModel.addCaret(visualPosition, newPrimary);
-                                if (caret == null) break;
-                                if (newPrimary) caretModel.removeSecondaryCarets();
-                                caret.setSelection(rangeHighlighter.getStartOffset(), rangeHighlighter.getEndOffset());
+                                caretBatch.addCaret(rangeHighlighter.getEndOffset(), rangeHighlighter.getStartOffset(), rangeHighlighter.getEndOffset());
                             }
                         }
                     }
 
-                    if (caret == null) {
-                        // don't remove anything. The user can do it easily enough
-                        caretModel.setCaretsAndSelections(caretStates);
+                    // if none found, don't remove anything. The user can do it easily enough
+                    if (!caretBatch.isEmpty()) {
+                        caretBatch.apply();
                     }
                 }
             }
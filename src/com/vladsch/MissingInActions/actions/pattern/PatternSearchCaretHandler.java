@@ -12,6 +12,11 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import static com.vladsch.MissingInActions.manager.CaretUtils.getCoordinates;
 
 @SuppressWarnings("WeakerAccess")
 abstract public class PatternSearchCaretHandler<T> extends RangeLimitedCaretSpawningHandler {
@@ -59,37 +64,102 @@ abstract public class PatternSearchCaretHandler<T> extends RangeLimitedCaretSpaw
     @Nullable
     protected abstract T prepareMatcher(@NotNull LineSelectionManager manager, @NotNull Caret caret, @NotNull Range range, @NotNull BasedSequence chars);
 
+    /**
+     * Called after carets were performed, matcher kept between carets can be released
+     */
+    protected void releaseMatcher() {
+
+    }
+
+    /**
+     * Perform carets in range order with the same document sequence, carets with the same pattern share its matcher
+     * <p>
+     * Each caret's range is still searched separately with its own matcher region, not in a single scan of the document,
+     * so matches are the same as when performing each caret on its own.
+     */
+    @Override
+    protected void performAll(@NotNull LineSelectionManager manager, @NotNull List<Caret> caretList, @NotNull Map<Caret, Range> caretRanges, @NotNull ArrayList<CaretState> createCarets, @NotNull Map<Long, Caret> keptCarets) {
+        ArrayList<Caret> rangeCarets = new ArrayList<>(caretList.size());
+        for (Caret caret : caretList) {
+            if (caretRanges.get(caret) != null) rangeCarets.add(caret);
+        }
+
+        // carets are normally in document order already, stable sort keeps the order of equal ranges
+        rangeCarets.sort(Comparator.comparingInt(caret -> caretRanges.get(caret).getStart()));
+
+        final BasedSequence chars = BasedSequence.of(manager.getEditor().getDocument().getCharsSequence());
+        try {
+            for (Caret caret : rangeCarets) {
+                if (perform(manager, caret, caretRanges.get(caret), createCarets, chars)) {
+                    keptCarets.put(getCoordinates(caret), caret);
+                }
+            }
+        } finally {
+            releaseMatcher();
+        }
+    }
+
     protected boolean perform(@NotNull LineSelectionManager manager, @NotNull Caret caret, @NotNull Range range, @NotNull ArrayList<CaretState> createCarets) {
-        Editor editor = caret.getEditor();
-        final BasedSequence chars = BasedSequence.of(editor.getDocument().getCharsSequence());
-        boolean keepCaret = !isMoveFirstMatch();
+        final BasedSequence chars = BasedSequence.of(caret.getEditor().getDocument().getCharsSequence());
+        try {
+            return perform(manager, caret, range, createCarets, chars);
+        } finally {
+            releaseMatcher();
+        }
+    }
 
+    protected boolean perform(@NotNull LineSelectionManager manager, @NotNull Caret caret, @NotNull Range range, @NotNull ArrayList<CaretState> createCarets, @NotNull BasedSequence chars) {
+        ArrayList<CaretMatch> matches = new ArrayList<>();
         T matcher = prepareMatcher(manager, caret, range, chars);
         if (matcher != null) {
-            // forward search withing range in document
-            CaretMatch lastMatch = null;
-            while (true) {
-                CaretMatch match = nextMatch(matcher, chars, range, lastMatch);
-                if (match == null) break;
-
-                // found it, create or move caret here
-                if (!keepCaret) {
-                    keepCaret = true;
-                    if (isMoveFirstMatch()) {
-                        caret.moveToOffset(match.caretOffset);
-                        caret.setSelection(match.selectionStart, match.selectionEnd);
-                    }
-                } else {
-                    // create a new position if caret moved
-                    LogicalPosition offset = editor.offsetToLogicalPosition(match.caretOffset);
-                    LogicalPosition startOffset = editor.offsetToLogicalPosition(match.selectionStart);
-                    LogicalPosition endOffset = editor.offsetToLogicalPosition(match.selectionEnd);
-                    CaretState caretState = new CaretState(offset, startOffset, endOffset);
-                    createCarets.add(caretState);
-                }
+            collectMatches(matcher, chars, range, matches);
+        }
+        return performMatches(caret, matches, createCarets);
+    }
+
+    /**
+     * Collect matches of a prepared matcher within range, only the first one for single match
+     */
+    protected void collectMatches(@NotNull T matcher, @NotNull BasedSequence chars, @NotNull Range range, @NotNull List<CaretMatch> matches) {
+        // forward search withing range in document
+        CaretMatch lastMatch = null;
+        while (true) {
+            CaretMatch match = nextMatch(matcher, chars, range, lastMatch);
+            if (match == null) break;
+
+            matches.add(match);
+            if (isSingleMatch()) break;
+            lastMatch = match;
+        }
+    }
 
-                if (isSingleMatch()) break;
-                lastMatch = match;
+    /**
+     * Move caret to or create carets at matches found for the caret
+     *
+     * @param caret        searched caret
+     * @param matches      matches found for the caret
+     * @param createCarets carets to create
+     * @return true if caret is to be kept
+     */
+    protected boolean performMatches(@NotNull Caret caret, @NotNull List<CaretMatch> matches, @NotNull ArrayList<CaretState> createCarets) {
+        Editor editor = caret.getEditor();
+        boolean keepCaret = !isMoveFirstMatch();
+
+        for (CaretMatch match : matches) {
+            // found it, create or move caret here
+            if (!keepCaret) {
+                keepCaret = true;
+                if (isMoveFirstMatch()) {
+                    caret.moveToOffset(match.caretOffset);
+                    caret.setSelection(match.selectionStart, match.selectionEnd);
+                }
+            } else {
+                // create a new position if caret moved
+                LogicalPosition offset = editor.offsetToLogicalPosition(match.caretOffset);
+                LogicalPosition startOffset = editor.offsetToLogicalPosition(match.selectionStart);
+                LogicalPosition endOffset = editor.offsetToLogicalPosition(match.selectionEnd);
+                CaretState caretState = new CaretState(offset, startOffset, endOffset);
+                createCarets.add(caretState);
             }
         }
 
@@ -6,13 +6,13 @@ import com.intellij.openapi.editor.Caret;
 import com.intellij.openapi.editor.CaretModel;
 import com.intellij.openapi.editor.CaretState;
 import com.intellij.openapi.editor.Editor;
-import com.intellij.openapi.editor.LogicalPosition;
 import com.intellij.openapi.editor.actionSystem.EditorActionHandler;
 import com.vladsch.MissingInActions.actions.ActionUtils;
 import com.vladsch.MissingInActions.actions.CaretOffsetPreserver;
-import com.vladsch.MissingInActions.manager.CaretUtils;
+import com.vladsch.MissingInActions.manager.CaretBatch;
 import com.vladsch.MissingInActions.manager.LineSelectionManager;
 import com.vladsch.MissingInActions.util.EditHelpers;
+import com.vladsch.MissingInActions.util.MiaWatchdog;
 import com.vladsch.flexmark.util.sequence.BasedSequence;
 import com.vladsch.flexmark.util.sequence.Range;
 import org.jetbrains.annotations.NotNull;
@@ -21,9 +21,11 @@ import org.jetbrains.annotations.Nullable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static com.vladsch.MissingInActions.manager.CaretUtils.getCoordinates;
 
@@ -72,6 +74,26 @@ abstract public class RangeLimitedCaretSpawningHandler extends EditorActionHandl
     // execute pattern match
     protected abstract boolean perform(@NotNull LineSelectionManager manager, @NotNull Caret caret, @NotNull Range range, @NotNull ArrayList<CaretState> createCarets);
 
+    /**
+     * execute pattern match for all carets which have a range
+     *
+     * @param manager      line selection manager
+     * @param caretList    carets in document order
+     * @param caretRanges  limited caret ranges, carets without a range are skipped
+     * @param createCarets carets to create
+     * @param keptCarets   carets to keep, by coordinates
+     */
+    protected void performAll(@NotNull LineSelectionManager manager, @NotNull List<Caret> caretList, @NotNull Map<Caret, Range> caretRanges, @NotNull ArrayList<CaretState> createCarets, @NotNull Map<Long, Caret> keptCarets) {
+        for (Caret caret : caretList) {
+            Range range = caretRanges.get(caret);
+            if (range == null) continue;
+
+            if (perform(manager, caret, range, createCarets)) {
+                keptCarets.put(getCoordinates(caret), caret);
+            }
+        }
+    }
+
     protected abstract String getPattern();
 
     protected abstract void setPattern(String pattern);
@@ -80,15 +102,89 @@ abstract public class RangeLimitedCaretSpawningHandler extends EditorActionHandl
 
     protected abstract void preparePattern(@NotNull LineSelectionManager manager, @NotNull Caret caret, @NotNull Range range, @NotNull BasedSequence chars);
 
+    /**
+     * @param caretList carets in document order
+     * @return limited caret ranges, carets without a range are not searched
+     */
+    @NotNull
+    protected Map<Caret, Range> getCaretRanges(@NotNull List<Caret> caretList) {
+        Map<Caret, Range> caretRanges = new HashMap<>();
+
+        for (Caret caret : caretList) {
+            Range range = EditHelpers.getCaretRange(caret, myBackwards, isLineMode(), isSingleLine());
+            caretRanges.put(caret, range);
+        }
+
+        return EditHelpers.limitCaretRange(myBackwards, caretRanges, wantEmptyRanges());
+    }
+
+    /**
+     * Keep and create carets found by a search of the carets in caret list
+     *
+     * @param manager      line selection manager
+     * @param editor       editor
+     * @param caretList    searched carets
+     * @param keptCarets   carets to keep, by coordinates
+     * @param createCarets carets to create
+     * @param preserver    primary caret offset before the search
+     */
+    protected void applyCarets(@NotNull LineSelectionManager manager, @NotNull Editor editor, @NotNull List<Caret> caretList, @NotNull Map<Long, Caret> keptCarets, @NotNull ArrayList<CaretState> createCarets, @NotNull CaretOffsetPreserver preserver) {
+        CaretModel caretModel = editor.getCaretModel();
+        List<Caret> createdCarets;
+        CaretBatch caretBatch = new CaretBatch(manager);
+
+        if (keptCarets.isEmpty() && createCarets.isEmpty()) {
+            // remove all but primary
+            caretBatch.apply();
+            createdCarets = new ArrayList<>();
+        } else {
+            // keep only ones in list and carets which were not searched
+            for (Caret caret : keptCarets.values()) {
+                caretBatch.keepCaret(caret);
+            }
+
+            if (caretList.size() != caretModel.getCaretCount()) {
+                Set<Caret> searchedCarets = new HashSet<>(caretList);
+                for (Caret caret : caretModel.getAllCarets()) {
+                    if (!searchedCarets.contains(caret)) caretBatch.keepCaret(caret);
+                }
+            }
+
+            // create new carets, primary caret moves to first created if it is not kept
+            for (CaretState caretState : createCarets) {
+                if (caretState.getCaretPosition() != null) {
+                    caretBatch.addCaret(caretState);
+                }
+            }
+
+            caretBatch.apply();
+            createdCarets = caretBatch.getAddedCarets();
+        }
+
+        if (updateCarets(editor, createdCarets)) {
+            for (Caret caret : editor.getCaretModel().getAllCarets()) {
+                preserver.tryCaret(caret);
+            }
+
+            int matchedIndex = preserver.getMatchedIndex();
+            ActionUtils.setPrimaryCaretIndex(editor, matchedIndex, false);
+        }
+    }
+
     @Override
     public void doExecute(@NotNull final Editor editor, final @Nullable Caret caret, final DataContext dataContext) {
-        final LineSelectionManager manager = LineSelectionManager.getInstance(editor);
+        long watchToken = MiaWatchdog.start("doExecute", getClass());
+        try {
+            final LineSelectionManager manager = LineSelectionManager.getInstance(editor);
 
-        analyzeContext(editor, caret, manager);
+            analyzeContext(editor, caret, manager);
 
-        manager.guard(() -> {
-            doAction(manager, editor, caret, getPatternCaret());
-        });
+            manager.guard(() -> {
+                doAction(manager, editor, caret, getPatternCaret());
+            });
+        } finally {
+            MiaWatchdog.end(watchToken, editor.getCaretModel().getCaretCount(), editor.getDocument().getTextLength());
+        }
     }
 
     public void doAction(final LineSelectionManager manager, final Editor editor, final @Nullable Caret editCaret, @Nullable final Caret patternCaret) {
@@ -102,22 +198,10 @@ abstract public class RangeLimitedCaretSpawningHandler extends EditorActionHandl
             Range range = EditHelpers.getCaretRange(useCaret, myBackwards, isLineMode(), isSingleLine());
             if (range != null) perform(manager, useCaret, range, createList);
         } else {
-            List<Caret> caretList;
-            boolean removePrimary;
-            boolean removedPrimary = false;
-            Caret primaryCaret;
-
-            caretList = caretModel.getAllCarets();
-            primaryCaret = caretModel.getPrimaryCaret();
+            List<Caret> caretList = caretModel.getAllCarets();
+            Caret primaryCaret = caretModel.getPrimaryCaret();
             CaretOffsetPreserver preserver = new CaretOffsetPreserver(primaryCaret.getOffset());
-            Map<Caret, Range> caretRanges = new HashMap<>();
-
-            for (Caret caret : caretList) {
-                Range range = EditHelpers.getCaretRange(caret, myBackwards, isLineMode(), isSingleLine());
-                caretRanges.put(caret, range);
-            }
-
-            caretRanges = EditHelpers.limitCaretRange(myBackwards, caretRanges, wantEmptyRanges());
+            Map<Caret, Range> caretRanges = getCaretRanges(caretList);
 
             if (useCaret == null) {
                 if (patternCaret != null) {
@@ -129,17 +213,9 @@ abstract public class RangeLimitedCaretSpawningHandler extends EditorActionHandl
                 }
 
                 // here we adjust
-                for (Caret caret : caretList) {
-                    Range range = caretRanges.get(caret);
-                    if (range == null) continue;
-
-                    if (perform(manager, caret, range, createList)) {
-                        keptCarets.put(getCoordinates(caret), caret);
-                    }
-                }
+                performAll(manager, caretList, caretRanges, createList, keptCarets);
             } else {
                 caretList = Collections.singletonList(useCaret);
-                primaryCaret = useCaret;
                 Range range = caretRanges.get(useCaret);
 
                 if (range != null) {
@@ -149,55 +225,7 @@ abstract public class RangeLimitedCaretSpawningHandler extends EditorActionHandl
                 }
             }
 
-            removePrimary = !keptCarets.containsKey(CaretUtils.getCoordinates(primaryCaret));
-            List<Caret> createdCarets = new ArrayList<>();
-
-            if (keptCarets.isEmpty() && createList.isEmpty()) {
-                // remove all but primary
-                caretModel.removeSecondaryCarets();
-            } else {
-                // create new carets
-                for (CaretState caretState : createList) {
-                    LogicalPosition caretPosition = caretState.getCaretPosition();
-                    if (caretPosition != null) {
-                        Caret newCaret = removePrimary ? primaryCaret : caretModel.addCaret(editor.logicalToVisualPosition(caretPosition));
-                        if (newCaret != null) {
-                            EditHelpers.restoreState(newCaret, caretState, false);
-                            removePrimary = false;
-                            createdCarets.add(newCaret);
-                        } else {
-                            // caret already exists, we add that one
-                            if (keptCarets.containsKey(getCoordinates(caretPosition))) {
-                                createdCarets.add(keptCarets.get(getCoordinates(caretPosition)));
-                            }
-                        }
-                    }
-                }
-
-                if (removePrimary) {
-                    // move primary to first kept and remove first
-                    Caret firstCaret = keptCarets.values().iterator().next();
-                    primaryCaret.moveToLogicalPosition(firstCaret.getLogicalPosition());
-                    primaryCaret.setSelection(firstCaret.getSelectionStart(), firstCaret.getSelectionEnd());
-                    keptCarets.remove(CaretUtils.getCoordinates(firstCaret));
-                }
-
-                // keep only ones in list
-                for (Caret caret1 : caretList) {
-                    if (!keptCarets.containsKey(CaretUtils.getCoordinates(caret1))) {
-                        caretModel.removeCaret(caret1);
-                    }
-                }
-            }
-
-            if (updateCarets(editor, createdCarets)) {
-                for (Caret caret : editor.getCaretModel().getAllCarets()) {
-                    preserver.tryCaret(caret);
-                }
-
-                int matchedIndex = preserver.getMatchedIndex();
-                ActionUtils.setPrimaryCaretIndex(editor, matchedIndex, false);
-            }
+            applyCarets(manager, editor, caretList, keptCarets, createList, preserver);
         }
     }
 }
@@ -10,11 +10,26 @@ import com.vladsch.flexmark.util.sequence.Range;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.List;
+
 abstract public class RegExCaretSearchHandler extends PatternSearchCaretHandler<RegExMatcher> {
+    // matcher reused by carets of performAll() with the same pattern, only valid for the pattern and chars it was created for
+    private @Nullable RegExMatcher mySharedMatcher;
+    private @Nullable RegExPattern mySharedPattern;
+    private @Nullable BasedSequence mySharedChars;
+
     protected RegExCaretSearchHandler(boolean backwards) {
         super(backwards);
     }
 
+    @Override
+    protected void releaseMatcher() {
+        mySharedMatcher = null;
+        mySharedPattern = null;
+        mySharedChars = null;
+    }
+
     @Nullable
     protected abstract RegExPattern getPattern(@NotNull LineSelectionManager manager, @NotNull Caret caret, @NotNull Range range, @NotNull BasedSequence chars);
 
@@ -26,32 +41,62 @@ abstract public class RegExCaretSearchHandler extends PatternSearchCaretHandler<
         RegExMatcher myMatcher = null;
 
         if (pattern != null) {
-            myMatcher = pattern.matcher(chars);
-
-            if (!myBackwards) {
-                if (offset > range.getEnd()) {
-                    int tmp = 0;
-                }
-                if (offset >= range.getEnd()) {
-                    return null;
-                }
-                myMatcher.region(offset, range.getEnd());
-            } else {
-                if (offset <= range.getStart()) {
-                   return null; 
-                }
-                myMatcher.region(range.getStart(), offset);
+            if (mySharedMatcher == null || mySharedPattern != pattern || mySharedChars != chars) {
+                mySharedMatcher = pattern.matcher(chars);
+                mySharedPattern = pattern;
+                mySharedChars = chars;
             }
-            myMatcher.useTransparentBounds(true);
-            myMatcher.useAnchoringBounds(false);
+            myMatcher = mySharedMatcher;
 
-            if (!myMatcher.find()) {
+            if (!findFirst(myMatcher, offset, range)) {
                 myMatcher = null;
             }
         }
         return myMatcher;
     }
 
+    /**
+     * Limit matcher to the caret's search region in range and find the first match
+     *
+     * @return true if found
+     */
+    private boolean findFirst(@NotNull RegExMatcher matcher, int offset, @NotNull Range range) {
+        if (!myBackwards) {
+            if (offset >= range.getEnd()) {
+                return false;
+            }
+            matcher.region(offset, range.getEnd());
+        } else {
+            if (offset <= range.getStart()) {
+                return false;
+            }
+            matcher.region(range.getStart(), offset);
+        }
+        matcher.useTransparentBounds(true);
+        matcher.useAnchoringBounds(false);
+
+        return matcher.find();
+    }
+
+    /**
+     * Find matches for a caret offset the same as perform but without the caret so it can run off the EDT
+     *
+     * @param pattern pattern to search
+     * @param offset  caret offset
+     * @param range   caret range
+     * @param chars   document text
+     * @return matches, at most one for single match
+     */
+    @NotNull
+    protected List<CaretMatch> findMatches(@NotNull RegExPattern pattern, int offset, @NotNull Range range, @NotNull CharSequence chars) {
+        ArrayList<CaretMatch> matches = new ArrayList<>();
+        RegExMatcher matcher = pattern.matcher(chars);
+        if (findFirst(matcher, offset, range)) {
+            collectMatches(matcher, BasedSequence.of(chars), range, matches);
+        }
+        return matches;
+    }
+
     protected abstract CaretMatch getCaretMatch(RegExMatcher matcher, int selStart, int selEnd);
 
     @Override
@@ -2,6 +2,8 @@
 package com.vladsch.MissingInActions.actions.pattern;
 
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.command.WriteCommandAction;
 import com.intellij.openapi.editor.Caret;
 import com.intellij.openapi.editor.CaretState;
@@ -12,20 +14,35 @@ import com.intellij.openapi.editor.EditorSettings;
 import com.intellij.openapi.editor.LogicalPosition;
 import com.intellij.openapi.editor.ex.DocumentEx;
 import com.intellij.openapi.editor.ex.EditorEx;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.DialogWrapper;
 import com.intellij.openapi.ui.ValidationInfo;
 import com.intellij.ui.DocumentAdapter;
 import com.intellij.ui.components.JBCheckBox;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.intellij.util.ui.UIUtil;
+import com.intellij.util.ui.update.UiNotifyConnector;
 import com.vladsch.MissingInActions.Bundle;
+import com.vladsch.MissingInActions.actions.CaretOffsetPreserver;
+import com.vladsch.MissingInActions.actions.pattern.PatternSearchCaretHandler.CaretMatch;
+import com.vladsch.MissingInActions.manager.CaretBatch;
 import com.vladsch.MissingInActions.manager.LineSelectionManager;
 import com.vladsch.MissingInActions.settings.RegExSettingsHolder;
+import com.vladsch.MissingInActions.util.MiaCancelableJobScheduler;
+import com.vladsch.MissingInActions.util.MiaWatchdog;
+import com.vladsch.MissingInActions.util.TimeBudgetCharSequence;
+import com.vladsch.ReverseRegEx.util.ForwardPattern;
+import com.vladsch.ReverseRegEx.util.RegExPattern;
+import com.vladsch.ReverseRegEx.util.ReversePattern;
 import com.vladsch.flexmark.util.html.ui.BackgroundColor;
 import com.vladsch.flexmark.util.html.ui.HtmlHelpers;
+import com.vladsch.flexmark.util.sequence.Range;
+import com.vladsch.plugin.util.OneTimeRunnable;
 import com.vladsch.plugin.util.ui.Helpers;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.concurrency.CancellablePromise;
 
 import javax.swing.Action;
 import javax.swing.JButton;
@@ -37,11 +54,19 @@ import javax.swing.event.DocumentEvent;
 import java.awt.BorderLayout;
 import java.awt.event.ActionListener;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Pattern;
 
+import static com.vladsch.MissingInActions.manager.CaretUtils.getCoordinates;
+
 public class SearchCaretsOptionsDialog extends DialogWrapper {
+    private static final int PREVIEW_DELAY_MS = 250;
+    private static final int PREVIEW_TIME_BUDGET_MS = 500;
+
     JPanel myMainPanel;
     private JTextField myPattern;
     JTextField mySampleText;
@@ -57,6 +82,21 @@ public class SearchCaretsOptionsDialog extends DialogWrapper {
 
     private final RegExSettingsHolder mySettingsHolder;
 
+    private final @NotNull List<LogicalPosition> myViewerCarets = new ArrayList<>();
+    private @NotNull OneTimeRunnable myPreviewRunner = OneTimeRunnable.NULL;
+    private @Nullable CancellablePromise<PreviewSearch> myPreviewSearch = null;
+    private int myPreviewGeneration = 0;
+
+    private static class PreviewSearch {
+        final @NotNull String error;
+        final @NotNull List<List<CaretMatch>> caretMatches;
+
+        PreviewSearch(@NotNull String error, @NotNull List<List<CaretMatch>> caretMatches) {
+            this.error = error;
+            this.caretMatches = caretMatches;
+        }
+    }
+
     private static BackgroundColor getWarningTextFieldBackground() {
         return BackgroundColor.of(Helpers.warningColor(UIUtil.getTextFieldBackground()));
     }
@@ -99,16 +139,12 @@ public class SearchCaretsOptionsDialog extends DialogWrapper {
         myViewPanel.add(myViewer.getComponent(), BorderLayout.CENTER);
 
         myFocusViewer.addActionListener(e -> {
-            if (checkRegEx(myPattern).isEmpty()) {
-                updateViewer();
-            }
+            startPreviewSearch();
             myViewer.getContentComponent().requestFocus();
         });
 
         final ActionListener actionListener = e -> {
-            if (checkRegEx(myPattern).isEmpty()) {
-                updateViewer();
-            }
+            startPreviewSearch();
             ApplicationManager.getApplication().invokeLater(() -> myViewer.getContentComponent().requestFocus());
         };
 
@@ -119,25 +155,29 @@ public class SearchCaretsOptionsDialog extends DialogWrapper {
         final DocumentAdapter listener = new DocumentAdapter() {
             @Override
             protected void textChanged(@NotNull DocumentEvent e) {
-                if (checkRegEx(myPattern).isEmpty()) {
-                    updateViewer();
-                }
+                // debounce typing, previous preview search is abandoned
+                cancelPreviewSearch();
+                // scheduler runs on a pool thread, post back in the dialog's modality or it will not run while the dialog is open
+                ModalityState modalityState = ModalityState.stateForComponent(myMainPanel);
+                Runnable previewSearch = MiaWatchdog.watch("SearchCaretsOptionsDialog.startPreviewSearch", SearchCaretsOptionsDialog.this::startPreviewSearch);
+                myPreviewRunner = OneTimeRunnable.schedule(MiaCancelableJobScheduler.getInstance(), PREVIEW_DELAY_MS, () -> ApplicationManager.getApplication().invokeLater(previewSearch, modalityState, o -> myViewer.isDisposed()));
             }
         };
 
         myPattern.getDocument().addDocumentListener(listener);
 
         copyEditorSettings();
-
-        if (checkRegEx(myPattern).isEmpty()) {
-            updateViewer();
-        }
+        initViewer();
 
         init();
+
+        // first preview waits for the dialog to be shown so it finishes in the dialog's modality
+        UiNotifyConnector.doWhenFirstShown(myMainPanel, this::startPreviewSearch);
     }
 
     @Override
     public void disposeIfNeeded() {
+        cancelPreviewSearch();
         super.disposeIfNeeded();
 
         if (!myViewer.isDisposed()) {
@@ -251,8 +291,86 @@ public class SearchCaretsOptionsDialog extends DialogWrapper {
         // @formatter:on
     }
 
-    private void updateViewer() {
-        List<LogicalPosition> carets = new ArrayList<>(myEditor.getCaretModel().getCaretCount());
+    private void cancelPreviewSearch() {
+        myPreviewRunner.cancel();
+        myPreviewRunner = OneTimeRunnable.NULL;
+        myPreviewGeneration++;
+
+        if (myPreviewSearch != null) {
+            myPreviewSearch.cancel();
+            myPreviewSearch = null;
+        }
+    }
+
+    /**
+     * Compile and run the pattern over a snapshot of the viewer text in the background, the viewer carets are
+     * only updated from the found matches if the search finishes within the time budget so a runaway pattern cannot hang the dialog
+     */
+    private void startPreviewSearch() {
+        cancelPreviewSearch();
+
+        String patternText = myPattern.getText();
+        if (patternText.trim().isEmpty()) {
+            showPreviewError(null);
+            return;
+        }
+
+        LineSelectionManager manager = LineSelectionManager.getInstance(myViewer);
+        CaretSpawningSearchHandler handler = resetViewer(manager);
+
+        // caret ranges do not depend on the pattern, only matching is done in the background
+        List<Caret> caretList = myViewer.getCaretModel().getAllCarets();
+        Map<Caret, Range> caretRanges = handler.getCaretRanges(caretList);
+        int[] caretOffsets = new int[caretList.size()];
+        Range[] ranges = new Range[caretList.size()];
+        for (int i = 0; i < caretOffsets.length; i++) {
+            Caret caret = caretList.get(i);
+            caretOffsets[i] = caret.getOffset();
+            ranges[i] = caretRanges.get(caret);
+        }
+
+        CharSequence chars = myViewer.getDocument().getImmutableCharSequence();
+        int previewGeneration = myPreviewGeneration;
+        ModalityState modalityState = ModalityState.stateForComponent(myMainPanel);
+        myPreviewSearch = ReadAction.nonBlocking(() -> searchPreview(handler, patternText, chars, caretOffsets, ranges))
+                .expireWhen(myViewer::isDisposed)
+                .finishOnUiThread(modalityState, preview -> {
+                    if (previewGeneration != myPreviewGeneration) return;
+
+                    myPreviewSearch = null;
+                    if (preview.error.isEmpty()) {
+                        showPreviewError(null);
+                        handler.setPattern(patternText);
+                        updateViewer(manager, handler, caretList, preview.caretMatches);
+                    } else {
+                        showPreviewError(preview.error);
+                    }
+                })
+                .submit(AppExecutorUtil.getAppExecutorService());
+    }
+
+    @NotNull
+    private static PreviewSearch searchPreview(@NotNull CaretSpawningSearchHandler handler, @NotNull String patternText, @NotNull CharSequence chars, int[] caretOffsets, Range[] ranges) {
+        String error = getRegExError(patternText.trim());
+        if (!error.isEmpty()) return new PreviewSearch(error, Collections.emptyList());
+
+        try {
+            int flags = handler.isCaseSensitive() ? 0 : Pattern.CASE_INSENSITIVE;
+            RegExPattern pattern = handler.isBackwards() ? ReversePattern.compile(patternText, flags) : ForwardPattern.compile(patternText, flags);
+            CharSequence budgetChars = new TimeBudgetCharSequence(chars, PREVIEW_TIME_BUDGET_MS, ProgressManager::checkCanceled);
+
+            // same matches the spawning search finds for each caret, null for carets without a range
+            List<List<CaretMatch>> caretMatches = new ArrayList<>(caretOffsets.length);
+            for (int i = 0; i < caretOffsets.length; i++) {
+                caretMatches.add(ranges[i] == null ? null : handler.findMatches(pattern, caretOffsets[i], ranges[i], budgetChars));
+            }
+            return new PreviewSearch("", caretMatches);
+        } catch (TimeBudgetCharSequence.TimeBudgetExceededException e) {
+            return new PreviewSearch(Bundle.message("caret-search.options-dialog.time-budget-exceeded", PREVIEW_TIME_BUDGET_MS), Collections.emptyList());
+        }
+    }
+
+    private void initViewer() {
         StringBuilder sb = new StringBuilder();
         LineSelectionManager otherManager = LineSelectionManager.getInstance(myEditor);
         List<CaretState> states = otherManager.getStartCaretStates();
@@ -275,7 +393,7 @@ public class SearchCaretsOptionsDialog extends DialogWrapper {
                 int start = document.getLineStartOffset(caretLine);
                 int end = document.getLineEndOffset(caretLine);
                 sb.append(chars.subSequence(start, end)).append('\n');
-                carets.add(new LogicalPosition(i++, position.column));
+                myViewerCarets.add(new LogicalPosition(i++, position.column));
             }
         });
 
@@ -287,33 +405,55 @@ public class SearchCaretsOptionsDialog extends DialogWrapper {
             document.replaceString(0, document.getTextLength(), sb);
             document.setReadOnly(true);
         });
+    }
 
-        // create carets in the viewer
-        boolean first = true;
-        myViewer.getCaretModel().removeSecondaryCarets();
-
-        for (LogicalPosition position : carets) {
-            Caret caret = first ? myViewer.getCaretModel().getPrimaryCaret() : myViewer.getCaretModel().addCaret(myViewer.logicalToVisualPosition(position));
-            first = false;
+    /**
+     * Re-create start carets in the viewer
+     *
+     * @return search handler for the start carets
+     */
+    @NotNull
+    private CaretSpawningSearchHandler resetViewer(@NotNull LineSelectionManager manager) {
+        LineSelectionManager otherManager = LineSelectionManager.getInstance(myEditor);
 
-            if (caret != null) {
-                // move to logical position and set selection
-                caret.moveToLogicalPosition(position);
-                caret.removeSelection();
-            }
+        CaretBatch caretBatch = new CaretBatch(manager);
+        for (LogicalPosition position : myViewerCarets) {
+            caretBatch.addCaret(position, position, position);
         }
+        caretBatch.apply();
 
         CaretSpawningSearchHandler handler = new CaretSpawningSearchHandler(myBackwards.isSelected());
 
-        LineSelectionManager manager = LineSelectionManager.getInstance(myViewer);
         if (otherManager.getCaretSpawningHandler() != null) {
             handler.copySettings((CaretSpawningSearchHandler) otherManager.getCaretSpawningHandler(), myViewer);
         }
         handler.setCaseSensitive(myCaseSensitive.isSelected());
         handler.setCaretToEndGroup(myCaretToEndGroup.isSelected());
-        handler.setPattern(myPattern.getText());
         handler.caretsChanged(myViewer);
-        handler.doAction(manager, myViewer, null, null);
+        return handler;
+    }
+
+    /**
+     * Apply matches found in the background to the start carets
+     */
+    private void updateViewer(@NotNull LineSelectionManager manager, @NotNull CaretSpawningSearchHandler handler, @NotNull List<Caret> caretList, @NotNull List<List<CaretMatch>> caretMatches) {
+        CaretOffsetPreserver preserver = new CaretOffsetPreserver(myViewer.getCaretModel().getPrimaryCaret().getOffset());
+        ArrayList<CaretState> createCarets = new ArrayList<>();
+        Map<Long, Caret> keptCarets = new LinkedHashMap<>();
+        List<Caret> searchedCarets = new ArrayList<>(caretList.size());
+
+        for (int i = 0; i < caretList.size(); i++) {
+            Caret caret = caretList.get(i);
+            if (!caret.isValid()) continue;
+
+            searchedCarets.add(caret);
+            List<CaretMatch> matches = caretMatches.get(i);
+            if (matches != null && handler.performMatches(caret, matches, createCarets)) {
+                keptCarets.put(getCoordinates(caret), caret);
+            }
+        }
+
+        handler.applyCarets(manager, myViewer, searchedCarets, keptCarets, createCarets, preserver);
     }
 
     @Nullable
@@ -359,28 +499,35 @@ public class SearchCaretsOptionsDialog extends DialogWrapper {
 
     private String checkRegEx(final JTextField pattern) {
         final String patternText = pattern.getText().trim();
+        String error = getRegExError(patternText);
+        showPreviewError(patternText.isEmpty() ? null : error.isEmpty() ? null : error);
+        return error;
+    }
+
+    @NotNull
+    private static String getRegExError(@NotNull String patternText) {
         String error = "";
-        boolean isBadRegEx = false;
 
-        if (!myPattern.getText().trim().isEmpty()) {
+        if (!patternText.isEmpty()) {
             try {
                 Pattern.compile(patternText);
             } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
                 error = e.getMessage();
-                isBadRegEx = true;
             }
         } else {
             error = "empty pattern";
         }
+        return error;
+    }
 
-        if (!isBadRegEx) {
+    private void showPreviewError(@Nullable String error) {
+        if (error == null) {
             myViewPanel.setVisible(true);
             myTextPane.setVisible(false);
         } else {
             myViewPanel.setVisible(false);
             HtmlHelpers.setRegExError(error, myTextPane, mySampleText.getFont(), getValidTextFieldBackground(), getWarningTextFieldBackground());
         }
-        return error;
     }
 
     private void createUIComponents() {
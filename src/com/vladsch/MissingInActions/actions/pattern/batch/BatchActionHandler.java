@@ -11,6 +11,7 @@ import com.intellij.openapi.project.Project;
 import com.vladsch.MissingInActions.PluginProjectComponent;
 import com.vladsch.MissingInActions.actions.pattern.BatchReplaceForm;
 import com.vladsch.MissingInActions.util.MiaCancelableJobScheduler;
+import com.vladsch.MissingInActions.util.MiaWatchdog;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -38,16 +39,21 @@ public class BatchActionHandler extends EditorActionHandler {
 
     @Override
     protected void doExecute(@NotNull Editor editor, @Nullable Caret caret, DataContext dataContext) {
-        Project project = dataContext.getData(CommonDataKeys.PROJECT);
-        if (editor instanceof EditorEx && project != null) {
-            BatchReplaceForm batchSearchReplace = PluginProjectComponent.getInstance(project).getBatchReplaceForm();
-            if (batchSearchReplace != null) {
-                batchSearchReplace.setActiveEditor((EditorEx) editor);
-                batchSearchReplace.doAction(myAction);
-                MiaCancelableJobScheduler.getInstance().schedule(100, () -> {
-                    editor.getContentComponent().requestFocus();
-                });
+        long watchToken = MiaWatchdog.start("doExecute", getClass());
+        try {
+            Project project = dataContext.getData(CommonDataKeys.PROJECT);
+            if (editor instanceof EditorEx && project != null) {
+                BatchReplaceForm batchSearchReplace = PluginProjectComponent.getInstance(project).getBatchReplaceForm();
+                if (batchSearchReplace != null) {
+                    batchSearchReplace.setActiveEditor((EditorEx) editor);
+                    batchSearchReplace.doAction(myAction);
+                    MiaCancelableJobScheduler.getInstance().schedule(100, () -> {
+                        editor.getContentComponent().requestFocus();
+                    });
+                }
             }
+        } finally {
+            MiaWatchdog.end(watchToken, editor.getCaretModel().getCaretCount(), editor.getDocument().getTextLength());
         }
     }
 }
@@ -0,0 +1,122 @@
+// Copyright 2016-2023 2023 Vladimir Schneider <vladimir.schneider@gmail.com> Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE.txt file.
+package com.vladsch.MissingInActions.actions.pattern.batch;
+
+import com.intellij.openapi.fileEditor.OpenFileDescriptor;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectUtil;
+import com.intellij.openapi.ui.DialogWrapper;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.ui.ScrollPaneFactory;
+import com.intellij.ui.table.JBTable;
+import com.vladsch.MissingInActions.Bundle;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.JComponent;
+import javax.swing.ListSelectionModel;
+import javax.swing.table.AbstractTableModel;
+import java.awt.Dimension;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.List;
+
+public class BatchProjectResultsDialog extends DialogWrapper {
+    private final @NotNull Project myProject;
+    private final @NotNull BatchProjectSearch myProjectSearch;
+    private final @NotNull List<BatchProjectSearch.FileResult> myResults;
+    private final @Nullable VirtualFile myBaseDir;
+    private final JBTable myTable;
+
+    public BatchProjectResultsDialog(@NotNull Project project, @NotNull BatchProjectSearch projectSearch, @NotNull List<BatchProjectSearch.FileResult> results) {
+        super(project, false);
+        myProject = project;
+        myProjectSearch = projectSearch;
+        myResults = results;
+        myBaseDir = ProjectUtil.guessProjectDir(project);
+
+        setTitle(Bundle.message("batch-search.project.results.title"));
+        setOKButtonText(Bundle.message("batch-search.project.replace-all.label", results.size()));
+        setModal(false);
+
+        myTable = new JBTable(new ResultsTableModel());
+        myTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        myTable.getColumnModel().getColumn(0).setPreferredWidth(600);
+        myTable.getColumnModel().getColumn(1).setPreferredWidth(80);
+        myTable.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(final MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    int row = myTable.rowAtPoint(e.getPoint());
+                    if (row >= 0) {
+                        new OpenFileDescriptor(myProject, myResults.get(row).file).navigate(true);
+                    }
+                }
+            }
+        });
+
+        init();
+    }
+
+    private class ResultsTableModel extends AbstractTableModel {
+        @Override
+        public int getRowCount() {
+            return myResults.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return 2;
+        }
+
+        @Override
+        public String getColumnName(final int column) {
+            return column == 0 ? Bundle.message("batch-search.project.file.column") : Bundle.message("batch-search.project.matches.column");
+        }
+
+        @Override
+        public Class<?> getColumnClass(final int columnIndex) {
+            return columnIndex == 0 ? String.class : Integer.class;
+        }
+
+        @Override
+        public Object getValueAt(final int rowIndex, final int columnIndex) {
+            BatchProjectSearch.FileResult result = myResults.get(rowIndex);
+            if (columnIndex == 1) return result.count;
+
+            String relativePath = myBaseDir == null ? null : VfsUtilCore.getRelativePath(result.file, myBaseDir);
+            return relativePath == null ? result.file.getPresentableUrl() : relativePath;
+        }
+    }
+
+    @Nullable
+    @Override
+    protected JComponent createCenterPanel() {
+        JComponent scrollPane = ScrollPaneFactory.createScrollPane(myTable);
+        scrollPane.setPreferredSize(new Dimension(700, 400));
+        return scrollPane;
+    }
+
+    @Override
+    protected void doOKAction() {
+        super.doOKAction();
+        myProjectSearch.replace(myResults);
+    }
+
+    @Nullable
+    @Override
+    protected String getDimensionServiceKey() {
+        return "MissingInActions.BatchProjectResultsDialog";
+    }
+
+    @Nullable
+    @Override
+    public JComponent getPreferredFocusedComponent() {
+        return myTable;
+    }
+
+    public static void showDialog(@NotNull Project project, @NotNull BatchProjectSearch projectSearch, @NotNull List<BatchProjectSearch.FileResult> results) {
+        BatchProjectResultsDialog dialog = new BatchProjectResultsDialog(project, projectSearch, results);
+        dialog.show();
+    }
+}
@@ -0,0 +1,197 @@
+// Copyright 2016-2023 2023 Vladimir Schneider <vladimir.schneider@gmail.com> Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE.txt file.
+package com.vladsch.MissingInActions.actions.pattern.batch;
+
+import com.intellij.concurrency.JobLauncher;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.fileEditor.impl.LoadTextUtil;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.vfs.ReadonlyStatusHandler;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.DocumentUtil;
+import com.vladsch.MissingInActions.Bundle;
+import com.vladsch.MissingInActions.settings.BatchSearchReplace;
+import com.vladsch.MissingInActions.util.BatchSearchRules;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Batch search/replace of project files without opening editors
+ * <p>
+ * Files are searched in parallel in the background, matching files are shown with their match counts
+ * and replacements are done in write commands of {@link #REPLACE_CHUNK_FILES} files at a time.
+ */
+public class BatchProjectSearch {
+    public static final int REPLACE_CHUNK_FILES = 25;
+
+    public static class FileResult {
+        public final @NotNull VirtualFile file;
+        public final int count;
+
+        FileResult(@NotNull VirtualFile file, int count) {
+            this.file = file;
+            this.count = count;
+        }
+    }
+
+    private final @NotNull Project myProject;
+    private final @NotNull BatchSearchRules myRules;
+    private final @NotNull VirtualFile[] myRoots;
+
+    /**
+     * @param project            project
+     * @param batchSearchReplace search/replace text and options
+     * @param roots              files or directories to search, empty for all project content
+     */
+    public BatchProjectSearch(@NotNull Project project, @NotNull BatchSearchReplace batchSearchReplace, @NotNull VirtualFile[] roots) {
+        myProject = project;
+        myRules = BatchSearchRules.of(batchSearchReplace);
+        myRoots = roots;
+    }
+
+    public boolean isEmpty() {
+        return myRules.isEmpty();
+    }
+
+    public void search() {
+        if (myRules.isEmpty()) return;
+
+        ProgressManager.getInstance().run(new Task.Backgroundable(myProject, Bundle.message("batch-search.project.search-progress"), true) {
+            final ArrayList<FileResult> myResults = new ArrayList<>();
+
+            @Override
+            public void run(@NotNull final ProgressIndicator indicator) {
+                indicator.setIndeterminate(true);
+                List<VirtualFile> files = ReadAction.compute(() -> collectFiles());
+
+                indicator.setIndeterminate(false);
+                ConcurrentLinkedQueue<FileResult> results = new ConcurrentLinkedQueue<>();
+                AtomicInteger processed = new AtomicInteger();
+                int total = files.size();
+
+                JobLauncher.getInstance().invokeConcurrentlyUnderProgress(files, indicator, file -> {
+                    CharSequence chars = loadText(file);
+                    if (chars != null) {
+                        int count = myRules.countMatches(chars);
+                        if (count > 0) results.add(new FileResult(file, count));
+                    }
+                    indicator.setFraction((double) processed.incrementAndGet() / total);
+                    return true;
+                });
+
+                indicator.checkCanceled();
+                myResults.addAll(results);
+                myResults.sort(Comparator.comparing(result -> result.file.getPath()));
+            }
+
+            @Override
+            public void onSuccess() {
+                if (myProject.isDisposed()) return;
+
+                if (myResults.isEmpty()) {
+                    Messages.showInfoMessage(myProject, Bundle.message("batch-search.project.no-matches"), Bundle.message("batch-search.project.results.title"));
+                } else {
+                    BatchProjectResultsDialog.showDialog(myProject, BatchProjectSearch.this, myResults);
+                }
+            }
+        });
+    }
+
+    public void replace(@NotNull List<FileResult> results) {
+        ArrayList<VirtualFile> files = new ArrayList<>(results.size());
+        for (FileResult result : results) files.add(result.file);
+
+        if (ReadonlyStatusHandler.getInstance(myProject).ensureFilesWritable(files).hasReadonlyFiles()) return;
+
+        ProgressManager.getInstance().run(new Task.Backgroundable(myProject, Bundle.message("batch-search.project.replace-progress"), true) {
+            @Override
+            public void run(@NotNull final ProgressIndicator indicator) {
+                indicator.setIndeterminate(false);
+                int total = files.size();
+                String commandName = Bundle.message("batch-search.project.replace-command");
+                Object groupId = new Object();
+
+                for (int start = 0; start < total; start += REPLACE_CHUNK_FILES) {
+                    indicator.checkCanceled();
+                    if (myProject.isDisposed()) return;
+                    indicator.setFraction((double) start / total);
+
+                    List<VirtualFile> chunk = files.subList(start, Math.min(total, start + REPLACE_CHUNK_FILES));
+                    indicator.setText2(chunk.get(0).getPresentableUrl());
+
+                    ApplicationManager.getApplication().invokeAndWait(() -> {
+                        WriteCommandAction.writeCommandAction(myProject).withName(commandName).withGroupId(groupId).run(() -> {
+                            FileDocumentManager documentManager = FileDocumentManager.getInstance();
+                            for (VirtualFile file : chunk) {
+                                Document document = file.isValid() ? documentManager.getDocument(file) : null;
+                                if (document == null || !document.isWritable()) continue;
+
+                                // text may have changed since the search, replace what matches now, last to first so earlier offsets stay valid
+                                List<BatchSearchRules.Replacement> replacements = myRules.findReplacements(document.getImmutableCharSequence());
+                                if (replacements.isEmpty()) continue;
+
+                                DocumentUtil.executeInBulk(document, replacements.size() > 1, () -> {
+                                    for (int i = replacements.size(); i-- > 0; ) {
+                                        BatchSearchRules.Replacement replacement = replacements.get(i);
+                                        document.replaceString(replacement.startOffset, replacement.endOffset, replacement.replace);
+                                    }
+                                });
+                            }
+                        });
+                    });
+                }
+                indicator.setFraction(1.0);
+            }
+        });
+    }
+
+    @NotNull
+    private List<VirtualFile> collectFiles() {
+        ProjectFileIndex fileIndex = ProjectFileIndex.getInstance(myProject);
+        ArrayList<VirtualFile> files = new ArrayList<>();
+
+        if (myRoots.length == 0) {
+            fileIndex.iterateContent(file -> {
+                if (isSearchable(file)) files.add(file);
+                return true;
+            });
+        } else {
+            for (VirtualFile root : myRoots) {
+                fileIndex.iterateContentUnderDirectory(root, file -> {
+                    if (isSearchable(file)) files.add(file);
+                    return true;
+                });
+            }
+        }
+        return files;
+    }
+
+    private static boolean isSearchable(@NotNull VirtualFile file) {
+        return !file.isDirectory() && file.isValid() && !file.getFileType().isBinary();
+    }
+
+    @Nullable
+    private static CharSequence loadText(@NotNull VirtualFile file) {
+        return ReadAction.compute(() -> {
+            if (!file.isValid()) return null;
+
+            // unsaved changes are in the document, otherwise load file text without creating a document
+            Document document = FileDocumentManager.getInstance().getCachedDocument(file);
+            return document != null ? document.getImmutableCharSequence() : LoadTextUtil.loadText(file);
+        });
+    }
+}
@@ -0,0 +1,39 @@
+// Copyright 2016-2023 2023 Vladimir Schneider <vladimir.schneider@gmail.com> Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE.txt file.
+package com.vladsch.MissingInActions.actions.pattern.batch;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.CommonDataKeys;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.vladsch.MissingInActions.PluginProjectComponent;
+import com.vladsch.MissingInActions.actions.pattern.BatchReplaceForm;
+import com.vladsch.MissingInActions.settings.ApplicationSettings;
+import com.vladsch.MissingInActions.settings.BatchSearchReplace;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Batch search/replace with current batch search/replace text in selected project view files and directories,
+ * or in all project content when invoked elsewhere
+ */
+public class BatchSearchInProjectAction extends AnAction implements DumbAware {
+    @Override
+    public void update(@NotNull final AnActionEvent e) {
+        Project project = e.getProject();
+        e.getPresentation().setEnabled(project != null && !ApplicationSettings.getInstance().getBatchSearchReplace().getSearchText().isEmpty());
+    }
+
+    @Override
+    public void actionPerformed(@NotNull final AnActionEvent e) {
+        Project project = e.getProject();
+        if (project == null) return;
+
+        BatchReplaceForm batchReplaceForm = PluginProjectComponent.getInstance(project).getBatchReplaceForm();
+        if (batchReplaceForm != null) batchReplaceForm.saveSettings();
+
+        VirtualFile[] roots = e.getData(CommonDataKeys.EDITOR) == null ? e.getData(CommonDataKeys.VIRTUAL_FILE_ARRAY) : null;
+        BatchSearchReplace batchSearchReplace = new BatchSearchReplace(ApplicationSettings.getInstance().getBatchSearchReplace());
+        new BatchProjectSearch(project, batchSearchReplace, roots == null ? VirtualFile.EMPTY_ARRAY : roots).search();
+    }
+}
@@ -17,36 +17,106 @@ public class ActionAdjustmentMap {
     final private HashMap<Class, HashSet<ActionSetType>> myActionSetMap = new HashMap<>();
     final private HashMap<String, HashSet<ActionSetType>> myOptionalActionSetMap = new HashMap<>();
 
+    // descriptors resolved once per action class, replaced when the map changes
+    private volatile ClassValue<ActionDescriptor> myDescriptors = createDescriptors();
+
     ActionAdjustmentMap() {
         super();
     }
 
-    public AdjustmentType getAdjustment(Class action) {
-        return myAdjustmentsMap.get(action);
+    /**
+     * Adjustment information of an action class, actions without any share {@link #NONE}
+     */
+    public static class ActionDescriptor {
+        public static final ActionDescriptor NONE = new ActionDescriptor(null, null, 0);
+
+        private final AdjustmentType myAdjustment;
+        private final TriggeredAction myTriggeredAction;
+        private final int myActionSets;
+
+        ActionDescriptor(AdjustmentType adjustment, TriggeredAction triggeredAction, int actionSets) {
+            myAdjustment = adjustment;
+            myTriggeredAction = triggeredAction;
+            myActionSets = actionSets;
+        }
+
+        public AdjustmentType getAdjustment() {
+            return myAdjustment;
+        }
+
+        public TriggeredAction getTriggeredAction() {
+            return myTriggeredAction;
+        }
+
+        public boolean hasTriggeredAction() {
+            return myTriggeredAction != null;
+        }
+
+        public boolean isInSet(ActionSetType setName) {
+            return (myActionSets & getSetMask(setName)) != 0;
+        }
+
+        public boolean isInSet(ActionSetType... setNames) {
+            for (ActionSetType setName : setNames) {
+                if ((myActionSets & getSetMask(setName)) != 0) return true;
+            }
+            return false;
+        }
     }
 
-    public TriggeredAction getTriggeredAction(Class action) {
-        return myTriggeredActionsMap.get(action);
+    static int getSetMask(ActionSetType setName) {
+        return 1 << setName.ordinal();
     }
 
-    public boolean hasTriggeredAction(Class action) {
-        return myTriggeredActionsMap.containsKey(action);
+    private ClassValue<ActionDescriptor> createDescriptors() {
+        return new ClassValue<ActionDescriptor>() {
+            @Override
+            protected ActionDescriptor computeValue(Class<?> action) {
+                return createDescriptor(action);
+            }
+        };
     }
 
-    public boolean isInSet(Class action, ActionSetType... setNames) {
+    private ActionDescriptor createDescriptor(Class<?> action) {
+        AdjustmentType adjustment = myAdjustmentsMap.get(action);
+        TriggeredAction triggeredAction = myTriggeredActionsMap.get(action);
+        int actionSets = 0;
+
         HashSet<ActionSetType> actionSet = myActionSetMap.get(action);
         if (actionSet != null) {
-            for (ActionSetType setName : setNames) {
-                if (actionSet.contains(setName)) return true;
-            }
+            for (ActionSetType setName : actionSet) actionSets |= getSetMask(setName);
         }
+
         actionSet = myOptionalActionSetMap.get(action.getName());
         if (actionSet != null) {
-            for (ActionSetType setName : setNames) {
-                if (actionSet.contains(setName)) return true;
-            }
+            for (ActionSetType setName : actionSet) actionSets |= getSetMask(setName);
         }
-        return false;
+
+        return adjustment == null && triggeredAction == null && actionSets == 0 ? ActionDescriptor.NONE : new ActionDescriptor(adjustment, triggeredAction, actionSets);
+    }
+
+    public ActionDescriptor getDescriptor(Class action) {
+        return myDescriptors.get(action);
+    }
+
+    public AdjustmentType getAdjustment(Class action) {
+        return getDescriptor(action).getAdjustment();
+    }
+
+    public TriggeredAction getTriggeredAction(Class action) {
+        return getDescriptor(action).getTriggeredAction();
+    }
+
+    public boolean hasTriggeredAction(Class action) {
+        return getDescriptor(action).hasTriggeredAction();
+    }
+
+    public boolean isInSet(Class action, ActionSetType setName) {
+        return getDescriptor(action).isInSet(setName);
+    }
+
+    public boolean isInSet(Class action, ActionSetType... setNames) {
+        return getDescriptor(action).isInSet(setNames);
     }
 
     public void addActionAdjustment(AdjustmentType adjustments, Class... actions) {
@@ -57,6 +127,7 @@ public class ActionAdjustmentMap {
             }
             myAdjustmentsMap.put(action, adjustments);
         }
+        myDescriptors = createDescriptors();
     }
 
     public void addActionSet(ActionSetType setName, Object... actions) {
@@ -69,6 +140,7 @@ public class ActionAdjustmentMap {
                 actionSet.add(setName);
             }
         }
+        myDescriptors = createDescriptors();
     }
 
     public void addTriggeredAction(TriggeredAction triggeredAction, Class... actions) {
@@ -79,5 +151,6 @@ public class ActionAdjustmentMap {
             }
             myTriggeredActionsMap.put(action, triggeredAction);
         }
+        myDescriptors = createDescriptors();
     }
 }
@@ -42,22 +42,27 @@ import com.vladsch.MissingInActions.util.CaseFormatPreserver;
 import com.vladsch.MissingInActions.util.ClipboardCaretContent;
 import com.vladsch.MissingInActions.util.EditorActionListener;
 import com.vladsch.MissingInActions.util.MiaCancelableJobScheduler;
+import com.vladsch.MissingInActions.util.MiaDiagnostics;
+import com.vladsch.MissingInActions.util.MiaWatchdog;
 import com.vladsch.flexmark.util.misc.Pair;
 import com.vladsch.flexmark.util.sequence.BasedSequence;
 import com.vladsch.plugin.util.OneTimeRunnable;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
 import java.awt.datatransfer.Transferable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
 import static com.intellij.openapi.actionSystem.CommonDataKeys.EDITOR;
@@ -76,9 +81,15 @@ public class ActionSelectionAdjuster implements EditorActionListener, Disposable
     private static final Logger LOG = getInstance("com.vladsch.MissingInActions.manager");
     private static final AnActionEvent LAST_CLEANUP_EVENT = null;
 
+    // nested action validations and how many of them needed a stack walk
+    private static final AtomicLong ourNestedActionChecks = new AtomicLong();
+    private static final AtomicLong ourNestedActionStackWalks = new AtomicLong();
+
     final private @NotNull AfterActionList myAfterActions = new AfterActionList();
     final private @NotNull AfterActionList myAfterActionsCleanup = new AfterActionList();
-    final private @NotNull LinkedHashMap<AnActionEvent, AnAction> myActionEventActionMap = new LinkedHashMap<>();
+    // entered actions in nesting order, removed when the action or an enclosing action exits
+    // a stack not keyed by event, a nested action can be performed with the enclosing action's event
+    final private @NotNull ArrayList<NestingToken> myNestingTokens = new ArrayList<>();
     final private @NotNull LineSelectionManager myManager;
     final private @NotNull Editor myEditor;
     private final @NotNull ActionAdjustmentMap myAdjustmentsMap;
@@ -87,6 +98,7 @@ public class ActionSelectionAdjuster implements EditorActionListener, Disposable
     private @Nullable RangeMarker myTentativeSelectionMarker = null;
     private boolean myRerunCaretHandler = false;
     private final StashedRangeMarkers myRangeMarkers;
+    private final PendingAutoIndent myPendingAutoIndent;
 
     final private boolean debug = false;
 
@@ -101,6 +113,7 @@ public class ActionSelectionAdjuster implements EditorActionListener, Disposable
         myEditor = manager.getEditor();
         myAdjustmentsMap = normalAdjustmentMap;
         myRangeMarkers = new StashedRangeMarkers(myManager);
+        myPendingAutoIndent = new PendingAutoIndent(myManager);
 
         Plugin.getInstance().addEditorActionListener(myEditor, this, myManager);
     }
@@ -159,6 +172,7 @@ public class ActionSelectionAdjuster implements EditorActionListener, Disposable
         if (myTentativeSelectionMarker != null) myTentativeSelectionMarker.dispose();
         myTentativeSelectionMarker = null;
         Disposer.dispose(myRangeMarkers);
+        Disposer.dispose(myPendingAutoIndent);
     }
 
     final private static Pair<String, String> ACTION_BUTTON_ACTION = new Pair<>("com.intellij.openapi.actionSystem.impl.ActionButton", "performAction");
@@ -167,70 +181,74 @@ public class ActionSelectionAdjuster implements EditorActionListener, Disposable
     // treat immediately followed duplicates as one call
     final private static Pair<String, String> EDITOR_ACTION_ACTION_PERFORMED = new Pair<>("com.intellij.openapi.editor.actionSystem.EditorAction", "actionPerformed");
 
-    private static boolean matchStackElement(StackTraceElement stackTraceElement, Pair<String, String> classMethod) {
-        return stackTraceElement.getClassName().equals(classMethod.getFirst()) && stackTraceElement.getMethodName().equals(classMethod.getSecond());
+    private static boolean matchStackFrame(StackWalker.StackFrame stackFrame, Pair<String, String> classMethod) {
+        return stackFrame.getMethodName().equals(classMethod.getSecond()) && stackFrame.getClassName().equals(classMethod.getFirst());
     }
 
-    private static int nestedStackActions(StackTraceElement[] stackTrace) {
-        // these are source action triggers
-        int levels = 0;
-        int i = stackTrace.length;
-        boolean foundStart = false;
-        int lastEditorActionPerformed = -1;
-        while (i-- > 0) {
-            StackTraceElement stackTraceElement = stackTrace[i];
-            if (!foundStart) {
-                if (matchStackElement(stackTraceElement, IDE_KEY_EVENT_DISPATCHER_PROCESS_ACTION)
-                        || matchStackElement(stackTraceElement, ACTION_BUTTON_ACTION)) {
-                    foundStart = true;
-                }
-            } else {
-                if (matchStackElement(stackTraceElement, EDITOR_ACTION_ACTION_PERFORMED)) {
-                    if (lastEditorActionPerformed != i - 1) {
-                        levels++;
-                    }
-                    lastEditorActionPerformed = i;
+    private static int nestedStackActions() {
+        ourNestedActionStackWalks.incrementAndGet();
+
+        return StackWalker.getInstance().walk(frames -> {
+            // walking from the innermost frame, only editor actions above the outermost source action trigger are counted
+            int levels = 0;
+            int triggerLevels = 0;
+            Iterator<StackWalker.StackFrame> iterator = frames.iterator();
+
+            while (iterator.hasNext()) {
+                StackWalker.StackFrame stackFrame = iterator.next();
+                if (matchStackFrame(stackFrame, EDITOR_ACTION_ACTION_PERFORMED)) {
+                    levels++;
+                } else if (matchStackFrame(stackFrame, IDE_KEY_EVENT_DISPATCHER_PROCESS_ACTION) || matchStackFrame(stackFrame, ACTION_BUTTON_ACTION)) {
+                    triggerLevels = levels;
                 }
             }
-        }
-        return levels;
+            return triggerLevels;
+        });
+    }
+
+    /**
+     * @return number of nested action validations since startup
+     */
+    public static long getNestedActionChecks() {
+        return ourNestedActionChecks.get();
+    }
+
+    /**
+     * @return number of nested action validations which needed a stack walk since startup
+     */
+    public static long getNestedActionStackWalks() {
+        return ourNestedActionStackWalks.get();
     }
 
     @Override
     public void beforeActionPerformed(AnAction action, DataContext dataContext, AnActionEvent event) {
         assert EDITOR.getData(dataContext) == myEditor;
 
-        int nesting = myNestingLevel.incrementAndGet();
+        AWTEvent dispatchEvent = EventQueue.getCurrentEvent();
+        int nesting = myNestingTokens.size() + 1;
+        myNestingLevel.set(nesting);
+
         if (nesting > 1) {
             // need to validate that previous nested action(s) did not crap out or was cancelled by manager
-            StackTraceElement[] stackTrace = Thread.currentThread().getStackTrace();
-            int stackNesting = nestedStackActions(stackTrace);
+            // an action entered while dispatching the same AWT event as the innermost entered action is nested in it,
+            // abandoned actions of that dispatch are exited when an enclosing action exits. Only a different event,
+            // like an event from a modal dialog or after abandoned top level actions, needs the stack
+            ourNestedActionChecks.incrementAndGet();
+            NestingToken innerToken = getInnerNestingToken();
+            boolean sameDispatch = dispatchEvent != null && innerToken != null && dispatchEvent == innerToken.myDispatchEvent;
+            int stackNesting = sameDispatch ? nesting - 1 : nestedStackActions();
 
             boolean cancelledActions = stackNesting < nesting - 1;
 
             if (cancelledActions) {
                 // cancel all above what we can see on the stack
-                AnActionEvent[] actionEvents = myActionEventActionMap.isEmpty() ? EMPTY_EVENTS : myActionEventActionMap.keySet().toArray(EMPTY_EVENTS);
-                int i = actionEvents.length;
-
-                // set current level to true level so last cleanup gets done
-                myNestingLevel.set(actionEvents.length);
-
-                while (i-- > stackNesting) {
-                    AnActionEvent actionEvent = actionEvents[i];
-                    AnAction anAction = myActionEventActionMap.get(actionEvent);
-                    boolean eventCrappedOut = anAction != null;
-                    if (eventCrappedOut) {
-                        afterActionPerformed(anAction, actionEvent, true);
-                    }
-                }
-
-                nesting = stackNesting + 1;
+                exitNestedActions(stackNesting);
+                nesting = myNestingTokens.size() + 1;
                 myNestingLevel.set(nesting);
             }
         }
 
-        myActionEventActionMap.put(event, action);
+        myNestingTokens.add(new NestingToken(action, event, dispatchEvent));
 
         if (nesting == 1 && canSaveSelection()) {
             // top level, can tentatively save the current selection
@@ -242,14 +260,15 @@ public class ActionSelectionAdjuster implements EditorActionListener, Disposable
         }
 
         RangeLimitedCaretSpawningHandler caretSpawningHandler = myManager.getCaretSpawningHandler();
+        ActionAdjustmentMap.ActionDescriptor descriptor = myAdjustmentsMap.getDescriptor(action.getClass());
         myRerunCaretHandler = false;
 
         if (caretSpawningHandler != null) {
             if (myManager.getStartCaretStates() != null) {
                 //noinspection StatementWithEmptyBody
-                if (action instanceof CaretSearchAwareAction || myAdjustmentsMap.isInSet(action.getClass(), SEARCH_AWARE_CARET_ACTION)) {
+                if (action instanceof CaretSearchAwareAction || descriptor.isInSet(SEARCH_AWARE_CARET_ACTION)) {
                     // do nothing the action will handle it
-                } else if (action instanceof CaretMoveAction || myAdjustmentsMap.isInSet(action.getClass(), MOVE_SEARCH_CARET_ACTION)) {
+                } else if (action instanceof CaretMoveAction || descriptor.isInSet(MOVE_SEARCH_CARET_ACTION)) {
                     // create start position carets
                     myEditor.getCaretModel().setCaretsAndSelections(myManager.getStartCaretStates());
 
@@ -270,17 +289,19 @@ public class ActionSelectionAdjuster implements EditorActionListener, Disposable
                 if (debug) System.out.println("Before " + action + ", nesting: " + myNestingLevel.get());
                 cancelTriggeredAction(action.getClass());
                 
-                if (!myAdjustmentsMap.hasTriggeredAction(action.getClass())) {
+                if (!descriptor.hasTriggeredAction()) {
                     runBeforeTriggeredActions();
                 }
 
-                AdjustmentType adjustments = myAdjustmentsMap.getAdjustment(action.getClass());
+                AdjustmentType adjustments = descriptor.getAdjustment();
                 if (adjustments != null && adjustments != UNDOE_REDO___NOTHING__NOTHING) {
                     //if (debug) System.out.println("running Before " + action);
                     guard(() -> {
                         ApplicationSettings settings = getSettings();
+                        long startTime = MiaDiagnostics.startTime();
                         try {
                             adjustBeforeAction(settings, action, adjustments, event);
+                            MiaDiagnostics.recordTime(MiaDiagnostics.BEFORE_ACTION, action.getClass().getName(), startTime);
                         } catch (Throwable e) {
                             LOG.error("adjustBeforeAction exception", e);
 
@@ -298,12 +319,56 @@ public class ActionSelectionAdjuster implements EditorActionListener, Disposable
             }
             
             // this is not necessarily line mode dependent
-            if (myAdjustmentsMap.hasTriggeredAction(action.getClass())) {
+            if (descriptor.hasTriggeredAction()) {
                 runAfterAction(event, () -> addTriggeredAction(action.getClass()));
             }
         }
     }
 
+    /**
+     * Action entered by {@link #beforeActionPerformed(AnAction, DataContext, AnActionEvent)} and the AWT event being dispatched at the time
+     */
+    private static class NestingToken {
+        final @NotNull AnAction myAction;
+        final @NotNull AnActionEvent myEvent;
+        final @Nullable AWTEvent myDispatchEvent;
+
+        NestingToken(@NotNull AnAction action, @NotNull AnActionEvent event, @Nullable AWTEvent dispatchEvent) {
+            myAction = action;
+            myEvent = event;
+            myDispatchEvent = dispatchEvent;
+        }
+    }
+
+    @Nullable
+    private NestingToken getInnerNestingToken() {
+        return myNestingTokens.isEmpty() ? null : myNestingTokens.get(myNestingTokens.size() - 1);
+    }
+
+    /**
+     * @param event action event
+     * @return nesting level of the innermost entered action with the event, 1 for top level, 0 if not entered
+     */
+    private int getNestingLevel(@NotNull AnActionEvent event) {
+        for (int i = myNestingTokens.size(); i-- > 0; ) {
+            if (myNestingTokens.get(i).myEvent == event) return i + 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Exit entered actions above the given level as cancelled, innermost first
+     *
+     * @param level nesting level of the innermost action to keep
+     */
+    private void exitNestedActions(int level) {
+        while (myNestingTokens.size() > level) {
+            // exiting the innermost action removes its token
+            NestingToken token = myNestingTokens.get(myNestingTokens.size() - 1);
+            afterActionPerformed(token.myAction, token.myEvent, true);
+        }
+    }
+
     public boolean canSaveSelection() {
         return myEditor.getCaretModel().getCaretCount() == 1 && myEditor.getSelectionModel().hasSelection();
     }
@@ -314,7 +379,12 @@ public class ActionSelectionAdjuster implements EditorActionListener, Disposable
     }
 
     public void afterActionPerformed(AnAction action, AnActionEvent event, boolean wasCancelled) {
-        myActionEventActionMap.remove(event);
+        int level = getNestingLevel(event);
+        if (level > 0) {
+            // actions entered after this one which did not exit were abandoned
+            exitNestedActions(level);
+            myNestingTokens.remove(level - 1);
+        }
 
         Collection<Runnable> runnable = myAfterActions.getAfterAction(event);
         Collection<Runnable> cleanup = myAfterActionsCleanup.getAfterAction(event);
@@ -323,14 +393,16 @@ public class ActionSelectionAdjuster implements EditorActionListener, Disposable
             if (runnable != null && !wasCancelled) {
                 if (debug) System.out.println("running After " + action + ", nesting: " + myNestingLevel.get() + "\n");
                 // after actions should not check for support, that was done in before, just do what is in the queue
+                long startTime = MiaDiagnostics.startTime();
                 guard(() -> runnable.forEach(Runnable::run));
+                MiaDiagnostics.recordTime(MiaDiagnostics.AFTER_ACTION, action.getClass().getName(), startTime);
             }
             
             if (cleanup != null) cleanup.forEach(Runnable::run);
         } catch (Throwable e) {
             LOG.error("lastActionCleanup error", e);
         } finally {
-            myNestingLevel.decrementAndGet();
+            myNestingLevel.set(myNestingTokens.size());
         }
 
         int nesting = myNestingLevel.get();
@@ -432,10 +504,10 @@ public class ActionSelectionAdjuster implements EditorActionListener, Disposable
         if (caretSpawningHandler != null) {
             if (myManager.getStartCaretStates() != null) {
                 // keep only found position carets
-                Set<Caret> foundCarets = myManager.getFoundCarets();
+                CaretCoordinateSet foundCarets = myManager.getFoundCarets();
                 if (foundCarets != null) {
                     for (Caret caret : myEditor.getCaretModel().getAllCarets()) {
-                        if (!foundCarets.contains(caret)) {
+                        if (!foundCarets.contains(CaretUtils.getCoordinates(caret))) {
                             myEditor.getCaretModel().removeCaret(caret);
                         }
                     }
@@ -464,11 +536,18 @@ public class ActionSelectionAdjuster implements EditorActionListener, Disposable
         myManager.guard(runnable);
     }
 
+    private static boolean isAutoIndentMove(@NotNull ActionAdjustmentMap.ActionDescriptor descriptor) {
+        TriggeredAction triggeredAction = descriptor.getTriggeredAction();
+        return triggeredAction != null && triggeredAction.isEnabled() && descriptor.isInSet(MOVE_LINE_UP_AUTO_INDENT_TRIGGER, MOVE_LINE_DOWN_AUTO_INDENT_TRIGGER);
+    }
+
     /**
      * run commands that are scheduled to run before any other actions
      */
     @SuppressWarnings("rawtypes")
     private void runBeforeTriggeredActions() {
+        myPendingAutoIndent.runPending();
+
         // remove them from the list of cancellable commands
         ArrayList<OneTimeRunnable> list = new ArrayList<>(myRunBeforeActions);
         myRunBeforeActions.clear();
@@ -532,9 +611,17 @@ public class ActionSelectionAdjuster implements EditorActionListener, Disposable
      * @param action class of action that just completed
      */
     private void addTriggeredAction(Class<?> action) {
-        TriggeredAction triggeredAction = myAdjustmentsMap.getTriggeredAction(action);
+        ActionAdjustmentMap.ActionDescriptor descriptor = myAdjustmentsMap.getDescriptor(action);
+        if (isAutoIndentMove(descriptor)) {
+            // consecutive moves share one pending indent of the moved lines
+            myPendingAutoIndent.setPending();
+            myPendingAutoIndent.schedule(descriptor.getTriggeredAction().getDelay());
+            return;
+        }
+
+        TriggeredAction triggeredAction = descriptor.getTriggeredAction();
         if (triggeredAction != null && triggeredAction.isEnabled()) {
-            OneTimeRunnable runnable = new OneTimeRunnable(true, () -> runAction(triggeredAction.getAction()));
+            OneTimeRunnable runnable = new OneTimeRunnable(true, MiaWatchdog.watch("triggeredAction " + action.getName(), () -> runAction(triggeredAction.getAction())));
 
             HashSet<OneTimeRunnable> actions = myCancelActionsMap.computeIfAbsent(action, anAction -> new HashSet<>());
             if (debug) System.out.println("Adding triggered task " + runnable);
@@ -0,0 +1,246 @@
+// Copyright 2016-2023 2023 Vladimir Schneider <vladimir.schneider@gmail.com> Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE.txt file.
+package com.vladsch.MissingInActions.manager;
+
+import com.intellij.openapi.editor.Caret;
+import com.intellij.openapi.editor.CaretModel;
+import com.intellij.openapi.editor.CaretState;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.LogicalPosition;
+import com.vladsch.MissingInActions.util.MiaDiagnostics;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.vladsch.MissingInActions.manager.CaretUtils.getCoordinates;
+
+/**
+ * Collects carets to keep and caret states to create, then applies them with a single
+ * {@link CaretModel#setCaretsAndSelections(List)} instead of adding and removing carets one at a time.
+ * <p>
+ * The caret model reuses its carets in order, kept carets are placed so they keep their identity
+ * when possible, {@link #getCaret(Caret)} gives the caret for a kept caret after {@link #apply()}.
+ * Selection states of created carets are reset and caret highlights are updated once.
+ */
+public class CaretBatch {
+    private final @NotNull LineSelectionManager myManager;
+    private final @NotNull Editor myEditor;
+    private final LinkedHashMap<Caret, CaretState> myKeptCarets = new LinkedHashMap<>();
+    private final ArrayList<CaretState> myAddedCarets = new ArrayList<>();
+    private @Nullable Caret myPrimaryCaret = null;
+    private @Nullable CaretState myPrimaryState = null;
+    private @Nullable Map<Long, Caret> myCaretMap = null;
+
+    public CaretBatch(@NotNull LineSelectionManager manager) {
+        myManager = manager;
+        myEditor = manager.getEditor();
+    }
+
+    public boolean isEmpty() {
+        return myKeptCarets.isEmpty() && myAddedCarets.isEmpty();
+    }
+
+    public int size() {
+        return myKeptCarets.size() + myAddedCarets.size();
+    }
+
+    /**
+     * Keep caret with its current position and selection
+     *
+     * @param caret caret to keep
+     */
+    public void keepCaret(@NotNull Caret caret) {
+        myKeptCarets.put(caret, new CaretState(caret.getLogicalPosition(), caret.getEditor().offsetToLogicalPosition(caret.getSelectionStart()), caret.getEditor().offsetToLogicalPosition(caret.getSelectionEnd())));
+    }
+
+    public boolean isKept(@NotNull Caret caret) {
+        return myKeptCarets.containsKey(caret);
+    }
+
+    /**
+     * Add a caret
+     *
+     * @param caretState caret position and selection of the caret
+     * @return caret state
+     */
+    @NotNull
+    public CaretState addCaret(@NotNull CaretState caretState) {
+        myAddedCarets.add(caretState);
+        return caretState;
+    }
+
+    @NotNull
+    public CaretState addCaret(@NotNull LogicalPosition position, @NotNull LogicalPosition selectionStart, @NotNull LogicalPosition selectionEnd) {
+        return addCaret(new CaretState(position, selectionStart, selectionEnd));
+    }
+
+    @NotNull
+    public CaretState addCaret(int offset, int selectionStart, int selectionEnd) {
+        return addCaret(myEditor.offsetToLogicalPosition(offset), myEditor.offsetToLogicalPosition(selectionStart), myEditor.offsetToLogicalPosition(selectionEnd));
+    }
+
+    /**
+     * Make a kept caret primary, by default the current primary caret stays primary if it is kept,
+     * otherwise the first added caret or the first kept caret becomes primary
+     *
+     * @param caret kept caret
+     */
+    public void setPrimaryCaret(@NotNull Caret caret) {
+        myPrimaryCaret = caret;
+        myPrimaryState = null;
+    }
+
+    /**
+     * Make an added caret primary
+     *
+     * @param caretState added caret state
+     */
+    public void setPrimaryCaret(@NotNull CaretState caretState) {
+        myPrimaryCaret = null;
+        myPrimaryState = caretState;
+    }
+
+    /**
+     * @param caret kept caret
+     * @return caret at kept caret's position after {@link #apply()}, null if not kept or merged with another caret
+     */
+    @Nullable
+    public Caret getCaret(@NotNull Caret caret) {
+        CaretState caretState = myKeptCarets.get(caret);
+        return caretState == null ? null : getCaret(caretState);
+    }
+
+    /**
+     * @param caretState added caret state
+     * @return caret at state's position after {@link #apply()}, null if merged with another caret
+     */
+    @Nullable
+    public Caret getCaret(@NotNull CaretState caretState) {
+        LogicalPosition position = caretState.getCaretPosition();
+        return myCaretMap == null || position == null ? null : myCaretMap.get(getCoordinates(position));
+    }
+
+    /**
+     * @return carets for added carets in order added, after {@link #apply()}
+     */
+    @NotNull
+    public List<Caret> getAddedCarets() {
+        ArrayList<Caret> carets = new ArrayList<>(myAddedCarets.size());
+        for (CaretState caretState : myAddedCarets) {
+            Caret caret = getCaret(caretState);
+            if (caret != null) carets.add(caret);
+        }
+        return carets;
+    }
+
+    /**
+     * Replace editor carets with kept and added carets, if the batch is empty all but the primary caret are removed
+     */
+    public void apply() {
+        MiaDiagnostics.recordValue(MiaDiagnostics.CARET_BATCH, "apply", MiaDiagnostics.UNIT_CARETS, size());
+        myManager.runCaretBatch(this::applyCarets);
+    }
+
+    private void applyCarets() {
+        CaretModel caretModel = myEditor.getCaretModel();
+        Caret currentPrimary = caretModel.getPrimaryCaret();
+
+        if (isEmpty()) {
+            caretModel.removeSecondaryCarets();
+            myCaretMap = getCaretMap(caretModel);
+            return;
+        }
+
+        CaretState primaryState = getPrimaryState(currentPrimary);
+
+        // keep line selection states of kept carets, their caret can change
+        HashMap<Caret, LineSelectionState> keptStates = new HashMap<>();
+        for (Caret caret : myKeptCarets.keySet()) {
+            keptStates.put(caret, myManager.getSelectionState(caret));
+        }
+
+        // states are in caret model order, the model reuses its carets in this order and the last one is primary
+        Map<Long, Caret> caretMap = getCaretMap(caretModel);
+        List<CaretState> modelStates = caretModel.getCaretsAndSelections();
+        int iMax = size();
+        CaretState[] states = new CaretState[iMax];
+        HashSet<Caret> placed = new HashSet<>();
+
+        states[iMax - 1] = primaryState;
+        int slotMax = Math.min(modelStates.size(), iMax - 1);
+        for (int i = 0; i < slotMax; i++) {
+            LogicalPosition position = modelStates.get(i).getCaretPosition();
+            Caret caret = position == null ? null : caretMap.get(getCoordinates(position));
+            CaretState caretState = caret == null ? null : myKeptCarets.get(caret);
+            if (caretState != null && caretState != primaryState) {
+                states[i] = caretState;
+                placed.add(caret);
+            }
+        }
+
+        int slot = 0;
+        for (Map.Entry<Caret, CaretState> entry : myKeptCarets.entrySet()) {
+            if (entry.getValue() == primaryState || placed.contains(entry.getKey())) continue;
+            while (states[slot] != null) slot++;
+            states[slot] = entry.getValue();
+        }
+
+        for (CaretState caretState : myAddedCarets) {
+            if (caretState == primaryState) continue;
+            while (states[slot] != null) slot++;
+            states[slot] = caretState;
+        }
+
+        caretModel.setCaretsAndSelections(Arrays.asList(states));
+        myCaretMap = getCaretMap(caretModel);
+
+        // restore primary caret if the caret model did not make the last caret primary
+        Caret primaryCaret = getCaret(primaryState);
+        if (primaryCaret != null && primaryCaret != caretModel.getPrimaryCaret()) {
+            int selectionStart = primaryCaret.getSelectionStart();
+            int selectionEnd = primaryCaret.getSelectionEnd();
+            LogicalPosition position = primaryCaret.getLogicalPosition();
+            caretModel.removeCaret(primaryCaret);
+            Caret newCaret = caretModel.addCaret(myEditor.logicalToVisualPosition(position), true);
+            if (newCaret != null) {
+                newCaret.setSelection(selectionStart, selectionEnd);
+            }
+            myCaretMap = getCaretMap(caretModel);
+        }
+
+        for (CaretState caretState : myAddedCarets) {
+            Caret caret = getCaret(caretState);
+            if (caret != null) myManager.resetSelectionState(caret);
+        }
+
+        for (Map.Entry<Caret, LineSelectionState> entry : keptStates.entrySet()) {
+            Caret caret = getCaret(entry.getKey());
+            if (caret != null) myManager.setLineSelectionState(caret, entry.getValue().anchorColumn, entry.getValue().isStartAnchor);
+        }
+    }
+
+    @NotNull
+    private CaretState getPrimaryState(@NotNull Caret currentPrimary) {
+        if (myPrimaryCaret != null && myKeptCarets.containsKey(myPrimaryCaret)) return myKeptCarets.get(myPrimaryCaret);
+        if (myPrimaryState != null && myAddedCarets.contains(myPrimaryState)) return myPrimaryState;
+        if (myKeptCarets.containsKey(currentPrimary)) return myKeptCarets.get(currentPrimary);
+        if (!myAddedCarets.isEmpty()) return myAddedCarets.get(0);
+        return myKeptCarets.values().iterator().next();
+    }
+
+    @NotNull
+    private static Map<Long, Caret> getCaretMap(@NotNull CaretModel caretModel) {
+        List<Caret> carets = caretModel.getAllCarets();
+        HashMap<Long, Caret> caretMap = new HashMap<>(carets.size() * 2);
+        for (Caret caret : carets) {
+            caretMap.put(getCoordinates(caret), caret);
+        }
+        return caretMap;
+    }
+}
@@ -0,0 +1,77 @@
+// Copyright 2016-2023 2023 Vladimir Schneider <vladimir.schneider@gmail.com> Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE.txt file.
+package com.vladsch.MissingInActions.manager;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Set of caret coordinates, line in the upper and column in the lower 32 bits as given by {@link CaretUtils#getCoordinates},
+ * kept as a sorted array so carets are matched by position without holding on to caret instances
+ */
+public class CaretCoordinateSet {
+    private final long[] myCoordinates;
+
+    /**
+     * @param coordinates caret coordinates, in any order and can have duplicates
+     * @param length      number of coordinates to use from the array
+     */
+    public CaretCoordinateSet(@NotNull long[] coordinates, int length) {
+        long[] sorted = Arrays.copyOf(coordinates, length);
+        Arrays.sort(sorted);
+
+        int unique = 0;
+        for (int i = 0; i < length; i++) {
+            if (unique == 0 || sorted[unique - 1] != sorted[i]) sorted[unique++] = sorted[i];
+        }
+
+        myCoordinates = unique == length ? sorted : Arrays.copyOf(sorted, unique);
+    }
+
+    public CaretCoordinateSet(@NotNull long[] coordinates) {
+        this(coordinates, coordinates.length);
+    }
+
+    public static long getCoordinates(int line, int column) {
+        return ((long) line << 32) | column;
+    }
+
+    public static int getLine(long coordinates) {
+        return (int) (coordinates >>> 32);
+    }
+
+    public static int getColumn(long coordinates) {
+        return (int) coordinates;
+    }
+
+    public int size() {
+        return myCoordinates.length;
+    }
+
+    public boolean isEmpty() {
+        return myCoordinates.length == 0;
+    }
+
+    public boolean contains(long coordinates) {
+        return Arrays.binarySearch(myCoordinates, coordinates) >= 0;
+    }
+
+    public boolean containsLine(int line) {
+        return getLineCoordinates(line) != -1;
+    }
+
+    /**
+     * @param line line
+     * @return coordinates of first caret on the line or -1 if none
+     */
+    public long getLineCoordinates(int line) {
+        int index = Arrays.binarySearch(myCoordinates, getCoordinates(line, 0));
+        if (index < 0) index = -index - 1;
+        return index < myCoordinates.length && getLine(myCoordinates[index]) == line ? myCoordinates[index] : -1;
+    }
+
+    @NotNull
+    public long[] toArray() {
+        return myCoordinates.clone();
+    }
+}
@@ -21,6 +21,8 @@ public interface CaretHighlighter {
         @Override public void removeCaretHighlight() { }
         @Override public void updateCaretHighlights() { }
         @Override public void setPrimaryCaret(@Nullable Caret caret) { }
+        @Override public void startCaretBatch() { }
+        @Override public void endCaretBatch() { }
         // @formatter:on
     };
 
@@ -34,4 +36,8 @@ public interface CaretHighlighter {
     void caretAdded(@NotNull Caret caret);
     void caretRemoved(@NotNull Caret caret);
     void setPrimaryCaret(@Nullable Caret caret);
+
+    // highlight updates are held until the outermost batch ends
+    void startCaretBatch();
+    void endCaretBatch();
 }
@@ -2,6 +2,7 @@
 package com.vladsch.MissingInActions.manager;
 
 import com.intellij.openapi.editor.Caret;
+import com.intellij.openapi.editor.CaretModel;
 import com.intellij.openapi.editor.CaretVisualAttributes;
 import com.vladsch.MissingInActions.settings.ApplicationSettings;
 import com.vladsch.MissingInActions.settings.CaretThicknessType;
@@ -9,6 +10,8 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 
 class CaretHighlighterImpl implements CaretHighlighter {
@@ -18,6 +21,12 @@ class CaretHighlighterImpl implements CaretHighlighter {
     @Nullable private CaretVisualAttributes myStartMatchedAttributes = null;
     @Nullable private CaretVisualAttributes myStartAttributes = null;
     @Nullable private CaretVisualAttributes myFoundAttributes = null;
+    // search carets were highlighted since the last removal of search caret highlights
+    private boolean mySearchCaretsHighlighted = false;
+    private int myBatchNesting = 0;
+    private boolean myBatchHighlightPending = false;
+    // search caret highlights held during a caret batch
+    @NotNull private final LinkedHashMap<Caret, CaretAttributeType> myBatchCaretAttributes = new LinkedHashMap<>();
 
     CaretHighlighterImpl(@NotNull LineSelectionManager manager) {
         myManager = manager;
@@ -57,83 +66,96 @@ class CaretHighlighterImpl implements CaretHighlighter {
     @Override
     public void removeCaretHighlight() {
         if (myPrimaryCaret != null) {
-            myPrimaryCaret.setVisualAttributes(CaretVisualAttributes.DEFAULT);
+            setCaretAttributes(myPrimaryCaret, CaretVisualAttributes.DEFAULT);
         }
 
-        Set<Caret> myFoundCarets = myManager.getFoundCarets();
-        Set<Caret> myStartMatchedCarets = myManager.getStartMatchedCarets();
-        Set<Caret> myStartCarets = myManager.getStartCarets();
-
-        Set<Long> excludeList = null;
+        removeSearchCaretHighlights();
+    }
 
-        highlightCaretList(myFoundCarets, CaretAttributeType.DEFAULT, null);
+    private void removeSearchCaretHighlights() {
+        if (!mySearchCaretsHighlighted) return;
 
-        //noinspection ConstantValue,ReassignedVariable
-        excludeList = CaretUtils.getExcludedCoordinates(excludeList, myFoundCarets);
-        highlightCaretList(myStartMatchedCarets, CaretAttributeType.DEFAULT, excludeList);
+        // carets can move after being highlighted so check all carets
+        for (Caret caret : myManager.getEditor().getCaretModel().getAllCarets()) {
+            if (caret != myPrimaryCaret) {
+                setCaretAttributes(caret, CaretVisualAttributes.DEFAULT);
+            }
+        }
 
-        excludeList = CaretUtils.getExcludedCoordinates(excludeList, myStartMatchedCarets);
-        highlightCaretList(myStartCarets, CaretAttributeType.DEFAULT, excludeList);
+        mySearchCaretsHighlighted = false;
     }
 
-    @Override
-    public void highlightCaretList(@Nullable Collection<Caret> carets, @NotNull CaretAttributeType attributeType, @Nullable Set<Long> excludeList) {
-        CaretVisualAttributes attributes = null;
+    private static void setCaretAttributes(@NotNull Caret caret, @NotNull CaretVisualAttributes attributes) {
+        if (caret.getVisualAttributes() != attributes) {
+            caret.setVisualAttributes(attributes);
+        }
+    }
 
+    @Nullable
+    private CaretVisualAttributes getAttributes(@NotNull CaretAttributeType attributeType) {
         switch (attributeType) {
             case PRIMARY:
-                attributes = myPrimaryAttributes;
-                break;
+                return myPrimaryAttributes;
             case START:
-                attributes = myStartAttributes;
-                break;
+                return myStartAttributes;
             case START_MATCHED:
-                attributes = myStartMatchedAttributes;
-                break;
+                return myStartMatchedAttributes;
             case FOUND:
-                attributes = myFoundAttributes;
-                break;
+                return myFoundAttributes;
         }
+        return null;
+    }
 
+    private void setCaretAttributeType(@NotNull Caret caret, @NotNull CaretAttributeType attributeType) {
+        CaretVisualAttributes attributes = getAttributes(attributeType);
         if (attributes == null) attributes = CaretVisualAttributes.DEFAULT;
 
+        if (attributeType != CaretAttributeType.DEFAULT) mySearchCaretsHighlighted = true;
+        setCaretAttributes(caret, attributes);
+    }
+
+    @Override
+    public void highlightCaretList(@Nullable Collection<Caret> carets, @NotNull CaretAttributeType attributeType, @Nullable Set<Long> excludeList) {
         if (carets != null && !carets.isEmpty()) {
             for (Caret caret : carets) {
                 if (excludeList != null && excludeList.contains(CaretUtils.getCoordinates(caret))) continue;
-                caret.setVisualAttributes(attributes);
+
+                if (myBatchNesting > 0) {
+                    // last highlight of the caret in the batch is applied when the batch ends
+                    myBatchCaretAttributes.put(caret, attributeType);
+                } else {
+                    setCaretAttributeType(caret, attributeType);
+                }
             }
         }
     }
 
     @Override
     public void highlightCarets() {
-        int caretCount = myManager.getEditor().getCaretModel().getCaretCount();
-        Set<Caret> myFoundCarets = myManager.getFoundCarets();
-        Set<Caret> myStartMatchedCarets = myManager.getStartMatchedCarets();
-        Set<Caret> myStartCarets = myManager.getStartCarets();
-
-        if (caretCount == 1 || (myFoundCarets == null && myStartMatchedCarets == null && myStartCarets == null)) {
-            Caret caret = myManager.getEditor().getCaretModel().getPrimaryCaret();
+        if (myBatchNesting > 0) {
+            myBatchHighlightPending = true;
+            return;
+        }
 
-            removeCaretHighlight();
-            myPrimaryCaret = null;
+        CaretModel caretModel = myManager.getEditor().getCaretModel();
+        int caretCount = caretModel.getCaretCount();
+        CaretCoordinateSet myFoundCarets = myManager.getFoundCarets();
+        CaretCoordinateSet myStartMatchedCarets = myManager.getStartMatchedCarets();
+        CaretCoordinateSet myStartCarets = myManager.getStartCarets();
 
-            if (caretCount > 1) {
-                if (myPrimaryAttributes != null) {
-                    myPrimaryCaret = caret;
-                    myPrimaryCaret.setVisualAttributes(myPrimaryAttributes);
-                }
-            } else {
-                Set<Long> excludeList = null;
+        if (caretCount == 1 || (myFoundCarets == null && myStartMatchedCarets == null && myStartCarets == null)) {
+            // only the change to primary caret highlight is applied, search caret highlights are removed if there are any
+            Caret primaryCaret = caretCount > 1 && myPrimaryAttributes != null ? caretModel.getPrimaryCaret() : null;
 
-                highlightCaretList(myFoundCarets, CaretAttributeType.DEFAULT, null);
+            if (myPrimaryCaret != null && myPrimaryCaret != primaryCaret) {
+                setCaretAttributes(myPrimaryCaret, CaretVisualAttributes.DEFAULT);
+            }
 
-                //noinspection ConstantValue,ReassignedVariable
-                excludeList = CaretUtils.getExcludedCoordinates(excludeList, myFoundCarets);
-                highlightCaretList(myStartMatchedCarets, CaretAttributeType.DEFAULT, excludeList);
+            myPrimaryCaret = primaryCaret;
+            removeSearchCaretHighlights();
 
-                excludeList = CaretUtils.getExcludedCoordinates(excludeList, myStartMatchedCarets);
-                highlightCaretList(myStartCarets, CaretAttributeType.DEFAULT, excludeList);
+            if (myPrimaryCaret != null) {
+                setCaretAttributes(myPrimaryCaret, myPrimaryAttributes);
             }
         }
     }
@@ -150,6 +172,32 @@ class CaretHighlighterImpl implements CaretHighlighter {
 
     @Override
     public void caretRemoved(@NotNull Caret caret) {
+        if (caret == myPrimaryCaret) myPrimaryCaret = null;
+        if (!myBatchCaretAttributes.isEmpty()) myBatchCaretAttributes.remove(caret);
         updateCaretHighlights();
     }
+
+    @Override
+    public void startCaretBatch() {
+        myBatchNesting++;
+    }
+
+    @Override
+    public void endCaretBatch() {
+        if (myBatchNesting > 0 && --myBatchNesting == 0) {
+            if (!myBatchCaretAttributes.isEmpty()) {
+                for (Map.Entry<Caret, CaretAttributeType> entry : myBatchCaretAttributes.entrySet()) {
+                    if (entry.getKey().isValid()) {
+                        setCaretAttributeType(entry.getKey(), entry.getValue());
+                    }
+                }
+                myBatchCaretAttributes.clear();
+            }
+
+            if (myBatchHighlightPending) {
+                myBatchHighlightPending = false;
+                highlightCarets();
+            }
+        }
+    }
 }
@@ -6,18 +6,17 @@ import com.intellij.openapi.editor.LogicalPosition;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
 
 public class CaretUtils {
     @Nullable
-    public static Set<Long> getExcludedCoordinates(@Nullable Set<Long> excludeSet, @Nullable Collection<Caret> exclude) {
-        if (exclude == null || exclude.isEmpty()) return excludeSet;
-        if (excludeSet == null) excludeSet = new HashSet<>(exclude.size());
-        for (Caret caret : exclude) {
-            excludeSet.add(getCoordinates(caret));
+    public static CaretCoordinateSet getCoordinateSet(@Nullable Collection<Caret> carets) {
+        if (carets == null) return null;
+        long[] coordinates = new long[carets.size()];
+        int i = 0;
+        for (Caret caret : carets) {
+            coordinates[i++] = getCoordinates(caret);
         }
-        return excludeSet;
+        return new CaretCoordinateSet(coordinates);
     }
 
     public static long getCoordinates(Caret caret) {
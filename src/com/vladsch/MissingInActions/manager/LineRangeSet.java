@@ -0,0 +1,55 @@
+// Copyright 2016-2023 2023 Vladimir Schneider <vladimir.schneider@gmail.com> Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE.txt file.
+package com.vladsch.MissingInActions.manager;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Union of inclusive line ranges, kept sorted with overlapping and adjacent ranges merged
+ */
+public class LineRangeSet {
+    private final ArrayList<int[]> myRanges = new ArrayList<>();
+
+    public boolean isEmpty() {
+        return myRanges.isEmpty();
+    }
+
+    public void clear() {
+        myRanges.clear();
+    }
+
+    /**
+     * Add lines to the set
+     *
+     * @param startLine first line
+     * @param endLine   last line, inclusive
+     */
+    public void add(int startLine, int endLine) {
+        int start = Math.min(startLine, endLine);
+        int end = Math.max(startLine, endLine);
+
+        int i = 0;
+        while (i < myRanges.size() && myRanges.get(i)[1] + 1 < start) i++;
+
+        // merge all ranges overlapping or adjacent to the new one
+        while (i < myRanges.size() && myRanges.get(i)[0] <= end + 1) {
+            int[] range = myRanges.remove(i);
+            start = Math.min(start, range[0]);
+            end = Math.max(end, range[1]);
+        }
+
+        myRanges.add(i, new int[] { start, end });
+    }
+
+    /**
+     * @return sorted disjoint ranges of {startLine, endLine}, end inclusive
+     */
+    @NotNull
+    public List<int[]> getRanges() {
+        ArrayList<int[]> ranges = new ArrayList<>(myRanges.size());
+        for (int[] range : myRanges) ranges.add(range.clone());
+        return ranges;
+    }
+}
@@ -30,12 +30,16 @@ import com.vladsch.MissingInActions.settings.MouseModifierType;
 import com.vladsch.MissingInActions.settings.PrefixOnPastePatternType;
 import com.vladsch.MissingInActions.settings.SuffixOnPastePatternType;
 import com.vladsch.MissingInActions.util.CaseFormatPreserver;
+import com.vladsch.MissingInActions.util.DirtyRangeList;
 import com.vladsch.MissingInActions.util.EditHelpers;
 import com.vladsch.MissingInActions.util.EditorActiveLookupListener;
 import com.vladsch.MissingInActions.util.InsertedRangeContext;
 import com.vladsch.MissingInActions.util.MiaCancelableJobScheduler;
+import com.vladsch.MissingInActions.util.MiaDiagnostics;
+import com.vladsch.MissingInActions.util.MiaWatchdog;
 import com.vladsch.MissingInActions.util.TextOffsetConsumer;
 import com.vladsch.MissingInActions.util.highlight.MiaLineRangeHighlightProviderImpl;
+import com.vladsch.MissingInActions.util.highlight.MiaWordHighlighter;
 import com.vladsch.flexmark.util.sequence.BasedSequence;
 import com.vladsch.plugin.util.AwtRunnable;
 import com.vladsch.plugin.util.DelayedRunner;
@@ -58,12 +62,10 @@ import java.awt.Component;
 import java.awt.KeyboardFocusManager;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseEvent;
+import java.util.ArrayList;
 import java.util.BitSet;
-import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -83,6 +85,9 @@ public class LineSelectionManager implements
         , EditorMouseMotionListener
         , Disposable {
 
+    // characters beyond the identifier around a smart replaced user macro passed as its context
+    private static final int SMART_REPLACE_CONTEXT = 16;
+
     final private Editor myEditor;
     final private ReEntryGuard myCaretGuard = new ReEntryGuard();
     final private HashMap<Caret, StoredLineSelectionState> mySelectionStates = new HashMap<>();
@@ -98,14 +103,17 @@ public class LineSelectionManager implements
     private final CaretHighlighter myCaretHighlighter;
     ApplicationSettings mySettings;
     @Nullable private RangeLimitedCaretSpawningHandler myCaretSpawningHandler;
-    @Nullable private Set<Caret> myStartCarets;
-    @Nullable private Set<Caret> myStartMatchedCarets;
-    @Nullable private Set<Caret> myFoundCarets;
+    @Nullable private CaretCoordinateSet myStartCarets;
+    @Nullable private CaretCoordinateSet myStartMatchedCarets;
+    @Nullable private CaretCoordinateSet myFoundCarets;
     @Nullable private List<CaretState> myStartCaretStates;
     final @NotNull LineRangeHighlightProvider<ApplicationSettings> myIsolationHighlightProvider;
     @Nullable LineRangeHighlighter<ApplicationSettings> myIsolationHighlighter;
     @NotNull HighlightProvider<ApplicationSettings> myHighlightProvider = Plugin.getInstance();
     OneTimeRunnable myHighlightRunner = OneTimeRunnable.NULL;
+    final @NotNull DirtyRangeList myDirtyRanges = new DirtyRangeList();
+    @Nullable HighlightProvider<ApplicationSettings> myShowingHighlightProvider = null;
+    boolean myHighlightsStale = false;
     private HashMap<String, String> myOnPasteReplacementMap = null;
     private SearchPattern myOnPasteUserSearchPattern = null;
     @NotNull private String myOnPasteUserReplacementText = "";
@@ -114,6 +122,7 @@ public class LineSelectionManager implements
     @Nullable protected Highlighter<ApplicationSettings> myHighlighter = null;
     final @NotNull HighlightListener myIsolatedLinesListener;
     boolean myInSelectionStackPopup = false;
+    private boolean myInCaretBatch = false;
 
     //private AwtRunnable myInvalidateStoredLineStateRunnable = new AwtRunnable(true, this::invalidateStoredLineState);
     private boolean myIsActiveLookup;  // true if a lookup is active in the editor
@@ -144,6 +153,8 @@ public class LineSelectionManager implements
     }
 
     public void setHighlightProvider(@Nullable HighlightProvider<ApplicationSettings> highlightProvider) {
+        myShowingHighlightProvider = null;
+
         HighlightProvider<ApplicationSettings> oldHighlightProvider = myHighlightProvider;
         Plugin plugin = Plugin.getInstance();
         myHighlightProvider = highlightProvider == null ? plugin : highlightProvider;
@@ -162,10 +173,41 @@ public class LineSelectionManager implements
 
             myHighlightRunner.cancel();
 
-            myHighlightRunner = OneTimeRunnable.schedule(MiaCancelableJobScheduler.getInstance(), 250, new AwtRunnable(true, this::updateHighlights));
+            myHighlightRunner = OneTimeRunnable.schedule(MiaCancelableJobScheduler.getInstance(), 250, new AwtRunnable(true, MiaWatchdog.watch("LineSelectionManager.updateHighlights", this::updateHighlights)));
         }
     }
 
+    public boolean isEditorShowing() {
+        return myEditor.getContentComponent().isShowing();
+    }
+
+    /**
+     * Set highlight provider now if the editor is showing, otherwise when it is shown or selected
+     *
+     * @param highlightProvider highlight provider, null for default
+     */
+    public void setHighlightProviderWhenShowing(@Nullable HighlightProvider<ApplicationSettings> highlightProvider) {
+        if (isEditorShowing()) {
+            setHighlightProvider(highlightProvider);
+        } else {
+            myShowingHighlightProvider = highlightProvider == null ? Plugin.getInstance() : highlightProvider;
+            myHighlightsStale = true;
+        }
+    }
+
+    /**
+     * Update highlights which changed while the editor was not showing
+     */
+    public void updateStaleHighlights() {
+        if (!myHighlightsStale || myEditor.isDisposed()) return;
+
+        HighlightProvider<ApplicationSettings> highlightProvider = myShowingHighlightProvider;
+        if (highlightProvider != null && highlightProvider != myHighlightProvider) {
+            setHighlightProvider(highlightProvider);
+        }
+        updateHighlights();
+    }
+
     public boolean isInSelectionStackPopup() {
         return myInSelectionStackPopup;
     }
@@ -202,7 +244,13 @@ public class LineSelectionManager implements
 
             @Override
             public void highlightsChanged() {
-                updateHighlights();
+                myHighlightRunner.cancel();
+                myHighlightsStale = true;
+
+                // showing editors are updated in time-sliced chunks, others when shown
+                if (isEditorShowing()) {
+                    Plugin.getInstance().queueStaleHighlights(LineSelectionManager.this);
+                }
             }
         };
         Plugin plugin = Plugin.getInstance();
@@ -259,9 +307,19 @@ public class LineSelectionManager implements
         DocumentListener documentListener = new DocumentListener() {
             @Override
             public void documentChanged(@NotNull final com.intellij.openapi.editor.event.DocumentEvent event) {
-                if (myHighlightProvider.isShowHighlights()) {
-                    myHighlightRunner.cancel();
-                    myHighlightRunner = OneTimeRunnable.schedule(MiaCancelableJobScheduler.getInstance(), 250, new AwtRunnable(true, () -> updateHighlights()));
+                long watchToken = MiaWatchdog.start("LineSelectionManager.documentChanged");
+                try {
+                    if (myHighlighter instanceof MiaWordHighlighter) {
+                        ((MiaWordHighlighter) myHighlighter).documentChanged(event.getOffset(), event.getOldLength(), event.getNewLength());
+                    }
+
+                    if (myHighlightProvider.isShowHighlights()) {
+                        myDirtyRanges.documentChanged(event.getOffset(), event.getOldLength(), event.getNewLength());
+                        myHighlightRunner.cancel();
+                        myHighlightRunner = OneTimeRunnable.schedule(MiaCancelableJobScheduler.getInstance(), 250, new AwtRunnable(true, MiaWatchdog.watch("LineSelectionManager.updateChangedHighlights", LineSelectionManager.this::updateChangedHighlights)));
+                    }
+                } finally {
+                    endWatch(watchToken);
                 }
             }
         };
@@ -281,6 +339,7 @@ public class LineSelectionManager implements
                         setHighlightProvider(plugin.getActiveHighlightProvider());
                     }
                 }
+                updateStaleHighlights();
             }
         });
 
@@ -384,8 +443,19 @@ public class LineSelectionManager implements
 
                 if (smartReplace) {
                     preserver.studyFormatBefore(chars, 0, start, end, prefixPatternType, prefixes, suffixPatternType, suffixes, separators);
-                    String edited = sb + myOnPasteUserReplacementText + text.substring(end);
-                    final TextRange range = new TextRange(startLength, startLength + replaceLength);
+
+                    // format is only affected by the identifier around the replacement, use a window of edited text instead of all of it
+                    int contextStart = startLength;
+                    while (contextStart > 0 && EditHelpers.isIdentifierPart(sb.charAt(contextStart - 1))) contextStart--;
+                    contextStart = Math.max(0, contextStart - SMART_REPLACE_CONTEXT);
+
+                    int contextEnd = end;
+                    while (contextEnd < text.length() && EditHelpers.isIdentifierPart(text.charAt(contextEnd))) contextEnd++;
+                    contextEnd = Math.min(text.length(), contextEnd + SMART_REPLACE_CONTEXT);
+
+                    String edited = sb.substring(contextStart) + myOnPasteUserReplacementText + text.substring(end, contextEnd);
+                    final int editedStart = startLength - contextStart;
+                    final TextRange range = new TextRange(editedStart, editedStart + replaceLength);
                     final BasedSequence chars1 = BasedSequence.of(edited);
 
                     InsertedRangeContext i = preserver.preserveFormatAfter(
@@ -414,9 +484,9 @@ public class LineSelectionManager implements
                         replaceLength = i.word().length();
 
                         if (i.getCaretDelta() > 0) {
-                            // changed the next character(s), we grab it too
-                            sb.append(edited.substring(startLength + myOnPasteUserReplacementText.length() - i.getCaretDelta()));
-                            end += i.getCaretDelta();
+                            // changed the next character(s), we grab them with the rest of the context, text after it is copied from lastPos
+                            sb.append(edited, editedStart + myOnPasteUserReplacementText.length() - i.getCaretDelta(), edited.length());
+                            end = contextEnd;
                         }
                     }
                 } else {
@@ -465,17 +535,7 @@ public class LineSelectionManager implements
     }
 
     public void clearSearchFoundCarets() {
-        Set<Long> excludeList = null;
-
-        myCaretHighlighter.highlightCaretList(myFoundCarets, CaretAttributeType.DEFAULT, null);
-
-        //noinspection ConstantConditions
-        excludeList = CaretUtils.getExcludedCoordinates(excludeList, myFoundCarets);
-        myCaretHighlighter.highlightCaretList(myStartMatchedCarets, CaretAttributeType.DEFAULT, excludeList);
-
-        excludeList = CaretUtils.getExcludedCoordinates(excludeList, myStartMatchedCarets);
-        myCaretHighlighter.highlightCaretList(myStartCarets, CaretAttributeType.DEFAULT, excludeList);
-
+        // search caret highlights are removed by highlightCarets once there are no search carets
         myCaretSpawningHandler = null;
         myStartCaretStates = null;
         myStartCarets = null;
@@ -489,98 +549,72 @@ public class LineSelectionManager implements
         return myStartCaretStates;
     }
 
-    public @Nullable Set<Caret> getStartCarets() {
+    public @Nullable CaretCoordinateSet getStartCarets() {
         return myStartCarets;
     }
 
-    public @Nullable Set<Caret> getStartMatchedCarets() {
+    public @Nullable CaretCoordinateSet getStartMatchedCarets() {
         return myStartMatchedCarets;
     }
 
     @Nullable
-    public Set<Caret> getFoundCarets() {
+    public CaretCoordinateSet getFoundCarets() {
         return myFoundCarets;
     }
 
     public void setSearchFoundCaretSpawningHandler(
             @Nullable final RangeLimitedCaretSpawningHandler caretSpawningHandler,
             @Nullable final List<CaretState> startCaretStates,
-            @Nullable final Collection<Caret> startCarets,
-            @Nullable final Collection<Caret> startMatchedCarets,
-            @Nullable final Collection<Caret> foundCarets
+            @Nullable final CaretCoordinateSet startCarets,
+            @Nullable final CaretCoordinateSet startMatchedCarets,
+            @Nullable final CaretCoordinateSet foundCarets
     ) {
         myCaretSpawningHandler = caretSpawningHandler;
         myStartCaretStates = startCaretStates;
-        setFoundCarets(foundCarets);
-        setStartMatchedCarets(startMatchedCarets);
-        setStartCarets(startCarets);
+        myFoundCarets = foundCarets;
+        myStartMatchedCarets = startMatchedCarets;
+        myStartCarets = startCarets;
+        highlightSearchCarets();
     }
 
     public void setSearchFoundCaretSpawningHandler(@Nullable final RangeLimitedCaretSpawningHandler caretSpawningHandler) {
         myCaretSpawningHandler = caretSpawningHandler;
     }
 
-    @SuppressWarnings("ConstantConditions")
-    private void setStartCarets(@Nullable final Collection<Caret> carets) {
-        Set<Long> excludeList = null;
-        excludeList = CaretUtils.getExcludedCoordinates(excludeList, myFoundCarets);
-        excludeList = CaretUtils.getExcludedCoordinates(excludeList, myStartMatchedCarets);
-
-        myCaretHighlighter.highlightCaretList(myStartCarets, CaretAttributeType.DEFAULT, excludeList);
-        if (carets == null) {
-            myStartCarets = null;
-        } else {
-            myStartCarets = new HashSet<>(carets.size());
-            Caret myPrimaryCaret = myCaretHighlighter.getPrimaryCaret();
-            getMatchedCarets(carets, excludeList, myPrimaryCaret, myStartCarets);
-            myCaretHighlighter.highlightCaretList(myStartCarets, CaretAttributeType.START, excludeList);
+    // highlight all carets in one pass, found carets take precedence over start matched carets which take precedence over start carets
+    private void highlightSearchCarets() {
+        if (myFoundCarets == null && myStartMatchedCarets == null && myStartCarets == null) {
+            myCaretHighlighter.highlightCarets();
+            return;
         }
-    }
 
-    private void setStartMatchedCarets(@Nullable final Collection<Caret> carets) {
-        Set<Long> excludeList = CaretUtils.getExcludedCoordinates(null, myFoundCarets);
+        List<Caret> foundCarets = new ArrayList<>();
+        List<Caret> startMatchedCarets = new ArrayList<>();
+        List<Caret> startCarets = new ArrayList<>();
+        List<Caret> otherCarets = new ArrayList<>();
+        Caret primaryCaret = myCaretHighlighter.getPrimaryCaret();
 
-        myCaretHighlighter.highlightCaretList(myStartMatchedCarets, CaretAttributeType.DEFAULT, excludeList);
-        if (carets == null) {
-            myStartMatchedCarets = null;
-        } else {
-            myStartMatchedCarets = new HashSet<>(carets.size());
-            Caret myPrimaryCaret = myCaretHighlighter.getPrimaryCaret();
-            getMatchedCarets(carets, excludeList, myPrimaryCaret, myStartMatchedCarets);
-            myCaretHighlighter.highlightCaretList(myStartMatchedCarets, CaretAttributeType.START_MATCHED, excludeList);
-        }
-    }
+        for (Caret caret : myEditor.getCaretModel().getAllCarets()) {
+            long coordinates = CaretUtils.getCoordinates(caret);
+            List<Caret> carets;
 
-    private void getMatchedCarets(@NotNull final Collection<Caret> carets, final Set<Long> excludeList, Caret myPrimaryCaret, final Set<Caret> matchedCarets) {
-        for (Caret caret : carets) {
-            if (excludeList != null && excludeList.contains(CaretUtils.getCoordinates(caret))) continue;
+            if (myFoundCarets != null && myFoundCarets.contains(coordinates)) carets = foundCarets;
+            else if (myStartMatchedCarets != null && myStartMatchedCarets.contains(coordinates)) carets = startMatchedCarets;
+            else if (myStartCarets != null && myStartCarets.contains(coordinates)) carets = startCarets;
+            else if (caret == primaryCaret) continue;
+            else carets = otherCarets;
 
-            if (myPrimaryCaret != null && myPrimaryCaret.equals(caret)) {
+            if (caret == primaryCaret) {
                 myCaretHighlighter.setPrimaryCaret(null);
-                myPrimaryCaret = null;
+                primaryCaret = null;
             }
-            matchedCarets.add(caret);
+            carets.add(caret);
         }
-    }
-
-    private void setFoundCarets(@Nullable final Collection<Caret> carets) {
-        myCaretHighlighter.highlightCaretList(myFoundCarets, CaretAttributeType.DEFAULT, null);
-        if (carets == null) {
-            myFoundCarets = null;
-        } else {
-            myFoundCarets = new HashSet<>(carets.size());
-            Caret myPrimaryCaret = myCaretHighlighter.getPrimaryCaret();
-
-            for (Caret caret : carets) {
-                if (myPrimaryCaret != null && myPrimaryCaret.equals(caret)) {
-                    myCaretHighlighter.setPrimaryCaret(null);
-                    myPrimaryCaret = null;
-                }
-                myFoundCarets.add(caret);
-            }
 
-            myCaretHighlighter.highlightCaretList(myFoundCarets, CaretAttributeType.FOUND, null);
-        }
+        myCaretHighlighter.highlightCaretList(otherCarets, CaretAttributeType.DEFAULT, null);
+        myCaretHighlighter.highlightCaretList(foundCarets, CaretAttributeType.FOUND, null);
+        myCaretHighlighter.highlightCaretList(startMatchedCarets, CaretAttributeType.START_MATCHED, null);
+        myCaretHighlighter.highlightCaretList(startCarets, CaretAttributeType.START, null);
     }
 
     @Nullable
@@ -626,17 +660,46 @@ public class LineSelectionManager implements
         if (myEditor.isDisposed()) return;
 
         myHighlightRunner.cancel();
+        myDirtyRanges.clear();
+        myHighlightsStale = false;
 
         if (myHighlightProvider.isShowHighlights()) {
             if (myHighlighter == null) {
                 myHighlighter = myHighlightProvider.getHighlighter(myEditor);
             }
+            long startTime = MiaDiagnostics.startTime();
             myHighlighter.updateHighlights();
+            MiaDiagnostics.recordTime(MiaDiagnostics.HIGHLIGHT_RESCAN, "full", startTime);
         } else {
             removeHighlights();
         }
     }
 
+    /**
+     * Update highlights of text changed since last update, full update if the highlighter cannot update only changed text
+     */
+    public void updateChangedHighlights() {
+        if (myEditor.isDisposed()) return;
+
+        if (myHighlightsStale) {
+            // full update when shown
+            myDirtyRanges.clear();
+            if (isEditorShowing()) updateStaleHighlights();
+        } else if (!isEditorShowing() && myHighlighter != null) {
+            myHighlightRunner.cancel();
+            myDirtyRanges.clear();
+            myHighlightsStale = true;
+        } else if (myHighlighter instanceof MiaWordHighlighter && myHighlightProvider.isShowHighlights()) {
+            myHighlightRunner.cancel();
+            long startTime = MiaDiagnostics.startTime();
+            ((MiaWordHighlighter) myHighlighter).updateHighlights(myDirtyRanges);
+            MiaDiagnostics.recordTime(MiaDiagnostics.HIGHLIGHT_RESCAN, "changed", startTime);
+            myDirtyRanges.clear();
+        } else {
+            updateHighlights();
+        }
+    }
+
     @NotNull
     public EditorPositionFactory getPositionFactory() {
         return myPositionFactory;
@@ -780,16 +843,7 @@ public class LineSelectionManager implements
         myCaretHighlighter.settingsChanged(settings);
 
         if (myCaretSpawningHandler != null) {
-            //noinspection ReassignedVariable
-            Set<Long> excludeList = null;
-            myCaretHighlighter.highlightCaretList(myFoundCarets, CaretAttributeType.FOUND, null);
-
-            //noinspection ConstantValue
-            excludeList = CaretUtils.getExcludedCoordinates(excludeList, myFoundCarets);
-            myCaretHighlighter.highlightCaretList(myStartMatchedCarets, CaretAttributeType.START_MATCHED, excludeList);
-
-            excludeList = CaretUtils.getExcludedCoordinates(excludeList, myStartMatchedCarets);
-            myCaretHighlighter.highlightCaretList(myStartCarets, CaretAttributeType.START, excludeList);
+            highlightSearchCarets();
         }
 
         myActionSelectionAdjuster.setSelectionStashLimit(settings.getSelectionStashLimit());
@@ -1058,39 +1112,60 @@ public class LineSelectionManager implements
 
     @Override
     public void caretPositionChanged(@NotNull CaretEvent e) {
-        myCaretGuard.ifUnguarded(() -> {
-            Caret caret = e.getCaret();
-            if (myMouseAnchor == -1 && caret != null) {
-                myCaretHighlighter.updateCaretHighlights();
-            }
-        });
+        long watchToken = MiaWatchdog.start("LineSelectionManager.caretPositionChanged");
+        try {
+            myCaretGuard.ifUnguarded(() -> {
+                Caret caret = e.getCaret();
+                if (myMouseAnchor == -1 && caret != null) {
+                    myCaretHighlighter.updateCaretHighlights();
+                }
+            });
+        } finally {
+            endWatch(watchToken);
+        }
     }
 
     @Override
     public void caretAdded(@NotNull CaretEvent e) {
-        int caretCount = myEditor.getCaretModel().getCaretCount();
-        if (caretCount == 2) {
-            Plugin.getInstance().updateEditorParameterHints(myEditor, true);
-        }
+        long watchToken = MiaWatchdog.start("LineSelectionManager.caretAdded");
+        try {
+            int caretCount = myEditor.getCaretModel().getCaretCount();
+            if (caretCount == 2 && !myInCaretBatch) {
+                Plugin.getInstance().updateEditorParameterHints(myEditor, true);
+            }
 
-        Caret caret = e.getCaret();
-        if (myMouseAnchor == -1 && caret != null) {
-            myCaretHighlighter.caretAdded(caret);
+            Caret caret = e.getCaret();
+            if (myMouseAnchor == -1 && caret != null) {
+                myCaretHighlighter.caretAdded(caret);
+            }
+        } finally {
+            endWatch(watchToken);
         }
     }
 
     @Override
     public void caretRemoved(@NotNull CaretEvent e) {
-        int caretCount = myEditor.getCaretModel().getCaretCount();
-        if (caretCount == 1) {
-            // if caret count becomes 1 due to escape
-            Plugin.getInstance().updateEditorParameterHints(myEditor, true);
+        long watchToken = MiaWatchdog.start("LineSelectionManager.caretRemoved");
+        try {
+            mySelectionStates.remove(e.getCaret());
+            int caretCount = myEditor.getCaretModel().getCaretCount();
+            if (caretCount == 1 && !myInCaretBatch) {
+                // if caret count becomes 1 due to escape
+                Plugin.getInstance().updateEditorParameterHints(myEditor, true);
+            }
+
+            Caret caret = e.getCaret();
+            if (myMouseAnchor == -1 && caret != null) {
+                myCaretHighlighter.caretRemoved(caret);
+            }
+        } finally {
+            endWatch(watchToken);
         }
+    }
 
-        mySelectionStates.remove(e.getCaret());
-        Caret caret = e.getCaret();
-        if (myMouseAnchor == -1 && caret != null) {
-            myCaretHighlighter.caretRemoved(caret);
+    private void endWatch(long watchToken) {
+        if (watchToken != MiaWatchdog.NOT_STARTED) {
+            MiaWatchdog.end(watchToken, myEditor.getCaretModel().getCaretCount(), myEditor.getDocument().getTextLength());
         }
     }
 
@@ -1098,6 +1173,30 @@ public class LineSelectionManager implements
         myCaretHighlighter.updateCaretHighlights();
     }
 
+    /**
+     * Run caret model changes of a caret batch, guarded and with caret highlights held until the batch ends.
+     * Parameter hints and caret highlights are updated once after the outermost batch.
+     *
+     * @param runnable caret changes
+     */
+    void runCaretBatch(@NotNull Runnable runnable) {
+        int caretCount = myEditor.getCaretModel().getCaretCount();
+        boolean inCaretBatch = myInCaretBatch;
+        myInCaretBatch = true;
+        myCaretHighlighter.startCaretBatch();
+        try {
+            myCaretGuard.guard(runnable);
+            myCaretHighlighter.updateCaretHighlights();
+        } finally {
+            myInCaretBatch = inCaretBatch;
+            myCaretHighlighter.endCaretBatch();
+        }
+
+        if (!inCaretBatch && (caretCount == 1) != (myEditor.getCaretModel().getCaretCount() == 1)) {
+            Plugin.getInstance().updateEditorParameterHints(myEditor, true);
+        }
+    }
+
     public void runActionWithAdjustments(final AnAction action) {
         myActionSelectionAdjuster.runAction(action);
     }
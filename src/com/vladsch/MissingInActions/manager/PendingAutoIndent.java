@@ -0,0 +1,221 @@
+// Copyright 2016-2023 2023 Vladimir Schneider <vladimir.schneider@gmail.com> Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE.txt file.
+package com.vladsch.MissingInActions.manager;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Caret;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.codeStyle.CodeStyleManager;
+import com.vladsch.MissingInActions.util.MiaCancelableJobScheduler;
+import com.vladsch.MissingInActions.util.MiaWatchdog;
+import com.vladsch.plugin.util.OneTimeRunnable;
+import org.jetbrains.annotations.NotNull;
+
+import java.awt.event.InputEvent;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Auto-indent of lines moved by consecutive move line up/down actions, collected into one indent
+ * of the moved lines which runs when the delay expires, the move modifier keys are released
+ * or before the next action.
+ * <p>
+ * Moved lines are the caret and selection lines when the indent runs, lines the block moved over are not indented.
+ */
+class PendingAutoIndent implements Disposable {
+    private static final int MODIFIERS_MASK = InputEvent.SHIFT_DOWN_MASK | InputEvent.CTRL_DOWN_MASK | InputEvent.ALT_DOWN_MASK | InputEvent.META_DOWN_MASK;
+
+    final private @NotNull LineSelectionManager myManager;
+    final private @NotNull Editor myEditor;
+    private boolean myPending = false;
+    private @NotNull OneTimeRunnable myRunner = OneTimeRunnable.NULL;
+
+    // key repeat of a held move does not release the modifiers
+    final private KeyAdapter myKeyListener = new KeyAdapter() {
+        @Override
+        public void keyReleased(KeyEvent e) {
+            if ((e.getModifiersEx() & MODIFIERS_MASK) == 0) {
+                runPending();
+            }
+        }
+    };
+
+    PendingAutoIndent(@NotNull LineSelectionManager manager) {
+        myManager = manager;
+        myEditor = manager.getEditor();
+        myEditor.getContentComponent().addKeyListener(myKeyListener);
+    }
+
+    boolean isPending() {
+        return myPending;
+    }
+
+    /**
+     * Indent lines of carets after a move
+     */
+    void setPending() {
+        myPending = true;
+    }
+
+    /**
+     * Lines of all carets, selections are added with all their lines
+     */
+    @NotNull
+    private List<int[]> getCaretLines() {
+        LineRangeSet lines = new LineRangeSet();
+        Document document = myEditor.getDocument();
+        for (Caret caret : myEditor.getCaretModel().getAllCarets()) {
+            int startLine = document.getLineNumber(caret.getSelectionStart());
+            int endLine = document.getLineNumber(caret.getSelectionEnd());
+            if (endLine > startLine && caret.getSelectionEnd() == document.getLineStartOffset(endLine)) endLine--;
+            lines.add(startLine, endLine);
+        }
+        return lines.getRanges();
+    }
+
+    /**
+     * Restart the delay of the pending indent
+     *
+     * @param delay delay in ms
+     */
+    void schedule(int delay) {
+        myRunner.cancel();
+        if (isPending()) {
+            myRunner = new OneTimeRunnable(true, MiaWatchdog.watch("PendingAutoIndent.indentLines", this::indentLines));
+            OneTimeRunnable.schedule(MiaCancelableJobScheduler.getInstance(), delay, myRunner);
+        } else {
+            myRunner = OneTimeRunnable.NULL;
+        }
+    }
+
+    /**
+     * Run pending indent now
+     */
+    void runPending() {
+        if (isPending()) {
+            OneTimeRunnable runner = myRunner;
+            myRunner = OneTimeRunnable.NULL;
+            runner.cancel();
+            indentLines();
+        }
+    }
+
+    void cancel() {
+        myRunner.cancel();
+        myRunner = OneTimeRunnable.NULL;
+        myPending = false;
+    }
+
+    private void indentLines() {
+        myPending = false;
+        myRunner = OneTimeRunnable.NULL;
+
+        Project project = myEditor.getProject();
+        if (project == null || myEditor.isDisposed()) return;
+
+        Document document = myEditor.getDocument();
+        PsiDocumentManager documentManager = PsiDocumentManager.getInstance(project);
+        PsiFile psiFile = documentManager.getPsiFile(document);
+        if (psiFile == null || !psiFile.isWritable()) return;
+
+        WriteCommandAction.runWriteCommandAction(project, () -> {
+            documentManager.commitDocument(document);
+
+            List<int[]> ranges = getCaretLines();
+            ArrayList<CaretIndent> caretIndents = new ArrayList<>();
+            for (Caret caret : myEditor.getCaretModel().getAllCarets()) {
+                caretIndents.add(new CaretIndent(caret));
+            }
+
+            CodeStyleManager codeStyleManager = CodeStyleManager.getInstance(project);
+            int lineCount = document.getLineCount();
+            for (int[] range : ranges) {
+                if (range[0] >= lineCount) break;
+                int endLine = Math.min(range[1], lineCount - 1);
+                codeStyleManager.adjustLineIndent(psiFile, new TextRange(document.getLineStartOffset(range[0]), document.getLineEndOffset(endLine)));
+            }
+
+            documentManager.doPostponedOperationsAndUnblockDocument(document);
+
+            myManager.guard(() -> {
+                for (CaretIndent caretIndent : caretIndents) {
+                    caretIndent.restore();
+                }
+            });
+        });
+    }
+
+    @Override
+    public void dispose() {
+        cancel();
+        myEditor.getContentComponent().removeKeyListener(myKeyListener);
+    }
+
+    /**
+     * Caret and selection positions relative to the indent of their line
+     */
+    private class CaretIndent {
+        final Caret myCaret;
+        final int myLine;
+        final int myColumn;
+        final boolean myHasSelection;
+        final int mySelectionStartLine;
+        final int mySelectionStartColumn;
+        final int mySelectionEndLine;
+        final int mySelectionEndColumn;
+
+        CaretIndent(@NotNull Caret caret) {
+            Document document = myEditor.getDocument();
+            myCaret = caret;
+            myLine = document.getLineNumber(caret.getOffset());
+            myColumn = getIndentColumn(myLine, caret.getOffset());
+            myHasSelection = caret.hasSelection();
+            mySelectionStartLine = document.getLineNumber(caret.getSelectionStart());
+            mySelectionStartColumn = getIndentColumn(mySelectionStartLine, caret.getSelectionStart());
+            mySelectionEndLine = document.getLineNumber(caret.getSelectionEnd());
+            mySelectionEndColumn = getIndentColumn(mySelectionEndLine, caret.getSelectionEnd());
+        }
+
+        void restore() {
+            if (!myCaret.isValid()) return;
+
+            myCaret.moveToOffset(getOffset(myLine, myColumn));
+            if (myHasSelection) {
+                myCaret.setSelection(getOffset(mySelectionStartLine, mySelectionStartColumn), getOffset(mySelectionEndLine, mySelectionEndColumn));
+            }
+        }
+    }
+
+    private int getIndent(int line) {
+        Document document = myEditor.getDocument();
+        CharSequence chars = document.getCharsSequence();
+        int lineStart = document.getLineStartOffset(line);
+        int lineEnd = document.getLineEndOffset(line);
+        int offset = lineStart;
+        while (offset < lineEnd && (chars.charAt(offset) == ' ' || chars.charAt(offset) == '\t')) offset++;
+        return offset - lineStart;
+    }
+
+    // column relative to the line's indent, start of line stays at start of line
+    private int getIndentColumn(int line, int offset) {
+        int column = offset - myEditor.getDocument().getLineStartOffset(line);
+        return column == 0 ? Integer.MIN_VALUE : column - getIndent(line);
+    }
+
+    private int getOffset(int line, int indentColumn) {
+        Document document = myEditor.getDocument();
+        if (line >= document.getLineCount()) return document.getTextLength();
+
+        int lineStart = document.getLineStartOffset(line);
+        if (indentColumn == Integer.MIN_VALUE) return lineStart;
+        int column = Math.max(0, getIndent(line) + indentColumn);
+        return Math.min(lineStart + column, document.getLineEndOffset(line));
+    }
+}
@@ -169,6 +169,9 @@ public class ApplicationSettings extends BatchSearchReplaceSettings implements P
     boolean mySpawnNumericHexSearch = false;    // include hex digits
     boolean myDisableParameterInfo = false;     // disable parameter hints when multi-caret mode
     boolean myShowGenerateException = false;    // show generate exception action to test handling of recovery
+    boolean myCollectDiagnostics = false;       // collect handler timing for diagnostics tool window
+    boolean myEdtWatchdog = false;              // record handlers running over EDT budget
+    int myEdtWatchdogBudget = 200;              // EDT budget in ms for watchdog
 
     @XCollection(elementName = "highlightWords") public ArrayList<String> myHighlightWords = new ArrayList<>();
     @XCollection(elementName = "highlightFlags") public ArrayList<Integer> myHighlightFlags = new ArrayList<>();
@@ -606,6 +609,12 @@ public class ApplicationSettings extends BatchSearchReplaceSettings implements P
     public void setDisableParameterInfo(final boolean disableParameterInfo) {myDisableParameterInfo = disableParameterInfo;}
     public boolean isShowGenerateException() {return myShowGenerateException;}
     public void setShowGenerateException(final boolean showGenerateException) {myShowGenerateException = showGenerateException;}
+    public boolean isCollectDiagnostics() {return myCollectDiagnostics;}
+    public void setCollectDiagnostics(final boolean collectDiagnostics) {myCollectDiagnostics = collectDiagnostics;}
+    public boolean isEdtWatchdog() {return myEdtWatchdog;}
+    public void setEdtWatchdog(final boolean edtWatchdog) {myEdtWatchdog = edtWatchdog;}
+    public int getEdtWatchdogBudget() {return myEdtWatchdogBudget;}
+    public void setEdtWatchdogBudget(final int edtWatchdogBudget) {myEdtWatchdogBudget = edtWatchdogBudget;}
     public boolean isHideDisabledButtons() {return myHideDisabledButtons;}
     public void setHideDisabledButtons(final boolean hideDisabledButtons) {myHideDisabledButtons = hideDisabledButtons;}
     public boolean isUserDefinedMacroSmartReplace() {return myUserDefinedMacroSmartReplace;}
@@ -0,0 +1,215 @@
+// Copyright 2016-2023 2023 Vladimir Schneider <vladimir.schneider@gmail.com> Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE.txt file.
+package com.vladsch.MissingInActions.util;
+
+import com.vladsch.MissingInActions.settings.BatchSearchReplace;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Search/replace rules of a batch search/replace preset, one per line of search, replace and options text
+ * <p>
+ * Matches the same text as batch search highlighting in an editor, without needing an editor or highlighters.
+ */
+public class BatchSearchRules {
+    public static class Rule {
+        public final @NotNull String search;
+        public final @NotNull String replace;
+        public final int line;
+        public final boolean caseSensitive;
+        public final boolean beginWord;
+        public final boolean endWord;
+        public final boolean error;
+        public final boolean warning;
+
+        Rule(@NotNull String search, @NotNull String replace, int line, boolean caseSensitive, boolean beginWord, boolean endWord, boolean error, boolean warning) {
+            this.search = search;
+            this.replace = replace;
+            this.line = line;
+            this.caseSensitive = caseSensitive;
+            this.beginWord = beginWord;
+            this.endWord = endWord;
+            this.error = error;
+            this.warning = warning;
+        }
+    }
+
+    public static class Replacement {
+        public final int startOffset;
+        public final int endOffset;
+        public final @NotNull String replace;
+
+        Replacement(int startOffset, int endOffset, @NotNull String replace) {
+            this.startOffset = startOffset;
+            this.endOffset = endOffset;
+            this.replace = replace;
+        }
+    }
+
+    private final List<Rule> myRules;
+    private final MultiWordMatcher myMatcher;
+
+    public BatchSearchRules(@NotNull List<Rule> rules) {
+        myRules = rules;
+
+        MultiWordMatcher.Builder builder = MultiWordMatcher.builder();
+        for (Rule rule : rules) {
+            // same as word highlight provider, boundary is only used next to identifier characters
+            String word = rule.search;
+            builder.add(word, rule.caseSensitive
+                    , rule.beginWord && Character.isUnicodeIdentifierPart(word.charAt(0))
+                    , rule.endWord && Character.isUnicodeIdentifierPart(word.charAt(word.length() - 1)));
+        }
+        myMatcher = builder.build();
+    }
+
+    @NotNull
+    public List<Rule> getRules() {
+        return myRules;
+    }
+
+    @NotNull
+    public MultiWordMatcher getMatcher() {
+        return myMatcher;
+    }
+
+    public boolean isEmpty() {
+        return myRules.isEmpty();
+    }
+
+    public int countMatches(@NotNull CharSequence chars) {
+        int[] count = { 0 };
+        myMatcher.findAll(chars, (startOffset, endOffset, wordIndex) -> count[0]++);
+        return count[0];
+    }
+
+    /**
+     * Find replacements of all matches, applied from last to first they do not shift each other's offsets
+     *
+     * @param chars text to search
+     * @return replacements in increasing offset order, empty if nothing matched
+     */
+    @NotNull
+    public List<Replacement> findReplacements(@NotNull CharSequence chars) {
+        ArrayList<Replacement> replacements = new ArrayList<>();
+        myMatcher.findAll(chars, (startOffset, endOffset, wordIndex) -> replacements.add(new Replacement(startOffset, endOffset, myRules.get(wordIndex).replace)));
+        return replacements;
+    }
+
+    /**
+     * Parse a rule line, same options as batch search/replace editors
+     *
+     * @param line          line number
+     * @param searchText    search text, null if no line
+     * @param replaceText   replace text, null if no line
+     * @param optionsText   options text
+     * @param caseSensitive default case sensitivity
+     * @param wholeWord     default word boundary
+     * @return rule or null if line does not have a rule
+     */
+    @Nullable
+    public static Rule parseRule(int line, @Nullable String searchText, @Nullable String replaceText, @NotNull String optionsText, boolean caseSensitive, boolean wholeWord) {
+        if (searchText == null || searchText.isEmpty() || optionsText.startsWith("-")) return null;
+
+        if (replaceText == null) {
+            // TODO: missing, use empty and highlight
+            replaceText = "";
+        }
+
+        boolean isCaseSensitive = caseSensitive;
+        boolean isBeginWord = wholeWord;
+        boolean isEndWord = wholeWord;
+        boolean isError = false;
+        boolean isWarning = false;
+
+        // implement # marking start of comment
+        int iComment = optionsText.indexOf('#');
+        if (iComment == -1) iComment = optionsText.length();
+
+        int iC = optionsText.indexOf('c');
+        int iI = optionsText.indexOf('i');
+        int iW = optionsText.indexOf('w');
+        int iB = optionsText.indexOf('b');
+        int iE = optionsText.indexOf('e');
+        int iErr = optionsText.indexOf('!');
+        int iWarn = optionsText.indexOf('?');
+
+        if (iC >= 0 && iC < iComment) {
+            isCaseSensitive = true;
+        } else {
+            if (iI >= 0 && iI < iComment) {
+                isCaseSensitive = false;
+            }
+        }
+
+        if (iW >= 0 && iW < iComment) {
+            isBeginWord = true;
+            isEndWord = true;
+        }
+
+        if (iB >= 0 && iB < iComment) {
+            isBeginWord = true;
+        }
+
+        if (iE >= 0 && iE < iComment) {
+            isEndWord = true;
+        }
+
+        if (iErr >= 0 && iErr < iComment) {
+            isError = true;
+        }
+
+        if (iWarn >= 0 && iWarn < iComment) {
+            isWarning = true;
+        }
+
+        return new Rule(searchText, replaceText, line, isCaseSensitive, isBeginWord, isEndWord, isError, isWarning);
+    }
+
+    @NotNull
+    public static BatchSearchRules of(@NotNull BatchSearchReplace batchSearchReplace) {
+        String[] searchLines = batchSearchReplace.getSearchText().split("\n", -1);
+        String[] replaceLines = batchSearchReplace.getReplaceText().split("\n", -1);
+        String[] optionsLines = batchSearchReplace.getOptionsText().split("\n", -1);
+        int iMax = Math.max(searchLines.length, Math.max(replaceLines.length, optionsLines.length));
+
+        // later lines replace earlier ones with the same word ignoring case, same as batch search editors
+        LinkedHashMap<String, Rule> ruleMap = new LinkedHashMap<>();
+
+        for (int i = 0; i < iMax; i++) {
+            Rule rule = parseRule(i
+                    , i < searchLines.length ? searchLines[i] : null
+                    , i < replaceLines.length ? replaceLines[i] : null
+                    , i < optionsLines.length ? optionsLines[i] : ""
+                    , batchSearchReplace.isCaseSensitive()
+                    , batchSearchReplace.isWholeWord());
+
+            if (rule != null) {
+                String foldedWord = foldCase(rule.search);
+                ruleMap.remove(foldedWord);
+                ruleMap.put(foldedWord, rule);
+            }
+        }
+
+        return new BatchSearchRules(new ArrayList<>(ruleMap.values()));
+    }
+
+    /**
+     * Fold case so that words with equal folded text are equal ignoring case, same as String.equalsIgnoreCase()
+     *
+     * @param word text to fold
+     * @return folded text
+     */
+    @NotNull
+    public static String foldCase(@NotNull String word) {
+        int iMax = word.length();
+        char[] chars = new char[iMax];
+        for (int i = 0; i < iMax; i++) {
+            chars[i] = Character.toLowerCase(Character.toUpperCase(word.charAt(i)));
+        }
+        return new String(chars);
+    }
+}
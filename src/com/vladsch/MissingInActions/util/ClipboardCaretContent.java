@@ -12,6 +12,7 @@ import com.intellij.openapi.editor.EditorModificationUtil;
 import com.intellij.openapi.editor.RangeMarker;
 import com.intellij.openapi.editor.actions.PasteAction;
 import com.intellij.openapi.editor.ex.EditorEx;
+import com.intellij.openapi.ide.CopyPasteManager;
 import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.TextRange;
 import com.intellij.openapi.util.text.LineTokenizer;
@@ -21,8 +22,11 @@ import org.jetbrains.annotations.Nullable;
 
 import java.awt.datatransfer.Transferable;
 import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.function.BiConsumer;
 
 import static com.intellij.openapi.diagnostic.Logger.getInstance;
@@ -33,6 +37,10 @@ public class ClipboardCaretContent {
     private static final Key<CaretOffsetAdjuster> LAST_CARET_OFFSET_ADJUSTER = Key.create("LAST_CARET_OFFSET_ADJUSTER");
     private static final Key<Transferable> LAST_SPLIT_PERMUTED_TRANSFERABLE = Key.create("LAST_CARET_OFFSET_ADJUSTER");
     private static final Logger logger = getInstance("com.vladsch.MissingInActions.util.clipboard_context");
+    public static final int STUDIED_CACHE_SIZE = 256;
+
+    // studied contents shared by paste from history dialogs by content identity, pruned to current history when a dialog opens and closes
+    private static final IdentityHashMap<Transferable, ClipboardCaretContent> ourStudiedContents = new IdentityHashMap<>();
 
     private final @NotNull Transferable myContent;
     private final @NotNull TextRange[] myTextRanges;
@@ -318,6 +326,67 @@ public class ClipboardCaretContent {
         }
     }
 
+    /**
+     * Same as {@link #studyTransferable(Editor, Transferable)} but result is cached for multi-caret editors
+     * so clipboard history entries are only studied once
+     *
+     * @param editor  editor for paste
+     * @param content transferable content to study
+     */
+    @Nullable
+    public static ClipboardCaretContent studyCachedTransferable(final @Nullable Editor editor, @NotNull Transferable content) {
+        // study result only depends on editor's multi-caret and one line modes
+        if (editor == null || !editor.getCaretModel().supportsMultipleCarets() || editor.isOneLineMode()) {
+            return studyTransferable(editor, content);
+        }
+
+        synchronized (ourStudiedContents) {
+            if (ourStudiedContents.containsKey(content)) {
+                return ourStudiedContents.get(content);
+            }
+
+            ClipboardCaretContent caretContent = studyTransferable(editor, content);
+            if (ourStudiedContents.size() >= STUDIED_CACHE_SIZE) {
+                pruneStudiedContents();
+            }
+            ourStudiedContents.put(content, caretContent);
+            return caretContent;
+        }
+    }
+
+    /**
+     * Remove cached study of content, used when content is removed from or replaced in clipboard history
+     *
+     * @param content transferable content
+     */
+    public static void forgetStudiedTransferable(@NotNull Transferable content) {
+        synchronized (ourStudiedContents) {
+            ourStudiedContents.remove(content);
+        }
+    }
+
+    /**
+     * Remove cached studies of contents no longer in clipboard history
+     */
+    public static void pruneStudiedTransferables() {
+        synchronized (ourStudiedContents) {
+            pruneStudiedContents();
+        }
+    }
+
+    private static void pruneStudiedContents() {
+        if (ourStudiedContents.isEmpty()) return;
+
+        // keep current history entries, merged contents are only studied for previews
+        Set<Transferable> history = Collections.newSetFromMap(new IdentityHashMap<>());
+        Collections.addAll(history, CopyPasteManager.getInstance().getAllContents());
+        ourStudiedContents.keySet().removeIf(content -> !history.contains(content));
+
+        if (ourStudiedContents.size() >= STUDIED_CACHE_SIZE) {
+            ourStudiedContents.clear();
+        }
+    }
+
     @Nullable
     public static ClipboardCaretContent saveLastPastedCaretsForTransferable(final @NotNull Editor editor, @NotNull Transferable content, boolean useLastOffsetAdjuster) {
         if (useLastOffsetAdjuster) {
@@ -0,0 +1,92 @@
+// Copyright 2016-2023 2023 Vladimir Schneider <vladimir.schneider@gmail.com> Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE.txt file.
+package com.vladsch.MissingInActions.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of non-negative values with power of two buckets, percentiles are the upper bound of their bucket
+ */
+public class DiagnosticHistogram {
+    private static final int BUCKETS = 64;
+
+    private final @NotNull String myCategory;
+    private final @NotNull String myName;
+    private final @NotNull String myUnit;
+    private final AtomicLong myCount = new AtomicLong();
+    private final AtomicLong myTotal = new AtomicLong();
+    private final AtomicLong myMax = new AtomicLong();
+    private final AtomicLongArray myBuckets = new AtomicLongArray(BUCKETS);
+
+    public DiagnosticHistogram(@NotNull String category, @NotNull String name, @NotNull String unit) {
+        myCategory = category;
+        myName = name;
+        myUnit = unit;
+    }
+
+    @NotNull
+    public String getCategory() {
+        return myCategory;
+    }
+
+    @NotNull
+    public String getName() {
+        return myName;
+    }
+
+    @NotNull
+    public String getUnit() {
+        return myUnit;
+    }
+
+    public void add(long value) {
+        long v = Math.max(0, value);
+        myBuckets.incrementAndGet(getBucket(v));
+        myCount.incrementAndGet();
+        myTotal.addAndGet(v);
+        myMax.accumulateAndGet(v, Math::max);
+    }
+
+    // bucket i holds values up to 2^i - 1, bucket 0 only 0
+    static int getBucket(long value) {
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value));
+    }
+
+    public long getCount() {
+        return myCount.get();
+    }
+
+    public long getTotal() {
+        return myTotal.get();
+    }
+
+    public long getMax() {
+        return myMax.get();
+    }
+
+    public long getMean() {
+        long count = myCount.get();
+        return count == 0 ? 0 : myTotal.get() / count;
+    }
+
+    /**
+     * @param percentile percentile 0 to 100
+     * @return upper bound of the bucket containing the percentile, limited to max value
+     */
+    public long getPercentile(int percentile) {
+        long count = myCount.get();
+        if (count == 0) return 0;
+
+        long rank = Math.max(1, (count * percentile + 99) / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += myBuckets.get(i);
+            if (seen >= rank) {
+                return Math.min(i == 0 ? 0 : (1L << i) - 1, myMax.get());
+            }
+        }
+        return myMax.get();
+    }
+}
@@ -0,0 +1,104 @@
+// Copyright 2016-2023 2023 Vladimir Schneider <vladimir.schneider@gmail.com> Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE.txt file.
+package com.vladsch.MissingInActions.util;
+
+/**
+ * Offset ranges of text changed since the last clear, in current document offsets
+ * <p>
+ * Ranges are sorted, non-overlapping and shifted by later document changes. When there are more than
+ * {@link #MAX_RANGES} ranges they are collapsed into one spanning all changes.
+ */
+public class DirtyRangeList {
+    public static final int MAX_RANGES = 256;
+
+    private int[] myStarts = new int[8];
+    private int[] myEnds = new int[8];
+    private int mySize = 0;
+
+    public boolean isEmpty() {
+        return mySize == 0;
+    }
+
+    public int size() {
+        return mySize;
+    }
+
+    public int getStart(int index) {
+        return myStarts[index];
+    }
+
+    public int getEnd(int index) {
+        return myEnds[index];
+    }
+
+    public void clear() {
+        mySize = 0;
+    }
+
+    /**
+     * Add a document change
+     *
+     * @param offset    offset of change
+     * @param oldLength length of replaced text
+     * @param newLength length of replacement text
+     */
+    public void documentChanged(int offset, int oldLength, int newLength) {
+        int oldEnd = offset + oldLength;
+        int delta = newLength - oldLength;
+        int start = offset;
+        int end = offset + newLength;
+
+        // ranges before the change stay, ranges touching the change are merged, ranges after are shifted
+        int first = 0;
+        while (first < mySize && myEnds[first] < offset) first++;
+
+        int last = first;
+        while (last < mySize && myStarts[last] <= oldEnd) {
+            start = Math.min(start, myStarts[last]);
+            end = Math.max(end, myEnds[last] + delta);
+            last++;
+        }
+
+        int removed = last - first;
+        if (removed == 0) {
+            ensureCapacity(mySize + 1);
+            System.arraycopy(myStarts, first, myStarts, first + 1, mySize - first);
+            System.arraycopy(myEnds, first, myEnds, first + 1, mySize - first);
+            mySize++;
+            last = first + 1;
+        } else if (removed > 1) {
+            System.arraycopy(myStarts, last, myStarts, first + 1, mySize - last);
+            System.arraycopy(myEnds, last, myEnds, first + 1, mySize - last);
+            mySize -= removed - 1;
+            last = first + 1;
+        } else {
+            last = first + 1;
+        }
+
+        myStarts[first] = start;
+        myEnds[first] = end;
+
+        if (delta != 0) {
+            for (int i = last; i < mySize; i++) {
+                myStarts[i] += delta;
+                myEnds[i] += delta;
+            }
+        }
+
+        if (mySize > MAX_RANGES) {
+            myEnds[0] = myEnds[mySize - 1];
+            mySize = 1;
+        }
+    }
+
+    private void ensureCapacity(int size) {
+        if (myStarts.length < size) {
+            int length = Math.max(size, myStarts.length * 2);
+            int[] starts = new int[length];
+            int[] ends = new int[length];
+            System.arraycopy(myStarts, 0, starts, 0, mySize);
+            System.arraycopy(myEnds, 0, ends, 0, mySize);
+            myStarts = starts;
+            myEnds = ends;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+// Copyright 2016-2023 2023 Vladimir Schneider <vladimir.schneider@gmail.com> Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE.txt file.
+package com.vladsch.MissingInActions.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+
+/**
+ * Text of document lines, without EOL, kept in sync with document changes
+ * <p>
+ * Only lines touched by a change are re-split, unchanged lines keep the same String instance.
+ */
+public class LineTextCache {
+    private final ArrayList<String> myLines = new ArrayList<>();
+
+    public LineTextCache() {
+        myLines.add("");
+    }
+
+    public LineTextCache(@NotNull CharSequence text) {
+        setText(text);
+    }
+
+    public int getLineCount() {
+        return myLines.size();
+    }
+
+    @NotNull
+    public String getLine(int line) {
+        return myLines.get(line);
+    }
+
+    public void setText(@NotNull CharSequence text) {
+        myLines.clear();
+        addLines(myLines, text);
+    }
+
+    /**
+     * Apply a document change
+     *
+     * @param startLine   line containing the change offset
+     * @param startColumn column of the change offset in the line
+     * @param oldFragment replaced text
+     * @param newFragment replacement text
+     * @return number of lines added, negative if lines were removed
+     */
+    public int replace(int startLine, int startColumn, @NotNull CharSequence oldFragment, @NotNull CharSequence newFragment) {
+        int oldLines = countEOLs(oldFragment);
+        int endLine = startLine + oldLines;
+
+        if (startLine < 0 || endLine >= myLines.size()) {
+            throw new IndexOutOfBoundsException("Change lines " + startLine + "-" + endLine + " outside of " + myLines.size() + " lines");
+        }
+
+        String firstLine = myLines.get(startLine);
+        String lastLine = myLines.get(endLine);
+        int lastColumn = oldLines == 0 ? startColumn + oldFragment.length() : oldFragment.length() - lastEOL(oldFragment) - 1;
+
+        StringBuilder sb = new StringBuilder(startColumn + newFragment.length() + lastLine.length() - lastColumn);
+        sb.append(firstLine, 0, startColumn).append(newFragment).append(lastLine, lastColumn, lastLine.length());
+
+        ArrayList<String> lines = new ArrayList<>(countEOLs(newFragment) + 1);
+        addLines(lines, sb);
+
+        if (lines.size() == oldLines + 1) {
+            for (int i = 0; i < lines.size(); i++) {
+                myLines.set(startLine + i, lines.get(i));
+            }
+        } else {
+            myLines.subList(startLine, endLine + 1).clear();
+            myLines.addAll(startLine, lines);
+        }
+        return lines.size() - oldLines - 1;
+    }
+
+    private static void addLines(@NotNull ArrayList<String> lines, @NotNull CharSequence text) {
+        int length = text.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(i) == '\n') {
+                lines.add(text.subSequence(start, i).toString());
+                start = i + 1;
+            }
+        }
+        lines.add(text.subSequence(start, length).toString());
+    }
+
+    private static int countEOLs(@NotNull CharSequence text) {
+        int count = 0;
+        int iMax = text.length();
+        for (int i = 0; i < iMax; i++) {
+            if (text.charAt(i) == '\n') count++;
+        }
+        return count;
+    }
+
+    private static int lastEOL(@NotNull CharSequence text) {
+        for (int i = text.length(); i-- > 0; ) {
+            if (text.charAt(i) == '\n') return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,159 @@
+// Copyright 2016-2023 2023 Vladimir Schneider <vladimir.schneider@gmail.com> Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE.txt file.
+package com.vladsch.MissingInActions.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Histograms of time spent in plugin handlers, collection is off unless enabled in settings
+ * and disabled collection only costs a volatile read at each call site.
+ */
+public class MiaDiagnostics {
+    public static final String BEFORE_ACTION = "beforeAction";
+    public static final String AFTER_ACTION = "afterAction";
+    public static final String HIGHLIGHT_RESCAN = "highlightRescan";
+    public static final String REGEX_COMPILE = "regexCompile";
+    public static final String CARET_BATCH = "caretBatch";
+
+    public static final String UNIT_MICROS = "us";
+    public static final String UNIT_CARETS = "carets";
+
+    // start time when not collecting
+    public static final long NOT_STARTED = Long.MIN_VALUE;
+
+    private static volatile boolean ourEnabled = false;
+    private static final ConcurrentHashMap<String, ConcurrentHashMap<String, DiagnosticHistogram>> ourHistograms = new ConcurrentHashMap<>();
+
+    public static boolean isEnabled() {
+        return ourEnabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        ourEnabled = enabled;
+    }
+
+    /**
+     * @return start time for {@link #recordTime(String, String, long)} or {@link #NOT_STARTED} if not collecting
+     */
+    public static long startTime() {
+        return ourEnabled ? System.nanoTime() : NOT_STARTED;
+    }
+
+    /**
+     * Record time elapsed since start in microseconds
+     *
+     * @param category  category
+     * @param name      name within category, usually action class name
+     * @param startTime start time from {@link #startTime()}
+     */
+    public static void recordTime(@NotNull String category, @NotNull String name, long startTime) {
+        if (startTime != NOT_STARTED && ourEnabled) {
+            getHistogram(category, name, UNIT_MICROS).add((System.nanoTime() - startTime) / 1000);
+        }
+    }
+
+    public static void recordValue(@NotNull String category, @NotNull String name, @NotNull String unit, long value) {
+        if (ourEnabled) {
+            getHistogram(category, name, unit).add(value);
+        }
+    }
+
+    @NotNull
+    static DiagnosticHistogram getHistogram(@NotNull String category, @NotNull String name, @NotNull String unit) {
+        return ourHistograms.computeIfAbsent(category, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(name, key -> new DiagnosticHistogram(category, name, unit));
+    }
+
+    /**
+     * @return histograms sorted by category and total descending
+     */
+    @NotNull
+    public static List<DiagnosticHistogram> getHistograms() {
+        ArrayList<DiagnosticHistogram> histograms = new ArrayList<>();
+        for (ConcurrentHashMap<String, DiagnosticHistogram> categoryHistograms : ourHistograms.values()) {
+            histograms.addAll(categoryHistograms.values());
+        }
+        histograms.sort(Comparator.comparing(DiagnosticHistogram::getCategory).thenComparing(Comparator.comparingLong(DiagnosticHistogram::getTotal).reversed()));
+        return histograms;
+    }
+
+    public static void reset() {
+        ourHistograms.clear();
+    }
+
+    /**
+     * @param counters additional counters to include
+     * @return JSON of collected histograms
+     */
+    @NotNull
+    public static String toJson(@NotNull Map<String, Long> counters) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n  \"enabled\": ").append(ourEnabled).append(",\n  \"counters\": {");
+
+        String sep = "\n";
+        for (Map.Entry<String, Long> entry : counters.entrySet()) {
+            sb.append(sep).append("    ");
+            appendString(sb, entry.getKey());
+            sb.append(": ").append(entry.getValue());
+            sep = ",\n";
+        }
+        sb.append(counters.isEmpty() ? "" : "\n  ").append("},\n  \"histograms\": [");
+
+        sep = "\n";
+        for (DiagnosticHistogram histogram : getHistograms()) {
+            sb.append(sep).append("    {\"category\": ");
+            appendString(sb, histogram.getCategory());
+            sb.append(", \"name\": ");
+            appendString(sb, histogram.getName());
+            sb.append(", \"unit\": ");
+            appendString(sb, histogram.getUnit());
+            sb.append(", \"count\": ").append(histogram.getCount())
+                    .append(", \"total\": ").append(histogram.getTotal())
+                    .append(", \"mean\": ").append(histogram.getMean())
+                    .append(", \"p50\": ").append(histogram.getPercentile(50))
+                    .append(", \"p90\": ").append(histogram.getPercentile(90))
+                    .append(", \"p99\": ").append(histogram.getPercentile(99))
+                    .append(", \"max\": ").append(histogram.getMax())
+                    .append("}");
+            sep = ",\n";
+        }
+        sb.append(sep.equals("\n") ? "" : "\n  ").append("]\n}\n");
+        return sb.toString();
+    }
+
+    static void appendString(@NotNull StringBuilder sb, @NotNull String value) {
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < ' ') {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+}
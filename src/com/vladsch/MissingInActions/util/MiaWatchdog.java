@@ -0,0 +1,253 @@
+// Copyright 2016-2023 2023 Vladimir Schneider <vladimir.schneider@gmail.com> Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE.txt file.
+package com.vladsch.MissingInActions.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.awt.EventQueue;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opt-in watchdog of plugin operations running on the EDT. Only the outermost watched operation is timed,
+ * a sampler thread takes its stack once it runs over budget and operations over budget are kept in a ring buffer.
+ */
+public class MiaWatchdog {
+    public static final int RING_SIZE = 64;
+    public static final int MIN_SAMPLE_INTERVAL = 10;
+
+    // token when not watching
+    public static final long NOT_STARTED = Long.MIN_VALUE;
+
+    private static volatile boolean ourEnabled = false;
+    private static volatile int ourBudgetMs = 200;
+    private static volatile @Nullable Watch ourCurrent = null;
+    private static @Nullable ScheduledExecutorService ourSampler = null;
+
+    private static final SlowOperation[] ourRing = new SlowOperation[RING_SIZE];
+    private static int ourRingNext = 0;
+    private static long ourSlowCount = 0;
+
+    private static class Watch {
+        final @NotNull String myOperation;
+        final @NotNull Thread myThread;
+        final long myStart;
+        volatile @Nullable String myStack = null;
+
+        Watch(@NotNull String operation, @NotNull Thread thread, long start) {
+            myOperation = operation;
+            myThread = thread;
+            myStart = start;
+        }
+    }
+
+    /**
+     * Operation which ran over the EDT budget
+     */
+    public static class SlowOperation {
+        public final long timestamp;
+        public final @NotNull String operation;
+        public final long durationMs;
+        public final int caretCount;
+        public final int documentLength;
+        public final @NotNull String stack;
+
+        SlowOperation(long timestamp, @NotNull String operation, long durationMs, int caretCount, int documentLength, @NotNull String stack) {
+            this.timestamp = timestamp;
+            this.operation = operation;
+            this.durationMs = durationMs;
+            this.caretCount = caretCount;
+            this.documentLength = documentLength;
+            this.stack = stack;
+        }
+
+        @Override
+        public String toString() {
+            return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(new Date(timestamp)) + " " + operation + " took " + durationMs + " ms"
+                    + ", carets: " + caretCount + ", document length: " + documentLength + "\n" + stack;
+        }
+    }
+
+    public static boolean isEnabled() {
+        return ourEnabled;
+    }
+
+    public static int getBudgetMs() {
+        return ourBudgetMs;
+    }
+
+    /**
+     * @param enabled  watch operations
+     * @param budgetMs EDT budget in ms, longer operations are recorded
+     */
+    public static synchronized void configure(boolean enabled, int budgetMs) {
+        int budget = Math.max(1, budgetMs);
+        if (ourSampler != null && (!enabled || budget != ourBudgetMs)) {
+            ourSampler.shutdownNow();
+            ourSampler = null;
+        }
+
+        ourBudgetMs = budget;
+        ourEnabled = enabled;
+
+        if (enabled && ourSampler == null) {
+            ourSampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "MissingInActions EDT Watchdog");
+                thread.setDaemon(true);
+                return thread;
+            });
+            int interval = Math.max(MIN_SAMPLE_INTERVAL, budget / 2);
+            ourSampler.scheduleWithFixedDelay(MiaWatchdog::sample, interval, interval, TimeUnit.MILLISECONDS);
+        }
+
+        if (!enabled) ourCurrent = null;
+    }
+
+    /**
+     * Stop watching and the sampler thread, on plugin unload
+     */
+    public static void shutdown() {
+        configure(false, ourBudgetMs);
+    }
+
+    private static void sample() {
+        Watch watch = ourCurrent;
+        if (watch != null && watch.myStack == null && System.nanoTime() - watch.myStart > ourBudgetMs * 1000_000L) {
+            watch.myStack = getStackText(watch.myThread.getStackTrace());
+        }
+    }
+
+    @NotNull
+    static String getStackText(@NotNull StackTraceElement[] stackTrace) {
+        StringBuilder sb = new StringBuilder();
+        for (StackTraceElement element : stackTrace) {
+            sb.append("    at ").append(element).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Start watching an operation if enabled, on the EDT and not nested in another watched operation
+     *
+     * @param operation operation name
+     * @return token for {@link #end(long, int, int)}
+     */
+    public static long start(@NotNull String operation) {
+        if (!ourEnabled || ourCurrent != null || !EventQueue.isDispatchThread()) return NOT_STARTED;
+
+        Watch watch = new Watch(operation, Thread.currentThread(), System.nanoTime());
+        ourCurrent = watch;
+        return watch.myStart;
+    }
+
+    /**
+     * Start watching an operation for a class, name is only created when watching
+     *
+     * @param operation operation name prefix
+     * @param aClass    class whose name is appended to the operation name
+     * @return token for {@link #end(long, int, int)}
+     */
+    public static long start(@NotNull String operation, @NotNull Class<?> aClass) {
+        if (!ourEnabled || ourCurrent != null) return NOT_STARTED;
+        return start(operation + " " + aClass.getName());
+    }
+
+    /**
+     * End watched operation, record it if it ran over budget
+     *
+     * @param token          token from {@link #start(String)}
+     * @param caretCount     caret count or -1 if not applicable
+     * @param documentLength document length or -1 if not applicable
+     */
+    public static void end(long token, int caretCount, int documentLength) {
+        if (token == NOT_STARTED) return;
+
+        Watch watch = ourCurrent;
+        if (watch == null || watch.myStart != token) return;
+        ourCurrent = null;
+
+        long durationMs = (System.nanoTime() - token) / 1000_000L;
+        if (durationMs > ourBudgetMs) {
+            String stack = watch.myStack;
+            addSlowOperation(new SlowOperation(System.currentTimeMillis(), watch.myOperation, durationMs, caretCount, documentLength,
+                    stack != null ? stack : "    stack not sampled, at end:\n" + getStackText(new Throwable().getStackTrace())));
+        }
+    }
+
+    /**
+     * @param operation operation name
+     * @param runnable  runnable to watch
+     * @return runnable which watches the given runnable when enabled
+     */
+    @NotNull
+    public static Runnable watch(@NotNull String operation, @NotNull Runnable runnable) {
+        return () -> {
+            long token = start(operation);
+            try {
+                runnable.run();
+            } finally {
+                end(token, -1, -1);
+            }
+        };
+    }
+
+    static void addSlowOperation(@NotNull SlowOperation slowOperation) {
+        synchronized (ourRing) {
+            ourRing[ourRingNext] = slowOperation;
+            ourRingNext = (ourRingNext + 1) % RING_SIZE;
+            ourSlowCount++;
+        }
+    }
+
+    /**
+     * @return number of slow operations since last clear, including ones no longer in the ring buffer
+     */
+    public static long getSlowCount() {
+        synchronized (ourRing) {
+            return ourSlowCount;
+        }
+    }
+
+    /**
+     * @return recorded slow operations, oldest first
+     */
+    @NotNull
+    public static List<SlowOperation> getSlowOperations() {
+        ArrayList<SlowOperation> operations = new ArrayList<>(RING_SIZE);
+        synchronized (ourRing) {
+            for (int i = 0; i < RING_SIZE; i++) {
+                SlowOperation operation = ourRing[(ourRingNext + i) % RING_SIZE];
+                if (operation != null) operations.add(operation);
+            }
+        }
+        return operations;
+    }
+
+    public static void clear() {
+        synchronized (ourRing) {
+            for (int i = 0; i < RING_SIZE; i++) ourRing[i] = null;
+            ourRingNext = 0;
+            ourSlowCount = 0;
+        }
+    }
+
+    /**
+     * @return text dump of recorded slow operations
+     */
+    @NotNull
+    public static String dump() {
+        StringBuilder sb = new StringBuilder();
+        List<SlowOperation> operations = getSlowOperations();
+        sb.append("Missing In Actions EDT watchdog, budget ").append(ourBudgetMs).append(" ms, ")
+                .append(getSlowCount()).append(" slow operations, last ").append(operations.size()).append(":\n");
+        for (SlowOperation operation : operations) {
+            sb.append('\n').append(operation);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,329 @@
+// Copyright 2016-2023 2023 Vladimir Schneider <vladimir.schneider@gmail.com> Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE.txt file.
+package com.vladsch.MissingInActions.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Aho-Corasick matcher for a set of literal words
+ * <p>
+ * Finds the same non-overlapping matches as an alternation regex of quoted words in reverse sorted order
+ * with optional per word case sensitivity and begin/end word boundaries, but in a single pass over the text.
+ * Like the regex, the leftmost match wins and at a given start the word which is first in reverse sorted order is used,
+ * this is the longest word only when the words share the same case, e.g. "ab" is used before "Abc".
+ * Case insensitive comparison only folds ASCII letters, same as regex (?i) without UNICODE_CASE.
+ */
+public class MultiWordMatcher {
+    public interface MatchConsumer {
+        void accept(int startOffset, int endOffset, int wordIndex);
+    }
+
+    private static final int[] EMPTY_INTS = new int[0];
+    private static final char[] EMPTY_CHARS = new char[0];
+
+    private final String[] myWords;
+    private final boolean[] myCaseSensitive;
+    private final boolean[] myBeginWord;
+    private final boolean[] myEndWord;
+    private final int[] myRank;          // position of word in reverse sorted order, lower rank is used first
+
+    // trie with nodes as indices, transitions sorted by char for binary search
+    private final char[][] myEdgeChars;
+    private final int[][] myEdgeNodes;
+    private final int[] myFailure;
+    private final int[] myOutput;        // next node on failure chain which has words, -1 if none
+    private final int[] myDepth;
+    private final int[][] myNodeWords;   // word indices ending at node
+    private final int myMaxLength;
+
+    private MultiWordMatcher(@NotNull Builder builder) {
+        int wordCount = builder.myWords.size();
+        myWords = builder.myWords.toArray(new String[0]);
+        myCaseSensitive = new boolean[wordCount];
+        myBeginWord = new boolean[wordCount];
+        myEndWord = new boolean[wordCount];
+
+        int maxLength = 0;
+        int maxNodes = 1;
+        for (int i = 0; i < wordCount; i++) {
+            int options = builder.myOptions.get(i);
+            myCaseSensitive[i] = (options & CASE_SENSITIVE) != 0;
+            myBeginWord[i] = (options & BEGIN_WORD) != 0;
+            myEndWord[i] = (options & END_WORD) != 0;
+            maxLength = Math.max(maxLength, myWords[i].length());
+            maxNodes += myWords[i].length();
+        }
+
+        myMaxLength = maxLength;
+
+        // same order as the alternation regex, stable so equal words keep the order they were added
+        Integer[] order = new Integer[wordCount];
+        for (int i = 0; i < wordCount; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> myWords[b].compareTo(myWords[a]));
+        myRank = new int[wordCount];
+        for (int r = 0; r < wordCount; r++) myRank[order[r]] = r;
+
+        char[][] edgeChars = new char[maxNodes][];
+        int[][] edgeNodes = new int[maxNodes][];
+        int[] depth = new int[maxNodes];
+        int[][] nodeWords = new int[maxNodes][];
+        edgeChars[0] = EMPTY_CHARS;
+        edgeNodes[0] = EMPTY_INTS;
+        nodeWords[0] = EMPTY_INTS;
+        int nodeCount = 1;
+
+        for (int i : order) {
+            String word = myWords[i];
+            int node = 0;
+            int iMax = word.length();
+            for (int c = 0; c < iMax; c++) {
+                char ch = fold(word.charAt(c));
+                int next = findEdge(edgeChars[node], edgeNodes[node], ch);
+                if (next == -1) {
+                    next = nodeCount++;
+                    edgeChars[next] = EMPTY_CHARS;
+                    edgeNodes[next] = EMPTY_INTS;
+                    nodeWords[next] = EMPTY_INTS;
+                    depth[next] = depth[node] + 1;
+                    addEdge(edgeChars, edgeNodes, node, ch, next);
+                }
+                node = next;
+            }
+
+            // words are added in rank order so node words are too
+            if (node != 0) {
+                int[] words = Arrays.copyOf(nodeWords[node], nodeWords[node].length + 1);
+                words[words.length - 1] = i;
+                nodeWords[node] = words;
+            }
+        }
+
+        myEdgeChars = Arrays.copyOf(edgeChars, nodeCount);
+        myEdgeNodes = Arrays.copyOf(edgeNodes, nodeCount);
+        myDepth = Arrays.copyOf(depth, nodeCount);
+        myNodeWords = Arrays.copyOf(nodeWords, nodeCount);
+        myFailure = new int[nodeCount];
+        myOutput = new int[nodeCount];
+
+        // breadth first failure links
+        int[] queue = new int[nodeCount];
+        int head = 0;
+        int tail = 0;
+        myOutput[0] = -1;
+
+        for (int next : myEdgeNodes[0]) {
+            myFailure[next] = 0;
+            myOutput[next] = -1;
+            queue[tail++] = next;
+        }
+
+        while (head < tail) {
+            int node = queue[head++];
+            char[] chars = myEdgeChars[node];
+            int[] nodes = myEdgeNodes[node];
+
+            for (int e = 0; e < chars.length; e++) {
+                char ch = chars[e];
+                int next = nodes[e];
+                int failure = myFailure[node];
+                int target;
+                while ((target = findEdge(myEdgeChars[failure], myEdgeNodes[failure], ch)) == -1 && failure != 0) {
+                    failure = myFailure[failure];
+                }
+
+                if (target == -1 || target == next) target = 0;
+                myFailure[next] = target;
+                myOutput[next] = myNodeWords[target].length > 0 ? target : myOutput[target];
+                queue[tail++] = next;
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return myWords.length == 0;
+    }
+
+    public int getWordCount() {
+        return myWords.length;
+    }
+
+    @NotNull
+    public String getWord(int wordIndex) {
+        return myWords[wordIndex];
+    }
+
+    public int getMaxLength() {
+        return myMaxLength;
+    }
+
+    /**
+     * Find all non-overlapping matches, for each start position the first word in reverse sorted order which satisfies
+     * its case and boundary conditions is used and the search continues after its end, same as Matcher.find() loop
+     *
+     * @param chars    text to search
+     * @param consumer consumer of matches, called in order of start offset
+     */
+    public void findAll(@NotNull CharSequence chars, @NotNull MatchConsumer consumer) {
+        findAll(chars, 0, chars.length(), consumer);
+    }
+
+    /**
+     * Find all non-overlapping matches in a range of the text, boundary tests use characters outside the range
+     *
+     * @param chars       text to search
+     * @param startOffset start of range
+     * @param endOffset   end of range
+     * @param consumer    consumer of matches, called in order of start offset
+     */
+    public void findAll(@NotNull CharSequence chars, int startOffset, int endOffset, @NotNull MatchConsumer consumer) {
+        if (myMaxLength == 0 || startOffset >= endOffset) return;
+
+        // window of pending candidates indexed by start offset modulo max length, only the lowest rank per start is kept
+        int window = myMaxLength;
+        int[] pendingEnd = new int[window];
+        int[] pendingWord = new int[window];
+        Arrays.fill(pendingEnd, -1);
+
+        int lastEnd = startOffset;
+        int finalized = startOffset;
+        int node = 0;
+
+        for (int i = startOffset; i < endOffset; i++) {
+            char ch = fold(chars.charAt(i));
+            int next;
+            while ((next = findEdge(myEdgeChars[node], myEdgeNodes[node], ch)) == -1 && node != 0) {
+                node = myFailure[node];
+            }
+            node = next == -1 ? 0 : next;
+
+            int end = i + 1;
+            int outNode = myNodeWords[node].length > 0 ? node : myOutput[node];
+            while (outNode > 0) {
+                int start = end - myDepth[outNode];
+                int slot = start % window;
+                if (start >= lastEnd) {
+                    for (int wordIndex : myNodeWords[outNode]) {
+                        if (pendingEnd[slot] != -1 && myRank[pendingWord[slot]] < myRank[wordIndex]) break;
+                        if (isMatch(chars, start, end, wordIndex)) {
+                            pendingEnd[slot] = end;
+                            pendingWord[slot] = wordIndex;
+                            break;
+                        }
+                    }
+                }
+                outNode = myOutput[outNode];
+            }
+
+            // no future candidate can start at or before end - window
+            int limit = end - window;
+            while (finalized <= limit) {
+                int slot = finalized % window;
+                if (pendingEnd[slot] != -1) {
+                    if (finalized >= lastEnd) {
+                        consumer.accept(finalized, pendingEnd[slot], pendingWord[slot]);
+                        lastEnd = pendingEnd[slot];
+                    }
+                    pendingEnd[slot] = -1;
+                }
+                finalized++;
+            }
+        }
+
+        while (finalized < endOffset) {
+            int slot = finalized % window;
+            if (pendingEnd[slot] != -1) {
+                if (finalized >= lastEnd) {
+                    consumer.accept(finalized, pendingEnd[slot], pendingWord[slot]);
+                    lastEnd = pendingEnd[slot];
+                }
+                pendingEnd[slot] = -1;
+            }
+            finalized++;
+        }
+    }
+
+    private boolean isMatch(@NotNull CharSequence chars, int start, int end, int wordIndex) {
+        if (myCaseSensitive[wordIndex]) {
+            String word = myWords[wordIndex];
+            for (int i = start; i < end; i++) {
+                if (chars.charAt(i) != word.charAt(i - start)) return false;
+            }
+        }
+
+        if (myBeginWord[wordIndex] && !isBoundary(chars, start)) return false;
+        return !myEndWord[wordIndex] || isBoundary(chars, end);
+    }
+
+    // same as regex \b, a word/non-word transition at index, characters outside the searched range are used
+    private static boolean isBoundary(@NotNull CharSequence chars, int index) {
+        int length = chars.length();
+        boolean before = index > 0 && isWordChar(chars.charAt(index - 1));
+        boolean after = index < length && isWordChar(chars.charAt(index));
+        return before != after;
+    }
+
+    public static boolean isWordChar(char c) {
+        return c == '_' || Character.isLetterOrDigit(c);
+    }
+
+    private static char fold(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    private static int findEdge(@NotNull char[] chars, @NotNull int[] nodes, char c) {
+        int index = Arrays.binarySearch(chars, c);
+        return index < 0 ? -1 : nodes[index];
+    }
+
+    private static void addEdge(@NotNull char[][] edgeChars, @NotNull int[][] edgeNodes, int node, char c, int next) {
+        char[] chars = edgeChars[node];
+        int[] nodes = edgeNodes[node];
+        int index = -Arrays.binarySearch(chars, c) - 1;
+        char[] newChars = new char[chars.length + 1];
+        int[] newNodes = new int[nodes.length + 1];
+        System.arraycopy(chars, 0, newChars, 0, index);
+        System.arraycopy(nodes, 0, newNodes, 0, index);
+        newChars[index] = c;
+        newNodes[index] = next;
+        System.arraycopy(chars, index, newChars, index + 1, chars.length - index);
+        System.arraycopy(nodes, index, newNodes, index + 1, nodes.length - index);
+        edgeChars[node] = newChars;
+        edgeNodes[node] = newNodes;
+    }
+
+    public static final int CASE_SENSITIVE = 1;
+    public static final int BEGIN_WORD = 2;
+    public static final int END_WORD = 4;
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        final ArrayList<String> myWords = new ArrayList<>();
+        final ArrayList<Integer> myOptions = new ArrayList<>();
+
+        /**
+         * Add word to matcher
+         *
+         * @param word    literal text of the word
+         * @param options combination of CASE_SENSITIVE, BEGIN_WORD, END_WORD
+         * @return index of the word passed to match consumer
+         */
+        public int add(@NotNull String word, int options) {
+            myWords.add(word);
+            myOptions.add(options);
+            return myWords.size() - 1;
+        }
+
+        public int add(@NotNull String word, boolean caseSensitive, boolean beginWord, boolean endWord) {
+            return add(word, (caseSensitive ? CASE_SENSITIVE : 0) | (beginWord ? BEGIN_WORD : 0) | (endWord ? END_WORD : 0));
+        }
+
+        public MultiWordMatcher build() {
+            return new MultiWordMatcher(this);
+        }
+    }
+}
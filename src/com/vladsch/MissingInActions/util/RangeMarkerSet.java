@@ -0,0 +1,122 @@
+// Copyright 2016-2023 2023 Vladimir Schneider <vladimir.schneider@gmail.com> Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE.txt file.
+package com.vladsch.MissingInActions.util;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.RangeMarker;
+import com.intellij.openapi.editor.ex.DocumentEx;
+import com.intellij.openapi.util.TextRange;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashSet;
+
+/**
+ * Set of text ranges kept as range markers so they move with document edits
+ * <p>
+ * Intersection queries use the document's range marker interval tree instead of scanning all ranges.
+ */
+public class RangeMarkerSet {
+    private final @NotNull Document myDocument;
+    private final HashSet<RangeMarker> myMarkers = new HashSet<>();
+
+    public RangeMarkerSet(@NotNull Document document) {
+        myDocument = document;
+    }
+
+    @NotNull
+    public Document getDocument() {
+        return myDocument;
+    }
+
+    public boolean isEmpty() {
+        return myMarkers.isEmpty();
+    }
+
+    public int size() {
+        return myMarkers.size();
+    }
+
+    @NotNull
+    public RangeMarker add(@NotNull TextRange range) {
+        RangeMarker marker = myDocument.createRangeMarker(range);
+        myMarkers.add(marker);
+        return marker;
+    }
+
+    public boolean remove(@NotNull RangeMarker marker) {
+        if (myMarkers.remove(marker)) {
+            marker.dispose();
+            return true;
+        }
+        return false;
+    }
+
+    public void clear() {
+        for (RangeMarker marker : myMarkers) {
+            marker.dispose();
+        }
+        myMarkers.clear();
+    }
+
+    /**
+     * Find a marker intersecting the range, touching ranges intersect, same as TextRange.intersects()
+     *
+     * @param startOffset start of range
+     * @param endOffset   end of range
+     * @return intersecting marker or null
+     */
+    @Nullable
+    public RangeMarker getIntersecting(int startOffset, int endOffset) {
+        return find(startOffset, endOffset, false);
+    }
+
+    /**
+     * Find a marker which contains the range, same as TextRange.containsRange()
+     *
+     * @param startOffset start of range
+     * @param endOffset   end of range
+     * @return containing marker or null
+     */
+    @Nullable
+    public RangeMarker getContaining(int startOffset, int endOffset) {
+        return find(startOffset, endOffset, true);
+    }
+
+    @Nullable
+    private RangeMarker find(int startOffset, int endOffset, boolean containing) {
+        if (myMarkers.isEmpty()) return null;
+
+        RangeMarker[] found = { null };
+
+        if (myDocument instanceof DocumentEx) {
+            // include touching markers, overlap processing may not report empty or adjacent markers
+            int start = Math.max(0, startOffset - 1);
+            int end = Math.min(myDocument.getTextLength(), endOffset + 1);
+            ((DocumentEx) myDocument).processRangeMarkersOverlappingWith(start, end, marker -> {
+                if (myMarkers.contains(marker) && isMatch(marker, startOffset, endOffset, containing)) {
+                    found[0] = marker;
+                    return false;
+                }
+                return true;
+            });
+        } else {
+            for (RangeMarker marker : myMarkers) {
+                if (isMatch(marker, startOffset, endOffset, containing)) {
+                    found[0] = marker;
+                    break;
+                }
+            }
+        }
+        return found[0];
+    }
+
+    private static boolean isMatch(@NotNull RangeMarker marker, int startOffset, int endOffset, boolean containing) {
+        if (!marker.isValid()) return false;
+
+        if (containing) {
+            return marker.getStartOffset() <= startOffset && endOffset <= marker.getEndOffset();
+        } else {
+            return Math.max(marker.getStartOffset(), startOffset) <= Math.min(marker.getEndOffset(), endOffset);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+// Copyright 2016-2023 2023 Vladimir Schneider <vladimir.schneider@gmail.com> Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE.txt file.
+package com.vladsch.MissingInActions.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Char sequence which throws {@link TimeBudgetExceededException} from charAt once its time budget is used up,
+ * so a regex search with runaway backtracking can be abandoned. Sub-sequences share the budget.
+ */
+public class TimeBudgetCharSequence implements CharSequence {
+    private static final int CHECK_INTERVAL = 1024;
+
+    private final @NotNull CharSequence myChars;
+    private final long myDeadline;
+    private final @Nullable Runnable myCancelCheck;
+    private int myCheckCount = 0;
+
+    /**
+     * @param chars       chars to wrap
+     * @param budgetMs    time budget in milliseconds
+     * @param cancelCheck called periodically from charAt, can throw to cancel
+     */
+    public TimeBudgetCharSequence(@NotNull CharSequence chars, long budgetMs, @Nullable Runnable cancelCheck) {
+        this(chars, cancelCheck, System.nanoTime() + budgetMs * 1000_000L);
+    }
+
+    private TimeBudgetCharSequence(@NotNull CharSequence chars, @Nullable Runnable cancelCheck, long deadline) {
+        myChars = chars;
+        myDeadline = deadline;
+        myCancelCheck = cancelCheck;
+    }
+
+    @Override
+    public int length() {
+        return myChars.length();
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (++myCheckCount >= CHECK_INTERVAL) {
+            myCheckCount = 0;
+            if (myCancelCheck != null) myCancelCheck.run();
+            if (System.nanoTime() - myDeadline > 0) throw new TimeBudgetExceededException();
+        }
+        return myChars.charAt(index);
+    }
+
+    @NotNull
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new TimeBudgetCharSequence(myChars.subSequence(start, end), myCancelCheck, myDeadline);
+    }
+
+    @NotNull
+    @Override
+    public String toString() {
+        return myChars.toString();
+    }
+
+    public static class TimeBudgetExceededException extends RuntimeException {
+        TimeBudgetExceededException() {
+            super("Time budget exceeded", null, false, false);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+// Copyright 2016-2023 2023 Vladimir Schneider <vladimir.schneider@gmail.com> Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE.txt file.
+package com.vladsch.MissingInActions.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable highlight indices of highlighted words, taken on the EDT so matches can be indexed in a background read action
+ * <p>
+ * A matched word is looked up by its text, then by its lower case text for words highlighted ignoring case.
+ */
+public class WordIndexSnapshot {
+    public static final WordIndexSnapshot EMPTY = new WordIndexSnapshot(Collections.emptyMap(), Collections.emptyMap());
+
+    private final @NotNull Map<String, Integer> myIndices;
+    private final @NotNull Map<String, Integer> myLowerCaseIndices;
+
+    /**
+     * @param indices          highlight index of each highlighted word
+     * @param lowerCaseIndices highlight index of lower case text of each highlighted word
+     */
+    public WordIndexSnapshot(@NotNull Map<String, Integer> indices, @NotNull Map<String, Integer> lowerCaseIndices) {
+        myIndices = new HashMap<>(indices);
+        myLowerCaseIndices = new HashMap<>(lowerCaseIndices);
+    }
+
+    /**
+     * @param word matched text
+     * @return highlight index or -1 if not highlighted
+     */
+    public int getIndex(@NotNull String word) {
+        Integer index = myIndices.get(word);
+        if (index == null) index = myLowerCaseIndices.get(word.toLowerCase());
+        return index == null ? -1 : index;
+    }
+}
@@ -0,0 +1,176 @@
+// Copyright 2016-2023 2023 Vladimir Schneider <vladimir.schneider@gmail.com> Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE.txt file.
+package com.vladsch.MissingInActions.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Word match offsets and highlight indices, in offset order and not overlapping
+ */
+public class WordMatchList {
+    private int[] myStartOffsets;
+    private int[] myEndOffsets;
+    private int[] myIndices;
+    private int mySize = 0;
+
+    public WordMatchList() {
+        this(16);
+    }
+
+    public WordMatchList(int capacity) {
+        capacity = Math.max(capacity, 1);
+        myStartOffsets = new int[capacity];
+        myEndOffsets = new int[capacity];
+        myIndices = new int[capacity];
+    }
+
+    public int size() {
+        return mySize;
+    }
+
+    public boolean isEmpty() {
+        return mySize == 0;
+    }
+
+    public int getStartOffset(int i) {
+        return myStartOffsets[i];
+    }
+
+    public int getEndOffset(int i) {
+        return myEndOffsets[i];
+    }
+
+    public int getIndex(int i) {
+        return myIndices[i];
+    }
+
+    public void add(int startOffset, int endOffset, int index) {
+        if (mySize == myStartOffsets.length) {
+            int capacity = mySize * 2;
+            int[] startOffsets = new int[capacity];
+            int[] endOffsets = new int[capacity];
+            int[] indices = new int[capacity];
+            System.arraycopy(myStartOffsets, 0, startOffsets, 0, mySize);
+            System.arraycopy(myEndOffsets, 0, endOffsets, 0, mySize);
+            System.arraycopy(myIndices, 0, indices, 0, mySize);
+            myStartOffsets = startOffsets;
+            myEndOffsets = endOffsets;
+            myIndices = indices;
+        }
+
+        myStartOffsets[mySize] = startOffset;
+        myEndOffsets[mySize] = endOffset;
+        myIndices[mySize] = index;
+        mySize++;
+    }
+
+    @NotNull
+    public WordMatchList copy() {
+        WordMatchList matches = new WordMatchList(mySize);
+        System.arraycopy(myStartOffsets, 0, matches.myStartOffsets, 0, mySize);
+        System.arraycopy(myEndOffsets, 0, matches.myEndOffsets, 0, mySize);
+        System.arraycopy(myIndices, 0, matches.myIndices, 0, mySize);
+        matches.mySize = mySize;
+        return matches;
+    }
+
+    /**
+     * Update offsets for a document change, matches touching the changed text are removed
+     *
+     * @param offset    offset of change
+     * @param oldLength length of replaced text
+     * @param newLength length of replacement text
+     */
+    public void documentChanged(int offset, int oldLength, int newLength) {
+        int oldEnd = offset + oldLength;
+        int delta = newLength - oldLength;
+
+        int first = getFirstEndingAtOrAfter(offset);
+        int last = first;
+        while (last < mySize && myStartOffsets[last] <= oldEnd) last++;
+
+        removeRange(first, last);
+
+        if (delta != 0) {
+            for (int i = first; i < mySize; i++) {
+                myStartOffsets[i] += delta;
+                myEndOffsets[i] += delta;
+            }
+        }
+    }
+
+    /**
+     * Replace matches contained in a range
+     *
+     * @param startOffset start of range
+     * @param endOffset   end of range
+     * @param matches     matches to use for the range, only ones contained in the range are used
+     */
+    public void replace(int startOffset, int endOffset, @NotNull WordMatchList matches) {
+        int first = getFirstAtOrAfter(startOffset);
+        int last = first;
+        while (last < mySize && myEndOffsets[last] <= endOffset) last++;
+
+        int from = matches.getFirstAtOrAfter(startOffset);
+        int to = from;
+        while (to < matches.mySize && matches.myEndOffsets[to] <= endOffset) to++;
+
+        int count = to - from;
+        int newSize = mySize - (last - first) + count;
+        if (newSize > myStartOffsets.length) {
+            int capacity = Math.max(newSize, mySize * 2);
+            myStartOffsets = Arrays.copyOf(myStartOffsets, capacity);
+            myEndOffsets = Arrays.copyOf(myEndOffsets, capacity);
+            myIndices = Arrays.copyOf(myIndices, capacity);
+        }
+
+        System.arraycopy(myStartOffsets, last, myStartOffsets, first + count, mySize - last);
+        System.arraycopy(myEndOffsets, last, myEndOffsets, first + count, mySize - last);
+        System.arraycopy(myIndices, last, myIndices, first + count, mySize - last);
+
+        System.arraycopy(matches.myStartOffsets, from, myStartOffsets, first, count);
+        System.arraycopy(matches.myEndOffsets, from, myEndOffsets, first, count);
+        System.arraycopy(matches.myIndices, from, myIndices, first, count);
+        mySize = newSize;
+    }
+
+    private void removeRange(int first, int last) {
+        if (first < last) {
+            System.arraycopy(myStartOffsets, last, myStartOffsets, first, mySize - last);
+            System.arraycopy(myEndOffsets, last, myEndOffsets, first, mySize - last);
+            System.arraycopy(myIndices, last, myIndices, first, mySize - last);
+            mySize -= last - first;
+        }
+    }
+
+    /**
+     * @param offset offset
+     * @return index of first match ending at or after offset, {@link #size()} if none
+     */
+    public int getFirstEndingAtOrAfter(int offset) {
+        int low = 0;
+        int high = mySize;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (myEndOffsets[mid] < offset) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * @param offset offset
+     * @return index of first match starting at or after offset, {@link #size()} if none
+     */
+    public int getFirstAtOrAfter(int offset) {
+        int low = 0;
+        int high = mySize;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (myStartOffsets[mid] < offset) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+}
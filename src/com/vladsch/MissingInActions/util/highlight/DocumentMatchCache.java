@@ -0,0 +1,55 @@
+// Copyright 2016-2023 2023 Vladimir Schneider <vladimir.schneider@gmail.com> Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE.txt file.
+package com.vladsch.MissingInActions.util.highlight;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.util.Key;
+import com.vladsch.MissingInActions.util.WordMatchList;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Word matches of a document shared by all its editors, keyed by highlight pattern version
+ * <p>
+ * Matches are only valid for the document modification stamp at which they were stored, after a change
+ * the first editor to update its highlights stores the matches for the new text. Only used on the EDT.
+ */
+public class DocumentMatchCache {
+    private static final Key<Map<Object, DocumentMatchCache>> MATCH_CACHE_KEY = Key.create("MissingInActions.DocumentMatchCache");
+
+    private final long myModificationStamp;
+    private final @NotNull WordMatchList myMatches;
+
+    private DocumentMatchCache(long modificationStamp, @NotNull WordMatchList matches) {
+        myModificationStamp = modificationStamp;
+        myMatches = matches;
+    }
+
+    /**
+     * @param document       document
+     * @param patternVersion pattern version of matches
+     * @return matches for current document text or null if none cached
+     */
+    @Nullable
+    public static WordMatchList getMatches(@NotNull Document document, @NotNull Object patternVersion) {
+        Map<Object, DocumentMatchCache> cacheMap = document.getUserData(MATCH_CACHE_KEY);
+        DocumentMatchCache cache = cacheMap == null ? null : cacheMap.get(patternVersion);
+        return cache == null || cache.myModificationStamp != document.getModificationStamp() ? null : cache.myMatches;
+    }
+
+    /**
+     * @param document       document
+     * @param patternVersion pattern version of matches, entries are removed when no longer referenced
+     * @param matches        matches for current document text
+     */
+    public static void putMatches(@NotNull Document document, @NotNull Object patternVersion, @NotNull WordMatchList matches) {
+        Map<Object, DocumentMatchCache> cacheMap = document.getUserData(MATCH_CACHE_KEY);
+        if (cacheMap == null) {
+            cacheMap = new WeakHashMap<>();
+            document.putUserData(MATCH_CACHE_KEY, cacheMap);
+        }
+        cacheMap.put(patternVersion, new DocumentMatchCache(document.getModificationStamp(), matches));
+    }
+}
@@ -1,10 +1,12 @@
 // Copyright 2016-2023 2023 Vladimir Schneider <vladimir.schneider@gmail.com> Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE.txt file.
 package com.vladsch.MissingInActions.util.highlight;
 
+import com.intellij.openapi.editor.Editor;
 import com.vladsch.MissingInActions.settings.ApplicationSettings;
 import com.vladsch.plugin.util.CancelableJobScheduler;
 import com.vladsch.plugin.util.ui.ColorIterable;
 import com.vladsch.plugin.util.ui.highlight.WordHighlightProviderBase;
+import com.vladsch.plugin.util.ui.highlight.WordHighlighter;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -13,6 +15,11 @@ public class MiaWordHighlightProviderImpl extends WordHighlightProviderBase<Appl
         super(settings);
     }
 
+    @Override
+    public WordHighlighter<ApplicationSettings> getHighlighter(@NotNull final Editor editor) {
+        return new MiaWordHighlighter(this, editor);
+    }
+
     @Override
     protected void subscribeSettingsChanged() {
         MiaHighlightProviderUtils.subscribeSettingsChanged(this);
@@ -0,0 +1,509 @@
+// Copyright 2016-2023 2023 Vladimir Schneider <vladimir.schneider@gmail.com> Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE.txt file.
+package com.vladsch.MissingInActions.util.highlight;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.markup.EffectType;
+import com.intellij.openapi.editor.markup.HighlighterLayer;
+import com.intellij.openapi.editor.markup.HighlighterTargetArea;
+import com.intellij.openapi.editor.markup.MarkupModel;
+import com.intellij.openapi.editor.markup.RangeHighlighter;
+import com.intellij.openapi.editor.markup.TextAttributes;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.vladsch.MissingInActions.settings.ApplicationSettings;
+import com.vladsch.MissingInActions.util.DirtyRangeList;
+import com.vladsch.MissingInActions.util.WordIndexSnapshot;
+import com.vladsch.MissingInActions.util.WordMatchList;
+import com.vladsch.plugin.util.ui.highlight.WordHighlightProvider;
+import com.vladsch.plugin.util.ui.highlight.WordHighlighter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.concurrency.CancellablePromise;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Word highlighter which can update highlights of changed text only
+ * <p>
+ * Highlighters outside changed text are kept, the editor markup model shifts them with document changes.
+ * Lines of changed text, widened by the longest highlighted word, are re-scanned. A change in highlighted
+ * words changes the pattern version and needs a full update.
+ * <p>
+ * Full update of documents larger than {@link #LARGE_DOCUMENT_SIZE} highlights the visible lines first. The rest of
+ * the document is matched in a background read action on a snapshot of the text and highlighters are added on the
+ * EDT in batches of {@link #HIGHLIGHTER_BATCH_SIZE}.
+ * <p>
+ * Match offsets are shared with other editors of the document through {@link DocumentMatchCache}, an editor
+ * updating highlights for text and pattern version already matched by another editor only creates highlighters.
+ * Each editor keeps its own matches of the whole document, shifted by document changes and updated with rescanned
+ * ranges, so the shared matches do not need to be rebuilt after a change.
+ */
+public class MiaWordHighlighter extends WordHighlighter<ApplicationSettings> {
+    // same layer as used by TypedRangeHighlighter
+    public static final int HIGHLIGHTER_LAYER = HighlighterLayer.SELECTION - 2;
+    public static final int LARGE_DOCUMENT_SIZE = 1024 * 1024;
+    public static final int BACKGROUND_SCAN_CHUNK_SIZE = 64 * 1024;
+    public static final int HIGHLIGHTER_BATCH_SIZE = 1000;
+
+    private final @NotNull WordHighlightProvider<ApplicationSettings> myWordProvider;
+    private @Nullable Object myPatternVersion = null;
+    private int myMaxWordLength = 0;
+    private int myScanStart = -1;
+    private int myScanEnd = -1;
+    private @Nullable Object myScanPatternVersion = null;
+    private @Nullable WordMatchList myScanMatches = null;
+    private int myScanGeneration = 0;
+    private @Nullable CancellablePromise<?> myBackgroundScan = null;
+    private @Nullable Object myWordIndicesVersion = null;
+    private @NotNull WordIndexSnapshot myWordIndices = WordIndexSnapshot.EMPTY;
+    private @Nullable WordMatchList myMatches = null;  // all matches for myPatternVersion, including ones without highlighters
+
+    public MiaWordHighlighter(@NotNull WordHighlightProvider<ApplicationSettings> highlightProvider, @NotNull Editor editor) {
+        super(highlightProvider, editor);
+        myWordProvider = highlightProvider;
+    }
+
+    /**
+     * @return object identifying the current match pattern, changes when highlighted words change
+     */
+    @Nullable
+    protected Object getPatternVersion() {
+        return myWordProvider.getHighlightPattern();
+    }
+
+    protected int getMaxWordLength() {
+        Map<String, Integer> highlightRangeFlags = myWordProvider.getHighlightRangeFlags();
+        int maxLength = 0;
+        if (highlightRangeFlags != null) {
+            for (String word : highlightRangeFlags.keySet()) {
+                maxLength = Math.max(maxLength, word.length());
+            }
+        }
+        return maxLength;
+    }
+
+    /**
+     * Highlight indices of highlighted words for the pattern version, only called on the EDT
+     *
+     * @param patternVersion pattern version returned by {@link #getPatternVersion()}
+     * @return snapshot of highlight indices, not affected by later changes to highlighted words
+     */
+    @NotNull
+    protected WordIndexSnapshot getWordIndices(@NotNull Object patternVersion) {
+        if (myWordIndicesVersion != patternVersion) {
+            HashMap<String, Integer> indices = new HashMap<>();
+            HashMap<String, Integer> lowerCaseIndices = new HashMap<>();
+            Map<String, Integer> highlightRangeFlags = myWordProvider.getHighlightRangeFlags();
+
+            if (highlightRangeFlags != null) {
+                for (String word : highlightRangeFlags.keySet()) {
+                    String lowerCaseWord = word.toLowerCase();
+                    indices.put(word, myWordProvider.getHighlightRangeIndex(word));
+                    lowerCaseIndices.put(lowerCaseWord, myWordProvider.getHighlightRangeIndex(lowerCaseWord));
+                }
+            }
+
+            myWordIndices = new WordIndexSnapshot(indices, lowerCaseIndices);
+            myWordIndicesVersion = patternVersion;
+        }
+        return myWordIndices;
+    }
+
+    /**
+     * Find matches contained in the given range, text outside the range is used for word boundaries
+     * <p>
+     * Can be called from a background read action, highlight indices are only taken from the word index snapshot.
+     *
+     * @param patternVersion pattern version returned by {@link #getPatternVersion()}
+     * @param wordIndices    highlight indices returned by {@link #getWordIndices(Object)} for the pattern version
+     * @param charSequence   text
+     * @param startOffset    start of range
+     * @param endOffset      end of range
+     * @param matches        list for matches
+     */
+    protected void findMatches(@NotNull Object patternVersion, @NotNull WordIndexSnapshot wordIndices, @NotNull CharSequence charSequence, int startOffset, int endOffset, @NotNull WordMatchList matches) {
+        Matcher matcher = ((Pattern) patternVersion).matcher(charSequence);
+        matcher.region(startOffset, endOffset);
+        matcher.useTransparentBounds(true);
+        matcher.useAnchoringBounds(false);
+
+        while (matcher.find()) {
+            matches.add(matcher.start(), matcher.end(), wordIndices.getIndex(matcher.group()));
+        }
+    }
+
+    /**
+     * Update offsets of matches for a document change, called before {@link #updateHighlights(DirtyRangeList)}
+     *
+     * @param offset    offset of change
+     * @param oldLength length of replaced text
+     * @param newLength length of replacement text
+     */
+    public void documentChanged(int offset, int oldLength, int newLength) {
+        if (myMatches != null) {
+            myMatches.documentChanged(offset, oldLength, newLength);
+        }
+    }
+
+    @Override
+    public void updateHighlights() {
+        cancelBackgroundScan();
+        myMatches = null;
+
+        Document document = myEditor.getDocument();
+        Object patternVersion = myWordProvider.isShowHighlights() && isHighlightAvailable() ? getPatternVersion() : null;
+        WordMatchList cachedMatches = patternVersion == null ? null : DocumentMatchCache.getMatches(document, patternVersion);
+        boolean isLargeDocument = document.getTextLength() > LARGE_DOCUMENT_SIZE;
+        int scanStart = 0;
+        int scanEnd = document.getTextLength();
+
+        if (isLargeDocument) {
+            Rectangle visibleArea = myEditor.getScrollingModel().getVisibleArea();
+            scanStart = myEditor.logicalPositionToOffset(myEditor.xyToLogicalPosition(new Point(0, visibleArea.y)));
+            scanEnd = myEditor.logicalPositionToOffset(myEditor.xyToLogicalPosition(new Point(0, visibleArea.y + visibleArea.height)));
+            scanStart = document.getLineStartOffset(document.getLineNumber(scanStart));
+            scanEnd = document.getLineEndOffset(document.getLineNumber(scanEnd));
+        }
+
+        WordMatchList scanMatches;
+        myScanStart = scanStart;
+        myScanEnd = scanEnd;
+        myScanPatternVersion = patternVersion;
+        myScanMatches = cachedMatches;
+        try {
+            super.updateHighlights();
+            scanMatches = myScanMatches;
+        } finally {
+            myScanStart = -1;
+            myScanEnd = -1;
+            myScanPatternVersion = null;
+            myScanMatches = null;
+        }
+
+        if (patternVersion != null && scanMatches != null) {
+            myMaxWordLength = getMaxWordLength();
+
+            if (!isLargeDocument) {
+                if (cachedMatches == null) DocumentMatchCache.putMatches(document, patternVersion, scanMatches);
+                myMatches = cachedMatches == null ? scanMatches : cachedMatches.copy();
+                myPatternVersion = patternVersion;
+            } else {
+                // incremental updates are only possible after all highlighters are added
+                ModalityState modalityState = ModalityState.stateForComponent(myEditor.getComponent());
+                if (cachedMatches != null) {
+                    addPendingHighlights(cachedMatches, 0, 0, scanStart, scanEnd, document.getModificationStamp(), patternVersion, myScanGeneration, modalityState);
+                } else {
+                    startBackgroundScan(document, scanStart, scanEnd, patternVersion, modalityState);
+                }
+            }
+        }
+    }
+
+    @Override
+    protected void removeHighlightsRaw() {
+        cancelBackgroundScan();
+        myPatternVersion = null;
+        myMatches = null;
+        super.removeHighlightsRaw();
+    }
+
+    private void cancelBackgroundScan() {
+        myScanGeneration++;
+        if (myBackgroundScan != null) {
+            myBackgroundScan.cancel();
+            myBackgroundScan = null;
+        }
+    }
+
+    private void startBackgroundScan(@NotNull Document document, int visibleStart, int visibleEnd, @NotNull Object patternVersion, @NotNull ModalityState modalityState) {
+        CharSequence chars = document.getImmutableCharSequence();
+        long modificationStamp = document.getModificationStamp();
+        int scanGeneration = myScanGeneration;
+        WordIndexSnapshot wordIndices = getWordIndices(patternVersion);
+
+        myBackgroundScan = ReadAction.nonBlocking(() -> {
+                    WordMatchList matches = new WordMatchList();
+                    int textLength = chars.length();
+
+                    // chunks end at line ends, same as incremental update ranges
+                    for (int startOffset = 0; startOffset < textLength; ) {
+                        ProgressManager.checkCanceled();
+
+                        int endOffset = Math.min(textLength, startOffset + BACKGROUND_SCAN_CHUNK_SIZE);
+                        while (endOffset < textLength && chars.charAt(endOffset) != '\n') endOffset++;
+
+                        findMatches(patternVersion, wordIndices, chars, startOffset, endOffset, matches);
+                        startOffset = endOffset;
+                    }
+                    return matches;
+                })
+                .expireWhen(() -> myEditor.isDisposed() || document.getModificationStamp() != modificationStamp)
+                .finishOnUiThread(modalityState, matches -> {
+                    if (document.getModificationStamp() != modificationStamp) return;
+
+                    DocumentMatchCache.putMatches(document, patternVersion, matches);
+                    addPendingHighlights(matches, 0, 0, visibleStart, visibleEnd, modificationStamp, patternVersion, scanGeneration, modalityState);
+                })
+                .submit(AppExecutorUtil.getAppExecutorService());
+    }
+
+    private void addPendingHighlights(@NotNull WordMatchList matches, int startIndex, int insertIndex, int visibleStart, int visibleEnd, long modificationStamp, @NotNull Object patternVersion, int scanGeneration, @NotNull ModalityState modalityState) {
+        // a later update or document change makes the offsets stale, the update it triggered replaces these
+        if (scanGeneration != myScanGeneration || myEditor.isDisposed()
+                || myEditor.getDocument().getModificationStamp() != modificationStamp || patternVersion != getPatternVersion()) return;
+
+        if (myHighlighters == null || myHighlighterIndexList == null) {
+            myHighlighters = new ArrayList<>();
+            myHighlighterIndexList = new ArrayList<>();
+        }
+
+        // matches before visible highlighters are inserted ahead of them, batches do not mix these with ones after
+        int beforeVisible = matches.getFirstAtOrAfter(visibleStart);
+        int iMax = Math.min(matches.size(), startIndex + HIGHLIGHTER_BATCH_SIZE);
+        if (startIndex < beforeVisible) iMax = Math.min(iMax, beforeVisible);
+
+        CharSequence chars = myEditor.getDocument().getCharsSequence();
+        ArrayList<RangeHighlighter> added = new ArrayList<>();
+        ArrayList<Integer> addedIndices = new ArrayList<>();
+        HighlighterAttributeConsumer<String> consumer = createHighlighterConsumer(added, addedIndices);
+        Map<String, Integer> highlightRangeFlags = myWordProvider.getHighlightRangeFlags();
+
+        for (int i = startIndex; i < iMax; i++) {
+            int startOffset = matches.getStartOffset(i);
+            int endOffset = matches.getEndOffset(i);
+
+            // visible matches already have highlighters
+            if (startOffset >= visibleStart && endOffset <= visibleEnd) continue;
+            addAttributeRange(chars, highlightRangeFlags, startOffset, endOffset, matches.getIndex(i), consumer);
+        }
+
+        if (startIndex < beforeVisible) {
+            myHighlighters.addAll(insertIndex, added);
+            myHighlighterIndexList.addAll(insertIndex, addedIndices);
+            insertIndex += added.size();
+        } else {
+            myHighlighters.addAll(added);
+            myHighlighterIndexList.addAll(addedIndices);
+        }
+
+        if (iMax < matches.size()) {
+            int nextStartIndex = iMax;
+            int nextInsertIndex = insertIndex;
+            ApplicationManager.getApplication().invokeLater(() -> addPendingHighlights(matches, nextStartIndex, nextInsertIndex, visibleStart, visibleEnd, modificationStamp, patternVersion, scanGeneration, modalityState), modalityState);
+        } else {
+            myBackgroundScan = null;
+            myMatches = matches.copy();
+            myPatternVersion = patternVersion;
+            myHighlightProvider.fireHighlightsUpdated();
+        }
+    }
+
+    public boolean canUpdateIncrementally() {
+        int[] rangeCounts = getIndexedRangeCounts();
+        return myPatternVersion != null && myMatches != null && myPatternVersion == getPatternVersion()
+                && myWordProvider.isShowHighlights() && isHighlightAvailable()
+                && rangeCounts != null && rangeCounts.length >= myWordProvider.getMaxHighlightRangeIndex();
+    }
+
+    /**
+     * Update highlights of changed text, full update if highlighted words changed since last full update
+     *
+     * @param dirtyRanges ranges of text changed since last update
+     */
+    public void updateHighlights(@NotNull DirtyRangeList dirtyRanges) {
+        if (!canUpdateIncrementally()) {
+            updateHighlights();
+            return;
+        }
+
+        if (dirtyRanges.isEmpty()) return;
+
+        if (myHighlighters == null || myHighlighterIndexList == null) {
+            myHighlighters = new ArrayList<>();
+            myHighlighterIndexList = new ArrayList<>();
+        }
+
+        Document document = myEditor.getDocument();
+        Object patternVersion = myPatternVersion;
+        WordMatchList ownMatches = myMatches;
+        WordMatchList cachedMatches = DocumentMatchCache.getMatches(document, patternVersion);
+        if (cachedMatches == ownMatches) cachedMatches = null;
+        int iMax = dirtyRanges.size();
+
+        for (int i = 0; i < iMax; ) {
+            int startOffset = getRescanStart(document, dirtyRanges.getStart(i));
+            int endOffset = getRescanEnd(document, dirtyRanges.getEnd(i));
+
+            // widened ranges can overlap, rescan them together
+            for (i++; i < iMax; i++) {
+                int nextStart = getRescanStart(document, dirtyRanges.getStart(i));
+                if (nextStart > endOffset) break;
+                endOffset = getRescanEnd(document, dirtyRanges.getEnd(i));
+            }
+
+            rescanRange(document.getCharsSequence(), startOffset, endOffset, patternVersion, ownMatches, cachedMatches);
+        }
+
+        if (cachedMatches == null) {
+            // other editors of the document can use these instead of rescanning, they copy them so only this editor updates them
+            DocumentMatchCache.putMatches(document, patternVersion, ownMatches);
+        }
+
+        myHighlightProvider.fireHighlightsUpdated();
+    }
+
+    private int getRescanStart(@NotNull Document document, int offset) {
+        int startOffset = Math.max(0, Math.min(offset, document.getTextLength()) - myMaxWordLength);
+        return document.getLineStartOffset(document.getLineNumber(startOffset));
+    }
+
+    private int getRescanEnd(@NotNull Document document, int offset) {
+        int endOffset = Math.min(document.getTextLength(), offset + myMaxWordLength);
+        return document.getLineEndOffset(document.getLineNumber(endOffset));
+    }
+
+    private void rescanRange(@NotNull CharSequence chars, int startOffset, int endOffset, @NotNull Object patternVersion, @NotNull WordMatchList ownMatches, @Nullable WordMatchList cachedMatches) {
+        List<RangeHighlighter> highlighters = myHighlighters;
+        List<Integer> highlighterIndexList = myHighlighterIndexList;
+        int[] rangeCounts = getIndexedRangeCounts();
+
+        // matches without highlighters touching the range are replaced too
+        int first = ownMatches.getFirstEndingAtOrAfter(startOffset);
+        if (first < ownMatches.size() && ownMatches.getStartOffset(first) < startOffset) startOffset = ownMatches.getStartOffset(first);
+        int last = ownMatches.getFirstEndingAtOrAfter(endOffset);
+        if (last < ownMatches.size() && ownMatches.getStartOffset(last) <= endOffset) endOffset = ownMatches.getEndOffset(last);
+
+        // highlighters are sorted and do not overlap, remove all touching the range and include their text in the rescan
+        int from = getFirstHighlighterEndingAtOrAfter(startOffset);
+        int to = from;
+        int iMax = highlighters.size();
+        while (to < iMax) {
+            RangeHighlighter highlighter = highlighters.get(to);
+            if (highlighter.getStartOffset() > endOffset) break;
+
+            startOffset = Math.min(startOffset, highlighter.getStartOffset());
+            endOffset = Math.max(endOffset, highlighter.getEndOffset());
+
+            int index = highlighterIndexList.get(to);
+            if (index >= 0 && index < rangeCounts.length && rangeCounts[index] > 0) rangeCounts[index]--;
+            to++;
+        }
+
+        if (from < to) {
+            List<RangeHighlighter> removed = highlighters.subList(from, to);
+            clearHighlighters(myEditor, new ArrayList<>(removed));
+            removed.clear();
+            highlighterIndexList.subList(from, to).clear();
+        }
+
+        WordMatchList matches = cachedMatches;
+        if (matches == null) {
+            matches = new WordMatchList();
+            findMatches(patternVersion, getWordIndices(patternVersion), chars, startOffset, endOffset, matches);
+        }
+        ownMatches.replace(startOffset, endOffset, matches);
+
+        ArrayList<RangeHighlighter> added = new ArrayList<>();
+        ArrayList<Integer> addedIndices = new ArrayList<>();
+        generateAttributeRanges(chars, matches, startOffset, endOffset, createHighlighterConsumer(added, addedIndices));
+
+        highlighters.addAll(from, added);
+        highlighterIndexList.addAll(from, addedIndices);
+    }
+
+    private int getFirstHighlighterEndingAtOrAfter(int offset) {
+        int low = 0;
+        int high = myHighlighters.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (myHighlighters.get(mid).getEndOffset() < offset) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    @NotNull
+    private HighlighterAttributeConsumer<String> createHighlighterConsumer(@NotNull List<RangeHighlighter> highlighters, @NotNull List<Integer> highlighterIndices) {
+        MarkupModel markupModel = myEditor.getMarkupModel();
+        int[] rangeCounts = getIndexedRangeCounts();
+
+        return (range, index, startOffset, endOffset, layer, attributes, targetArea, listener) -> {
+            RangeHighlighter highlighter = markupModel.addRangeHighlighter(startOffset, endOffset, layer > 0 ? layer : HIGHLIGHTER_LAYER, attributes, targetArea == null ? HighlighterTargetArea.EXACT_RANGE : targetArea);
+            highlighters.add(listener.rangeHighlighterCreated(highlighter, range, index));
+            highlighterIndices.add(index);
+            if (rangeCounts != null && index >= 0 && index < rangeCounts.length) rangeCounts[index]++;
+        };
+    }
+
+    @Override
+    protected void generateAttributeRanges(@NotNull HighlighterAttributeConsumer<String> consumer) {
+        CharSequence charSequence = myEditor.getDocument().getCharsSequence();
+
+        if (myScanStart >= 0 && myScanPatternVersion != null) {
+            if (myScanMatches == null) {
+                myScanMatches = new WordMatchList();
+                findMatches(myScanPatternVersion, getWordIndices(myScanPatternVersion), charSequence, myScanStart, myScanEnd, myScanMatches);
+            }
+            generateAttributeRanges(charSequence, myScanMatches, myScanStart, myScanEnd, consumer);
+        } else {
+            generateAttributeRanges(charSequence, consumer);
+        }
+    }
+
+    @Override
+    public void generateAttributeRanges(@NotNull CharSequence charSequence, @NotNull HighlighterAttributeConsumer<String> consumer) {
+        generateAttributeRanges(charSequence, 0, charSequence.length(), consumer);
+    }
+
+    /**
+     * Generate highlight ranges for matches contained in the given range, text outside the range is used for word boundaries
+     *
+     * @param charSequence text
+     * @param startOffset  start of range
+     * @param endOffset    end of range
+     * @param consumer     highlight range consumer
+     */
+    public void generateAttributeRanges(@NotNull CharSequence charSequence, int startOffset, int endOffset, @NotNull HighlighterAttributeConsumer<String> consumer) {
+        Object patternVersion = getPatternVersion();
+        if (patternVersion == null) return;
+
+        WordMatchList matches = new WordMatchList();
+        findMatches(patternVersion, getWordIndices(patternVersion), charSequence, startOffset, endOffset, matches);
+        generateAttributeRanges(charSequence, matches, startOffset, endOffset, consumer);
+    }
+
+    private void generateAttributeRanges(@NotNull CharSequence charSequence, @NotNull WordMatchList matches, int startOffset, int endOffset, @NotNull HighlighterAttributeConsumer<String> consumer) {
+        Map<String, Integer> highlightRangeFlags = myWordProvider.getHighlightRangeFlags();
+        int iMax = matches.size();
+
+        for (int i = matches.getFirstAtOrAfter(startOffset); i < iMax; i++) {
+            int matchStart = matches.getStartOffset(i);
+            int matchEnd = matches.getEndOffset(i);
+            if (matchEnd > endOffset) break;
+
+            addAttributeRange(charSequence, highlightRangeFlags, matchStart, matchEnd, matches.getIndex(i), consumer);
+        }
+    }
+
+    private void addAttributeRange(@NotNull CharSequence charSequence, @Nullable Map<String, Integer> highlightRangeFlags, int startOffset, int endOffset, int index, @NotNull HighlighterAttributeConsumer<String> consumer) {
+        String word = charSequence.subSequence(startOffset, endOffset).toString();
+        Integer flags = highlightRangeFlags == null ? null : highlightRangeFlags.get(myWordProvider.getAdjustedRange(word));
+        TextAttributes attributes = myWordProvider.getHighlightAttributes(index, flags == null ? 0 : flags, startOffset, endOffset, null, null, EffectType.BOLD_DOTTED_LINE, 0);
+
+        attributes = getAttributes(attributes, word, startOffset, endOffset);
+        if (attributes != null) {
+            consumer.addRangeHighlighter(word, index, startOffset, endOffset, -1, attributes, null, (rangeHighlighter, range, originalIndex) -> rangeHighlighterCreated(rangeHighlighter, word, index, startOffset, endOffset));
+        }
+    }
+}
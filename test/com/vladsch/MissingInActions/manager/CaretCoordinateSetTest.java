@@ -0,0 +1,43 @@
+// Copyright 2016-2023 2023 Vladimir Schneider <vladimir.schneider@gmail.com> Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE.txt file.
+package com.vladsch.MissingInActions.manager;
+
+import org.junit.Test;
+
+import static com.vladsch.MissingInActions.manager.CaretCoordinateSet.getCoordinates;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CaretCoordinateSetTest {
+    @Test
+    public void test_sortedUnique() {
+        CaretCoordinateSet set = new CaretCoordinateSet(new long[] { getCoordinates(5, 2), getCoordinates(1, 10), getCoordinates(5, 2), getCoordinates(1, 3) });
+
+        assertEquals(3, set.size());
+        assertArrayEquals(new long[] { getCoordinates(1, 3), getCoordinates(1, 10), getCoordinates(5, 2) }, set.toArray());
+        assertTrue(set.contains(getCoordinates(1, 10)));
+        assertFalse(set.contains(getCoordinates(1, 4)));
+    }
+
+    @Test
+    public void test_length() {
+        CaretCoordinateSet set = new CaretCoordinateSet(new long[] { getCoordinates(2, 0), getCoordinates(3, 0), getCoordinates(4, 0) }, 2);
+
+        assertEquals(2, set.size());
+        assertFalse(set.containsLine(4));
+        assertTrue(new CaretCoordinateSet(new long[0]).isEmpty());
+    }
+
+    @Test
+    public void test_lineCoordinates() {
+        CaretCoordinateSet set = new CaretCoordinateSet(new long[] { getCoordinates(7, 12), getCoordinates(7, 4), getCoordinates(9, 0) });
+
+        assertEquals(getCoordinates(7, 4), set.getLineCoordinates(7));
+        assertEquals(getCoordinates(9, 0), set.getLineCoordinates(9));
+        assertEquals(-1, set.getLineCoordinates(8));
+        assertEquals(-1, set.getLineCoordinates(10));
+        assertEquals(7, CaretCoordinateSet.getLine(set.getLineCoordinates(7)));
+        assertEquals(4, CaretCoordinateSet.getColumn(set.getLineCoordinates(7)));
+    }
+}
@@ -0,0 +1,46 @@
+// Copyright 2016-2023 2023 Vladimir Schneider <vladimir.schneider@gmail.com> Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE.txt file.
+package com.vladsch.MissingInActions.manager;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LineRangeSetTest {
+    @Test
+    public void test_disjoint() {
+        LineRangeSet set = new LineRangeSet();
+        set.add(10, 12);
+        set.add(2, 3);
+        set.add(20, 20);
+
+        List<int[]> ranges = set.getRanges();
+        assertEquals(3, ranges.size());
+        assertArrayEquals(new int[] { 2, 3 }, ranges.get(0));
+        assertArrayEquals(new int[] { 10, 12 }, ranges.get(1));
+        assertArrayEquals(new int[] { 20, 20 }, ranges.get(2));
+    }
+
+    @Test
+    public void test_merge() {
+        LineRangeSet set = new LineRangeSet();
+
+        // block of two lines moved down one line at a time
+        for (int i = 0; i < 5; i++) {
+            set.add(5 + i, 6 + i);
+            set.add(6 + i, 7 + i);
+        }
+        set.add(20, 22);
+        set.add(12, 19);
+
+        List<int[]> ranges = set.getRanges();
+        assertEquals(1, ranges.size());
+        assertArrayEquals(new int[] { 5, 22 }, ranges.get(0));
+
+        set.clear();
+        assertTrue(set.isEmpty());
+    }
+}
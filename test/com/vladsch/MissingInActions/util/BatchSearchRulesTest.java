@@ -0,0 +1,57 @@
+// Copyright 2016-2023 2023 Vladimir Schneider <vladimir.schneider@gmail.com> Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE.txt file.
+package com.vladsch.MissingInActions.util;
+
+import com.vladsch.MissingInActions.settings.BatchSearchReplace;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BatchSearchRulesTest {
+    @Test
+    public void test_parseRule() {
+        BatchSearchRules.Rule rule = BatchSearchRules.parseRule(0, "word", null, "i b # c e", true, false);
+        assertEquals("", rule.replace);
+        assertFalse(rule.caseSensitive);
+        assertTrue(rule.beginWord);
+        assertFalse(rule.endWord);
+
+        rule = BatchSearchRules.parseRule(0, "word", "text", "w!", false, false);
+        assertTrue(rule.beginWord);
+        assertTrue(rule.endWord);
+        assertTrue(rule.error);
+
+        assertNull(BatchSearchRules.parseRule(0, "word", "text", "- c", false, false));
+        assertNull(BatchSearchRules.parseRule(0, "", "text", "", false, false));
+    }
+
+    @Test
+    public void test_laterLineReplacesEarlier() {
+        BatchSearchRules rules = BatchSearchRules.of(new BatchSearchReplace(true, false, "abc\ndef\nABC", "1\n2\n3", ""));
+        assertEquals(2, rules.getRules().size());
+        assertEquals("def", rules.getRules().get(0).search);
+        assertEquals("ABC", rules.getRules().get(1).search);
+    }
+
+    @Test
+    public void test_findReplacements() {
+        BatchSearchRules rules = BatchSearchRules.of(new BatchSearchReplace(true, true, "ab\nabc\n.x", "1\n2\n3", "\n\ni"));
+        String text = "abc ab abcd .x a.X";
+        List<BatchSearchRules.Replacement> replacements = rules.findReplacements(text);
+        assertEquals(4, replacements.size());
+        assertEquals(4, rules.countMatches(text));
+
+        // applied from last to first
+        StringBuilder sb = new StringBuilder(text);
+        for (int i = replacements.size(); i-- > 0; ) {
+            BatchSearchRules.Replacement replacement = replacements.get(i);
+            sb.replace(replacement.startOffset, replacement.endOffset, replacement.replace);
+        }
+        assertEquals("2 1 abcd 3 a3", sb.toString());
+        assertTrue(rules.findReplacements("none").isEmpty());
+    }
+}
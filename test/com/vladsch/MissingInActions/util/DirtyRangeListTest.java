@@ -0,0 +1,110 @@
+// Copyright 2016-2023 2023 Vladimir Schneider <vladimir.schneider@gmail.com> Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE.txt file.
+package com.vladsch.MissingInActions.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DirtyRangeListTest {
+    @Test
+    public void test_basic() {
+        DirtyRangeList ranges = new DirtyRangeList();
+        assertTrue(ranges.isEmpty());
+
+        ranges.documentChanged(10, 0, 5);
+        ranges.documentChanged(30, 0, 2);
+        assertEquals(2, ranges.size());
+        assertEquals(10, ranges.getStart(0));
+        assertEquals(15, ranges.getEnd(0));
+
+        // delete before both shifts them and adds an empty range
+        ranges.documentChanged(0, 2, 0);
+        assertEquals(3, ranges.size());
+        assertEquals(0, ranges.getEnd(0));
+        assertEquals(8, ranges.getStart(1));
+        assertEquals(13, ranges.getEnd(1));
+        assertEquals(28, ranges.getStart(2));
+        assertEquals(30, ranges.getEnd(2));
+
+        // replace spanning both merges them
+        ranges.documentChanged(12, 17, 1);
+        assertEquals(2, ranges.size());
+        assertEquals(8, ranges.getStart(1));
+        assertEquals(14, ranges.getEnd(1));
+
+        ranges.clear();
+        assertTrue(ranges.isEmpty());
+    }
+
+    @Test
+    public void test_collapse() {
+        DirtyRangeList ranges = new DirtyRangeList();
+        for (int i = 0; i <= DirtyRangeList.MAX_RANGES; i++) {
+            ranges.documentChanged(i * 10, 0, 1);
+        }
+        assertEquals(1, ranges.size());
+        assertEquals(0, ranges.getStart(0));
+        assertEquals(DirtyRangeList.MAX_RANGES * 10 + 1, ranges.getEnd(0));
+    }
+
+    @Test
+    public void test_random() {
+        Random random = new Random(1);
+
+        for (int iteration = 0; iteration < 200; iteration++) {
+            DirtyRangeList ranges = new DirtyRangeList();
+            // dirty flag for each char and each gap between chars, gap i is before char i
+            ArrayList<Boolean> chars = new ArrayList<>();
+            ArrayList<Boolean> gaps = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                chars.add(false);
+                gaps.add(false);
+            }
+            gaps.add(false);
+
+            for (int edit = 0; edit < 20; edit++) {
+                int offset = random.nextInt(chars.size() + 1);
+                int oldLength = random.nextInt(Math.min(10, chars.size() - offset) + 1);
+                int newLength = random.nextInt(5);
+
+                for (int i = 0; i < oldLength; i++) {
+                    chars.remove(offset);
+                    gaps.remove(offset + 1);
+                }
+                for (int i = 0; i < newLength; i++) {
+                    chars.add(offset, true);
+                    gaps.add(offset + 1, true);
+                }
+                gaps.set(offset, true);
+                gaps.set(offset + newLength, true);
+
+                ranges.documentChanged(offset, oldLength, newLength);
+
+                int lastEnd = -1;
+                for (int i = 0; i < ranges.size(); i++) {
+                    assertTrue(ranges.getStart(i) > lastEnd);
+                    assertTrue(ranges.getStart(i) <= ranges.getEnd(i));
+                    lastEnd = ranges.getEnd(i);
+                }
+                assertTrue(lastEnd <= chars.size());
+
+                for (int i = 0; i < gaps.size(); i++) {
+                    if (gaps.get(i) || i < chars.size() && chars.get(i)) {
+                        assertTrue(isCovered(ranges, i, i < chars.size() && chars.get(i)));
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean isCovered(DirtyRangeList ranges, int offset, boolean isChar) {
+        for (int i = 0; i < ranges.size(); i++) {
+            if (isChar ? ranges.getStart(i) <= offset && offset < ranges.getEnd(i) : ranges.getStart(i) <= offset && offset <= ranges.getEnd(i)) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,72 @@
+// Copyright 2016-2023 2023 Vladimir Schneider <vladimir.schneider@gmail.com> Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE.txt file.
+package com.vladsch.MissingInActions.util;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class LineTextCacheTest {
+    private static String getText(LineTextCache cache) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < cache.getLineCount(); i++) {
+            if (i > 0) sb.append('\n');
+            sb.append(cache.getLine(i));
+        }
+        return sb.toString();
+    }
+
+    private static int replace(LineTextCache cache, String text, int start, int end, String replacement) {
+        int line = 0;
+        int lineStart = 0;
+        for (int i = 0; i < start; i++) {
+            if (text.charAt(i) == '\n') {
+                line++;
+                lineStart = i + 1;
+            }
+        }
+        return cache.replace(line, start - lineStart, text.substring(start, end), replacement);
+    }
+
+    @Test
+    public void test_basic() {
+        LineTextCache cache = new LineTextCache("abc\ndef\n");
+        assertEquals(3, cache.getLineCount());
+        String unchanged = cache.getLine(0);
+
+        assertEquals(0, replace(cache, "abc\ndef\n", 5, 6, "E"));
+        assertEquals("abc\ndEf\n", getText(cache));
+        assertSame(unchanged, cache.getLine(0));
+
+        assertEquals(1, replace(cache, "abc\ndEf\n", 1, 1, "\n"));
+        assertEquals("a\nbc\ndEf\n", getText(cache));
+
+        assertEquals(-2, replace(cache, "a\nbc\ndEf\n", 1, 6, ""));
+        assertEquals("aEf\n", getText(cache));
+    }
+
+    @Test
+    public void test_randomEdits() {
+        Random random = new Random(1);
+        String alphabet = "ab\n";
+
+        for (int t = 0; t < 200; t++) {
+            String text = "";
+            LineTextCache cache = new LineTextCache(text);
+
+            for (int e = 0; e < 20; e++) {
+                int start = random.nextInt(text.length() + 1);
+                int end = start + random.nextInt(text.length() - start + 1);
+                StringBuilder replacement = new StringBuilder();
+                int length = random.nextInt(5);
+                for (int i = 0; i < length; i++) replacement.append(alphabet.charAt(random.nextInt(alphabet.length())));
+
+                replace(cache, text, start, end, replacement.toString());
+                text = text.substring(0, start) + replacement + text.substring(end);
+                assertEquals(text, getText(cache));
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+// Copyright 2016-2023 2023 Vladimir Schneider <vladimir.schneider@gmail.com> Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE.txt file.
+package com.vladsch.MissingInActions.util;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MiaDiagnosticsTest {
+    @After
+    public void tearDown() {
+        MiaDiagnostics.setEnabled(false);
+        MiaDiagnostics.reset();
+    }
+
+    @Test
+    public void test_histogram() {
+        DiagnosticHistogram histogram = new DiagnosticHistogram("test", "values", "us");
+        for (int i = 1; i <= 100; i++) histogram.add(i);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(5050, histogram.getTotal());
+        assertEquals(50, histogram.getMean());
+        assertEquals(100, histogram.getMax());
+        assertEquals(63, histogram.getPercentile(50));
+        assertEquals(100, histogram.getPercentile(99));
+        assertEquals(1, histogram.getPercentile(1));
+    }
+
+    @Test
+    public void test_disabled() {
+        long startTime = MiaDiagnostics.startTime();
+        assertEquals(MiaDiagnostics.NOT_STARTED, startTime);
+
+        MiaDiagnostics.recordTime(MiaDiagnostics.BEFORE_ACTION, "action", startTime);
+        MiaDiagnostics.recordValue(MiaDiagnostics.CARET_BATCH, "apply", MiaDiagnostics.UNIT_CARETS, 5);
+        assertTrue(MiaDiagnostics.getHistograms().isEmpty());
+    }
+
+    @Test
+    public void test_json() {
+        MiaDiagnostics.setEnabled(true);
+        MiaDiagnostics.recordValue(MiaDiagnostics.CARET_BATCH, "a\"b", MiaDiagnostics.UNIT_CARETS, 4);
+
+        LinkedHashMap<String, Long> counters = new LinkedHashMap<>();
+        counters.put("checks", 3L);
+
+        assertEquals("{\n" +
+                "  \"enabled\": true,\n" +
+                "  \"counters\": {\n" +
+                "    \"checks\": 3\n" +
+                "  },\n" +
+                "  \"histograms\": [\n" +
+                "    {\"category\": \"caretBatch\", \"name\": \"a\\\"b\", \"unit\": \"carets\", \"count\": 1, \"total\": 4, \"mean\": 4, \"p50\": 4, \"p90\": 4, \"p99\": 4, \"max\": 4}\n" +
+                "  ]\n" +
+                "}\n", MiaDiagnostics.toJson(counters));
+
+        MiaDiagnostics.reset();
+        assertEquals("{\n" +
+                "  \"enabled\": true,\n" +
+                "  \"counters\": {},\n" +
+                "  \"histograms\": []\n" +
+                "}\n", MiaDiagnostics.toJson(Collections.emptyMap()));
+    }
+}
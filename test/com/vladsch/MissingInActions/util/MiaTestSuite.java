@@ -16,6 +16,8 @@
  */
 package com.vladsch.MissingInActions.util;
 
+import com.vladsch.MissingInActions.manager.CaretCoordinateSetTest;
+import com.vladsch.MissingInActions.manager.LineRangeSetTest;
 import com.vladsch.MissingInActions.settings.NumberSequenceGeneratorTest;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
@@ -24,7 +26,18 @@ import org.junit.runners.Suite;
 @Suite.SuiteClasses({
         NumberSequenceGeneratorTest.class,
         CaseFormatPreserverTest.class,
-        StudiedWordTest.class
+        StudiedWordTest.class,
+        MultiWordMatcherTest.class,
+        LineTextCacheTest.class,
+        BatchSearchRulesTest.class,
+        DirtyRangeListTest.class,
+        WordMatchListTest.class,
+        WordIndexSnapshotTest.class,
+        TimeBudgetCharSequenceTest.class,
+        CaretCoordinateSetTest.class,
+        LineRangeSetTest.class,
+        MiaDiagnosticsTest.class,
+        MiaWatchdogTest.class
 })
 public class MiaTestSuite {
 }
@@ -0,0 +1,84 @@
+// Copyright 2016-2023 2023 Vladimir Schneider <vladimir.schneider@gmail.com> Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE.txt file.
+package com.vladsch.MissingInActions.util;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.awt.EventQueue;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MiaWatchdogTest {
+    @After
+    public void tearDown() {
+        MiaWatchdog.configure(false, 200);
+        MiaWatchdog.clear();
+    }
+
+    @Test
+    public void test_disabled() throws Exception {
+        EventQueue.invokeAndWait(() -> assertEquals(MiaWatchdog.NOT_STARTED, MiaWatchdog.start("op")));
+    }
+
+    @Test
+    public void test_notEdt() {
+        MiaWatchdog.configure(true, 5);
+        assertEquals(MiaWatchdog.NOT_STARTED, MiaWatchdog.start("op"));
+    }
+
+    @Test
+    public void test_slowOperation() throws Exception {
+        MiaWatchdog.configure(true, 5);
+
+        EventQueue.invokeAndWait(() -> {
+            long token = MiaWatchdog.start("slow");
+            assertTrue(token != MiaWatchdog.NOT_STARTED);
+
+            // nested operations are part of the outer one
+            assertEquals(MiaWatchdog.NOT_STARTED, MiaWatchdog.start("nested"));
+
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ignored) {
+            }
+            MiaWatchdog.end(token, 3, 100);
+
+            long fast = MiaWatchdog.start("fast");
+            MiaWatchdog.end(fast, 1, 10);
+        });
+
+        List<MiaWatchdog.SlowOperation> operations = MiaWatchdog.getSlowOperations();
+        assertEquals(1, operations.size());
+        assertEquals("slow", operations.get(0).operation);
+        assertEquals(3, operations.get(0).caretCount);
+        assertEquals(100, operations.get(0).documentLength);
+        assertTrue(operations.get(0).durationMs >= 50);
+        assertTrue(operations.get(0).stack.contains("MiaWatchdogTest"));
+    }
+
+    @Test
+    public void test_shutdown() throws Exception {
+        MiaWatchdog.configure(true, 5);
+        MiaWatchdog.shutdown();
+
+        assertFalse(MiaWatchdog.isEnabled());
+        assertEquals(5, MiaWatchdog.getBudgetMs());
+        EventQueue.invokeAndWait(() -> assertEquals(MiaWatchdog.NOT_STARTED, MiaWatchdog.start("op")));
+    }
+
+    @Test
+    public void test_ring() {
+        for (int i = 0; i < MiaWatchdog.RING_SIZE + 6; i++) {
+            MiaWatchdog.addSlowOperation(new MiaWatchdog.SlowOperation(0, "op" + i, 1, 1, 1, ""));
+        }
+
+        List<MiaWatchdog.SlowOperation> operations = MiaWatchdog.getSlowOperations();
+        assertEquals(MiaWatchdog.RING_SIZE, operations.size());
+        assertEquals(MiaWatchdog.RING_SIZE + 6, MiaWatchdog.getSlowCount());
+        assertEquals("op6", operations.get(0).operation);
+        assertEquals("op" + (MiaWatchdog.RING_SIZE + 5), operations.get(MiaWatchdog.RING_SIZE - 1).operation);
+    }
+}
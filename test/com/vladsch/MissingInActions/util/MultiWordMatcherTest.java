@@ -0,0 +1,142 @@
+// Copyright 2016-2023 2023 Vladimir Schneider <vladimir.schneider@gmail.com> Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE.txt file.
+package com.vladsch.MissingInActions.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+
+public class MultiWordMatcherTest {
+    private static String findAll(MultiWordMatcher matcher, CharSequence text) {
+        StringBuilder sb = new StringBuilder();
+        matcher.findAll(text, (startOffset, endOffset, wordIndex) -> sb.append(startOffset).append('-').append(endOffset).append(':').append(matcher.getWord(wordIndex)).append(' '));
+        return sb.toString();
+    }
+
+    private static String findAllRegEx(String[] words, int[] options, CharSequence text) {
+        // same construction as WordHighlightProviderBase pattern
+        Integer[] order = new Integer[words.length];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, Comparator.comparing((Integer i) -> words[i]).reversed());
+
+        StringBuilder regex = new StringBuilder();
+        String sep = "";
+        for (int i : order) {
+            regex.append(sep);
+            sep = "|";
+            // group per alternative to know which word matched
+            regex.append('(');
+            regex.append((options[i] & MultiWordMatcher.CASE_SENSITIVE) != 0 ? "(?-i)" : "(?i)");
+            if ((options[i] & MultiWordMatcher.BEGIN_WORD) != 0) regex.append("\\b");
+            regex.append("\\Q").append(words[i]).append("\\E");
+            if ((options[i] & MultiWordMatcher.END_WORD) != 0) regex.append("\\b");
+            regex.append(')');
+        }
+
+        StringBuilder sb = new StringBuilder();
+        Matcher matcher = Pattern.compile(regex.toString()).matcher(text);
+        while (matcher.find()) {
+            String word = null;
+            for (int g = 0; g < order.length; g++) {
+                if (matcher.group(g + 1) != null) {
+                    word = words[order[g]];
+                    break;
+                }
+            }
+            sb.append(matcher.start()).append('-').append(matcher.end()).append(':').append(word).append(' ');
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void test_basic() {
+        MultiWordMatcher.Builder builder = MultiWordMatcher.builder();
+        builder.add("he", false, false, false);
+        builder.add("she", false, false, false);
+        builder.add("hers", false, false, false);
+        builder.add("his", false, false, false);
+        MultiWordMatcher matcher = builder.build();
+
+        assertEquals("1-4:she 5-7:he 9-12:his ", findAll(matcher, "ushe HEm his"));
+        assertEquals("0-3:she ", findAll(matcher, "shers"));
+        assertEquals("1-5:hers ", findAll(matcher, "ahers"));
+    }
+
+    @Test
+    public void test_caseAndBoundary() {
+        MultiWordMatcher.Builder builder = MultiWordMatcher.builder();
+        builder.add("Word", true, true, true);
+        builder.add("word", false, true, false);
+        MultiWordMatcher matcher = builder.build();
+
+        // "word" sorts before "Word" in reverse order so it is used wherever both match, same as the regex
+        assertEquals("0-4:word 5-9:word 10-14:word ", findAll(matcher, "Word WORD wordy aword"));
+    }
+
+    @Test
+    public void test_longestFallsBackOnFailedBoundary() {
+        MultiWordMatcher.Builder builder = MultiWordMatcher.builder();
+        builder.add("ab", false, false, false);
+        builder.add("abc", false, false, true);
+        MultiWordMatcher matcher = builder.build();
+
+        assertEquals("0-3:abc 4-6:ab ", findAll(matcher, "abc abcd"));
+    }
+
+    @Test
+    public void test_mixedCaseUsesRegExOrder() {
+        // reverse sorted order is "abc", "AB" and "ab", "Abc" so the shorter word is used when it sorts first
+        MultiWordMatcher.Builder builder = MultiWordMatcher.builder();
+        builder.add("AB", false, false, false);
+        builder.add("abc", false, false, false);
+        assertEquals("0-3:abc 4-7:abc ", findAll(builder.build(), "ABC abc"));
+
+        builder = MultiWordMatcher.builder();
+        builder.add("Abc", false, false, false);
+        builder.add("ab", false, false, false);
+        assertEquals("0-2:ab 4-6:ab ", findAll(builder.build(), "ABC abc"));
+
+        builder = MultiWordMatcher.builder();
+        builder.add("Abc", false, false, false);
+        builder.add("ab", true, false, false);
+        assertEquals("0-3:Abc 4-6:ab ", findAll(builder.build(), "ABC abc"));
+    }
+
+    @Test
+    public void test_sameAsRegEx() {
+        Random random = new Random(1);
+        String alphabet = "abAB _";
+
+        for (int t = 0; t < 500; t++) {
+            int wordCount = 1 + random.nextInt(8);
+            ArrayList<String> wordList = new ArrayList<>();
+            while (wordList.size() < wordCount) {
+                StringBuilder word = new StringBuilder();
+                int length = 1 + random.nextInt(4);
+                for (int i = 0; i < length; i++) word.append("abAB".charAt(random.nextInt(4)));
+                if (!wordList.contains(word.toString())) wordList.add(word.toString());
+            }
+
+            String[] words = wordList.toArray(new String[0]);
+            int[] options = new int[words.length];
+            MultiWordMatcher.Builder builder = MultiWordMatcher.builder();
+            for (int i = 0; i < words.length; i++) {
+                options[i] = random.nextInt(8);
+                builder.add(words[i], options[i]);
+            }
+
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(60);
+            for (int i = 0; i < length; i++) text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+
+            assertEquals("words: " + Arrays.toString(words) + " options: " + Arrays.toString(options) + " text: '" + text + "'",
+                    findAllRegEx(words, options, text), findAll(builder.build(), text));
+        }
+    }
+}
@@ -0,0 +1,46 @@
+// Copyright 2016-2023 2023 Vladimir Schneider <vladimir.schneider@gmail.com> Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE.txt file.
+package com.vladsch.MissingInActions.util;
+
+import org.junit.Test;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class TimeBudgetCharSequenceTest {
+    @Test
+    public void test_withinBudget() {
+        TimeBudgetCharSequence chars = new TimeBudgetCharSequence("abc def abc", 10_000, null);
+        Matcher matcher = Pattern.compile("abc").matcher(chars);
+        int count = 0;
+        while (matcher.find()) count++;
+        assertEquals(2, count);
+        assertEquals("def", chars.subSequence(4, 7).toString());
+    }
+
+    @Test
+    public void test_budgetExceeded() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) sb.append('a');
+
+        try {
+            Pattern.compile("b").matcher(new TimeBudgetCharSequence(sb, 0, null)).find();
+            fail("expected time budget to be exceeded");
+        } catch (TimeBudgetCharSequence.TimeBudgetExceededException ignored) {
+        }
+    }
+
+    @Test
+    public void test_cancelCheck() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) sb.append('a');
+
+        try {
+            Pattern.compile("b").matcher(new TimeBudgetCharSequence(sb, 10_000, () -> { throw new IllegalStateException("canceled"); })).find();
+            fail("expected cancel");
+        } catch (IllegalStateException ignored) {
+        }
+    }
+}
@@ -0,0 +1,31 @@
+// Copyright 2016-2023 2023 Vladimir Schneider <vladimir.schneider@gmail.com> Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE.txt file.
+package com.vladsch.MissingInActions.util;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+
+public class WordIndexSnapshotTest {
+    @Test
+    public void test_getIndex() {
+        HashMap<String, Integer> indices = new HashMap<>();
+        HashMap<String, Integer> lowerCaseIndices = new HashMap<>();
+        indices.put("Foo", 1);
+        indices.put("bar", 2);
+        lowerCaseIndices.put("bar", 2);
+
+        WordIndexSnapshot snapshot = new WordIndexSnapshot(indices, lowerCaseIndices);
+
+        // snapshot is not affected by later changes
+        indices.put("baz", 3);
+
+        assertEquals(1, snapshot.getIndex("Foo"));
+        assertEquals(-1, snapshot.getIndex("FOO"));
+        assertEquals(2, snapshot.getIndex("bar"));
+        assertEquals(2, snapshot.getIndex("BaR"));
+        assertEquals(-1, snapshot.getIndex("baz"));
+        assertEquals(-1, WordIndexSnapshot.EMPTY.getIndex("Foo"));
+    }
+}
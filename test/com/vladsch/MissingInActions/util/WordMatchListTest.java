@@ -0,0 +1,88 @@
+// Copyright 2016-2023 2023 Vladimir Schneider <vladimir.schneider@gmail.com> Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE.txt file.
+package com.vladsch.MissingInActions.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WordMatchListTest {
+    @Test
+    public void test_addAndFind() {
+        WordMatchList matches = new WordMatchList(1);
+        assertTrue(matches.isEmpty());
+        assertEquals(0, matches.getFirstAtOrAfter(10));
+
+        for (int i = 0; i < 100; i++) {
+            matches.add(i * 10, i * 10 + 5, i % 7);
+        }
+
+        assertEquals(100, matches.size());
+        assertEquals(500, matches.getStartOffset(50));
+        assertEquals(505, matches.getEndOffset(50));
+        assertEquals(1, matches.getIndex(50));
+
+        assertEquals(0, matches.getFirstAtOrAfter(0));
+        assertEquals(1, matches.getFirstAtOrAfter(1));
+        assertEquals(50, matches.getFirstAtOrAfter(500));
+        assertEquals(51, matches.getFirstAtOrAfter(501));
+        assertEquals(100, matches.getFirstAtOrAfter(991));
+    }
+
+    @Test
+    public void test_documentChanged() {
+        WordMatchList matches = new WordMatchList();
+        matches.add(0, 3, 0);
+        matches.add(10, 13, 1);
+        matches.add(20, 23, 2);
+        matches.add(30, 33, 3);
+
+        WordMatchList copy = matches.copy();
+
+        // replace 2 chars in second match with 5, touching matches are removed and later ones shifted
+        matches.documentChanged(11, 2, 5);
+        assertEquals(3, matches.size());
+        assertEquals(0, matches.getStartOffset(0));
+        assertEquals(23, matches.getStartOffset(1));
+        assertEquals(26, matches.getEndOffset(1));
+        assertEquals(2, matches.getIndex(1));
+        assertEquals(33, matches.getStartOffset(2));
+
+        // insert right after a match removes it
+        matches.documentChanged(3, 0, 1);
+        assertEquals(2, matches.size());
+        assertEquals(24, matches.getStartOffset(0));
+
+        // copy is not affected
+        assertEquals(4, copy.size());
+        assertEquals(10, copy.getStartOffset(1));
+    }
+
+    @Test
+    public void test_replace() {
+        WordMatchList matches = new WordMatchList(1);
+        matches.add(0, 3, 0);
+        matches.add(10, 13, 1);
+        matches.add(20, 23, 2);
+        matches.add(30, 33, 3);
+
+        WordMatchList rescanned = new WordMatchList();
+        rescanned.add(8, 9, 4);
+        rescanned.add(12, 14, 5);
+        rescanned.add(15, 17, 6);
+        rescanned.add(18, 19, 7);
+        rescanned.add(24, 26, 8);
+
+        matches.replace(10, 23, rescanned);
+        assertEquals(5, matches.size());
+        assertEquals(0, matches.getIndex(0));
+        assertEquals(5, matches.getIndex(1));
+        assertEquals(6, matches.getIndex(2));
+        assertEquals(7, matches.getIndex(3));
+        assertEquals(3, matches.getIndex(4));
+        assertEquals(30, matches.getStartOffset(4));
+
+        matches.replace(0, 40, new WordMatchList());
+        assertTrue(matches.isEmpty());
+    }
+}